@@ -0,0 +1,83 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.micrometer.core.instrument.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Full round-trips through {@link QuestradeWebClientImpl} against a local WireMock serving the {@code wiremock/mappings}
+ * stubs: URI building, HTTP transport, decoding and rate limit bookkeeping.
+ * <p>
+ * The rate limit itself is lifted, otherwise the benchmark would only measure how long the scheduler makes calls wait.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CallQuestradeBenchmark {
+    private static final String ACCESS_TOKEN = "my-access-token-123";
+
+    private WireMockServer wiremock;
+    private QuestradeWebClientImpl client;
+    private AuthenticationToken authToken;
+    private QuestradeAccount account;
+    private QuestradePosition position;
+    private RequestPeriod period;
+
+    private static class UnlimitedRateLimitScheduler extends RateLimitScheduler {
+        @Override
+        public void acquire(RateLimitCategory category) {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startWireMock() {
+        wiremock = new WireMockServer(wireMockConfig().dynamicPort()
+                                                      .usingFilesUnderDirectory(System.getProperty("wiremock.root", "wiremock"))
+                                                      .globalTemplating(true));
+        wiremock.start();
+
+        WebClientProperties properties = new WebClientProperties();
+        properties.setLoginUrl(wiremock.baseUrl() + "/");
+        client = new QuestradeWebClientImpl(properties, new UnlimitedRateLimitScheduler(), new QuestradeMetrics(Metrics.globalRegistry));
+
+        authToken = new AuthenticationToken(ACCESS_TOKEN, wiremock.baseUrl() + "/", ZonedDateTime.now().plusYears(1), "refresh-token", "Bearer");
+        account = new QuestradeAccount("TFSA", "99912345", "Active", true, true, "Individual");
+        position = client.getPositions(authToken, account).iterator().next();
+        period = new RequestPeriod(ZonedDateTime.now().minusDays(10), ZonedDateTime.now());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopWireMock() {
+        // its connection pool and rate limit gauges would otherwise outlive the trial, in the same JVM as the next
+        client.close();
+        wiremock.stop();
+    }
+
+    @Benchmark
+    public Set<QuestradeAccount> getAccounts() {
+        return client.getAccounts(authToken);
+    }
+
+    @Benchmark
+    public Set<QuestradeActivity> getAccountActivities() {
+        return client.getAccountActivities(authToken, account, period);
+    }
+
+    @Benchmark
+    public Set<QuestradeCandle> getPositionCandles() {
+        return client.getPositionCandles(authToken, position, period);
+    }
+
+    @Benchmark
+    public CandleSeries getPositionCandleSeries() {
+        return client.getPositionCandleSeries(authToken, position, period, QuestradeCandle.Interval.OneDay);
+    }
+}
@@ -0,0 +1,22 @@
+package info.martindupuis.jquestrade.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the {@code Date} header of the authentication response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateUtilsBenchmark {
+
+    private final String dateHeader = "Mon, 15 Jan 2024 14:32:07 GMT";
+
+    @Benchmark
+    public ZonedDateTime parseHeaderDateToLocalOffsetDateTime() {
+        return DateUtils.parseHeaderDateToLocalOffsetDateTime(dateHeader);
+    }
+}
@@ -0,0 +1,189 @@
+package info.martindupuis.jquestrade.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.martindupuis.jquestrade.CandleSeries;
+import info.martindupuis.jquestrade.Order;
+import info.martindupuis.jquestrade.QuestradeActivity;
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.Quote;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Decoding of API responses, with the same Jackson setup Spring configures for {@code RestClient}.
+ * <p>
+ * Payloads are generated once per trial: {@code nbItems} candles, activities, orders or quotes per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonDecodingBenchmark {
+    private static final DateTimeFormatter ISO = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    private static final ZonedDateTime START = ZonedDateTime.of(2020, 1, 2, 9, 30, 0, 0, ZoneId.of("America/Toronto"));
+
+    record OrdersPayload(List<Order> orders) {
+    }
+
+    record QuotesPayload(List<Quote> quotes) {
+    }
+
+    @Param({"100", "2000"})
+    int nbItems;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CandleSeriesHttpMessageConverter candleSeriesConverter = new CandleSeriesHttpMessageConverter();
+
+    private byte[] candlesJson;
+    private byte[] activitiesJson;
+    private byte[] ordersJson;
+    private byte[] quotesJson;
+
+    @Setup(Level.Trial)
+    public void generatePayloads() throws IOException {
+        Random random = new Random(42);
+
+        Set<QuestradeCandle> candles = new LinkedHashSet<>();
+        for (int i = 0; i < nbItems; i++) {
+            double open = 50 + random.nextDouble() * 10;
+            double close = 50 + random.nextDouble() * 10;
+            candles.add(new QuestradeCandle(START.plusMinutes(i).format(ISO), START.plusMinutes(i + 1).format(ISO),
+                                            Math.min(open, close) - 0.5, Math.max(open, close) + 0.5, open, close,
+                                            random.nextInt(1_000_000), (open + close) / 2));
+        }
+        candlesJson = objectMapper.writeValueAsBytes(new CandlesResponse(candles, 999123));
+
+        Set<QuestradeActivity> activities = new LinkedHashSet<>();
+        for (int i = 0; i < nbItems; i++)
+            activities.add(new QuestradeActivity(START.plusDays(i).format(ISO), START.plusDays(i).format(ISO), START.plusDays(i + 2).format(ISO),
+                                                 "Buy", "THI.TO", 38738 + i, "THOMSON REUTERS CORP COMMON", "CAD",
+                                                 10, 60.17, -601.7, -4.95, -606.65, "Trades"));
+        activitiesJson = objectMapper.writeValueAsBytes(new AccountActivityResponse(activities, 999123));
+
+        ordersJson = objectMapper.writeValueAsBytes(Map.of("orders", IntStream.range(0, nbItems).mapToObj(JsonDecodingBenchmark::order).toList()));
+        quotesJson = objectMapper.writeValueAsBytes(Map.of("quotes", IntStream.range(0, nbItems).mapToObj(JsonDecodingBenchmark::quote).toList()));
+    }
+
+    private static Map<String, Object> order(int id) {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("id", 173577870 + id);
+        order.put("symbol", "AAPL");
+        order.put("symbolId", 8049);
+        order.put("totalQuantity", 100);
+        order.put("openQuantity", 100);
+        order.put("filledQuantity", 0);
+        order.put("canceledQuantity", 0);
+        order.put("side", "Buy");
+        order.put("orderType", "Limit");
+        order.put("limitPrice", 500.95);
+        order.put("stopPrice", null);
+        order.put("isAllOrNone", false);
+        order.put("isAnonymous", false);
+        order.put("icebergQuantity", null);
+        order.put("minQuantity", null);
+        order.put("avgExecPrice", null);
+        order.put("lastExecPrice", null);
+        order.put("source", "TradingAPI");
+        order.put("timeInForce", "Day");
+        order.put("gtdDate", null);
+        order.put("state", "Canceled");
+        order.put("clientReasonStr", "");
+        order.put("chainId", 173577870 + id);
+        order.put("creationTime", START.plusSeconds(id).format(ISO));
+        order.put("updateTime", START.plusSeconds(id + 1).format(ISO));
+        order.put("notes", "");
+        order.put("primaryRoute", "AUTO");
+        order.put("secondaryRoute", "");
+        order.put("orderRoute", "LAMP");
+        order.put("venueHoldingOrder", "");
+        order.put("comissionCharged", 0);
+        order.put("exchangeOrderId", "XS173577870");
+        order.put("isSignificantShareHolder", false);
+        order.put("isInsider", false);
+        order.put("isLimitOffsetInDollar", false);
+        order.put("userId", 3000124);
+        order.put("placementCommission", null);
+        order.put("legs", List.of());
+        order.put("strategyType", "SingleLeg");
+        order.put("triggerStopPrice", null);
+        order.put("orderGroupId", 0);
+        order.put("orderClass", null);
+        return order;
+    }
+
+    private static Map<String, Object> quote(int symbolId) {
+        Map<String, Object> quote = new LinkedHashMap<>();
+        quote.put("symbol", "THI.TO");
+        quote.put("symbolId", symbolId);
+        quote.put("tier", "");
+        quote.put("bidPrice", 83.65);
+        quote.put("bidSize", 6500);
+        quote.put("askPrice", 83.67);
+        quote.put("askSize", 9100);
+        quote.put("lastTradePriceTrHrs", 83.66);
+        quote.put("lastTradePrice", 83.66);
+        quote.put("lastTradeSize", 3100);
+        quote.put("lastTradeTick", "Equal");
+        quote.put("lastTradeTime", START.plusSeconds(symbolId).format(ISO));
+        quote.put("volume", 1920000);
+        quote.put("openPrice", 83.82);
+        quote.put("highPrice", 83.86);
+        quote.put("lowPrice", 83.66);
+        quote.put("delay", 0);
+        quote.put("isHalted", false);
+        quote.put("high52w", 84.2);
+        quote.put("low52w", 68.4);
+        quote.put("VWAP", 83.75);
+        return quote;
+    }
+
+    @Benchmark
+    public CandlesResponse candles() throws IOException {
+        return objectMapper.readValue(candlesJson, CandlesResponse.class);
+    }
+
+    @Benchmark
+    public CandleSeries candleSeries() throws IOException {
+        return candleSeriesConverter.read(CandleSeries.class, inputMessage(candlesJson));
+    }
+
+    @Benchmark
+    public AccountActivityResponse activities() throws IOException {
+        return objectMapper.readValue(activitiesJson, AccountActivityResponse.class);
+    }
+
+    @Benchmark
+    public OrdersPayload orders() throws IOException {
+        return objectMapper.readValue(ordersJson, OrdersPayload.class);
+    }
+
+    @Benchmark
+    public QuotesPayload quotes() throws IOException {
+        return objectMapper.readValue(quotesJson, QuotesPayload.class);
+    }
+
+    private static HttpInputMessage inputMessage(byte[] body) {
+        return new HttpInputMessage() {
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return new HttpHeaders();
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package info.martindupuis.jquestrade.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.martindupuis.jquestrade.Quote;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of the latest quote while a stream keeps updating it. Run with {@code -t} threads to see how reads scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuoteTableBenchmark {
+    private static final int NB_SYMBOLS = 1000;
+
+    private QuoteTable table;
+    private Quote[] quotes;
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final QuoteSnapshot snapshot = new QuoteSnapshot();
+        int symbolId;
+
+        int nextSymbolId() {
+            symbolId = symbolId + 1 == NB_SYMBOLS ? 0 : symbolId + 1;
+            return symbolId;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void fillTable() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        table = new QuoteTable(NB_SYMBOLS);
+        quotes = new Quote[NB_SYMBOLS];
+        for (int symbolId = 0; symbolId < NB_SYMBOLS; symbolId++) {
+            quotes[symbolId] = objectMapper.readValue("""
+                    {"symbol":"S%d","symbolId":%d,"bidPrice":83.65,"bidSize":6500,"askPrice":83.67,"askSize":9100,
+                     "lastTradePrice":83.66,"lastTradeSize":3100,"volume":1920,"openPrice":83.82,"VWAP":83.7}"""
+                                                              .formatted(symbolId, symbolId), Quote.class);
+            table.update(quotes[symbolId]);
+        }
+    }
+
+    @Benchmark
+    @Group("readWhileUpdating")
+    @GroupThreads(3)
+    public QuoteSnapshot read(Reader reader) {
+        table.read(reader.nextSymbolId(), reader.snapshot);
+        return reader.snapshot;
+    }
+
+    @Benchmark
+    @Group("readWhileUpdating")
+    @GroupThreads(1)
+    public void update(Reader writer) {
+        table.update(quotes[writer.nextSymbolId()]);
+    }
+
+    @Benchmark
+    public double readLastTradePrice(Reader reader) {
+        return table.lastTradePrice(reader.nextSymbolId());
+    }
+}
@@ -0,0 +1,83 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.micrometer.core.instrument.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Calls through {@link QuestradeWebClientImpl} in {@code Replay} mode, answered from an archive recorded against a
+ * local WireMock at setup: what is left is URI building, signature lookup and decoding. Run with {@code -t} threads
+ * to see how replay scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReplayBenchmark {
+    private static final String ACCESS_TOKEN = "my-access-token-123";
+
+    private Path archive;
+    private QuestradeWebClientImpl client;
+    private AuthenticationToken authToken;
+    private QuestradeAccount account;
+
+    @Setup(Level.Trial)
+    public void recordThenReplay() throws Exception {
+        WireMockServer wiremock = new WireMockServer(wireMockConfig().dynamicPort()
+                                                                     .usingFilesUnderDirectory(System.getProperty("wiremock.root", "wiremock"))
+                                                                     .globalTemplating(true));
+        wiremock.start();
+        archive = Files.createTempFile("exchanges", ".gz");
+        authToken = new AuthenticationToken(ACCESS_TOKEN, wiremock.baseUrl() + "/", ZonedDateTime.now().plusYears(1), "refresh-token", "Bearer");
+        account = new QuestradeAccount("TFSA", "99912345", "Active", true, true, "Individual");
+
+        try (QuestradeWebClientImpl recorder = client(wiremock.baseUrl(), WebClientProperties.Transport.Mode.Record)) {
+            recorder.getAccounts(authToken);
+            recorder.getPositions(authToken, account);
+            recorder.getQuotes(authToken, List.of(38738, 8049));
+        } finally {
+            wiremock.stop();
+        }
+
+        client = client(wiremock.baseUrl(), WebClientProperties.Transport.Mode.Replay);
+    }
+
+    private QuestradeWebClientImpl client(String baseUrl, WebClientProperties.Transport.Mode mode) {
+        WebClientProperties properties = new WebClientProperties();
+        properties.setLoginUrl(baseUrl + "/");
+        properties.getTransport().setMode(mode);
+        properties.getTransport().setArchive(archive);
+        return new QuestradeWebClientImpl(properties, new RateLimitScheduler(), new QuestradeMetrics(Metrics.globalRegistry));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws Exception {
+        client.close();
+        Files.deleteIfExists(archive);
+    }
+
+    @Benchmark
+    public Set<QuestradeAccount> getAccounts() {
+        return client.getAccounts(authToken);
+    }
+
+    @Benchmark
+    public Set<QuestradePosition> getPositions() {
+        return client.getPositions(authToken, account);
+    }
+
+    @Benchmark
+    public List<Quote> getQuotes() {
+        return client.getQuotes(authToken, List.of(38738, 8049));
+    }
+}
@@ -0,0 +1,38 @@
+package info.martindupuis.jquestrade.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting of multi-year periods, with the chunk sizes the clients actually use: account activities windows
+ * and the candles chunks of a daily and of a one minute interval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestPeriodBenchmark {
+
+    @Param({"1", "5", "20"})
+    int nbYears;
+
+    @Param({"1", "29", "4000"})
+    int nbDaysPerPeriod;
+
+    private RequestPeriod period;
+
+    @Setup(Level.Trial)
+    public void createPeriod() {
+        ZonedDateTime start = LocalDate.of(2000, 1, 1).atStartOfDay(ZoneId.of("America/Toronto"));
+        period = new RequestPeriod(start, start.plusYears(nbYears));
+    }
+
+    @Benchmark
+    public List<RequestPeriod> splitIntoPeriodsOfXDays() {
+        return period.splitIntoPeriodsOfXDays(nbDaysPerPeriod);
+    }
+}
@@ -0,0 +1,71 @@
+package info.martindupuis.jquestrade.client;
+
+/**
+ * Counts latencies in microseconds, in buckets at most 1/64 of their value wide, so percentiles keep a fixed
+ * footprint however long a soak test runs. Not thread-safe: each worker keeps its own, merged at the end.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // values below 2 * SUB_BUCKETS get a bucket each, then every power of two is split in SUB_BUCKETS buckets
+    private final long[] counts = new long[SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS + 1)];
+    private long total;
+    private long max;
+
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        counts[index(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /**
+     * Returns the latency under which the given share of the calls completed, in microseconds.
+     */
+    long percentile(double share) {
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(share * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank))
+                return Math.min(max, midpoint(i));
+        }
+        return max;
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    private static long midpoint(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index % SUB_BUCKETS + SUB_BUCKETS;
+        return (top << shift) + (1L << shift) / 2;
+    }
+}
@@ -0,0 +1,91 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Makes the {@code wiremock/mappings} stubs behave like a loaded Questrade server, following a {@link LoadTestProfile}:
+ * responses are delayed, some are replaced by {@code 429}, and rate limit headers report an hourly budget which,
+ * once spent, also gets {@code 429} until it is reset.
+ */
+class LatencyInjector implements ResponseDefinitionTransformerV2 {
+    private static final String LOGIN_ENDPOINT = "oauth2/token";
+    private static final String TOO_MANY_REQUESTS = """
+            {"code":1006,"message":"Rate limit exceeded"}""";
+
+    private final LoadTestProfile profile;
+    private final Map<RateLimitCategory, Budget> budgets = new EnumMap<>(RateLimitCategory.class);
+
+    private static final class Budget {
+        private final int requestsPerHour;
+        private int remaining;
+        private Instant resetAt = Instant.MIN;
+
+        private Budget(int requestsPerHour) {
+            this.requestsPerHour = requestsPerHour;
+        }
+
+        /**
+         * Spends one request, returning false if none was left.
+         */
+        private synchronized boolean spend(Instant now) {
+            if (!now.isBefore(resetAt)) {
+                remaining = requestsPerHour;
+                resetAt = now.plus(Duration.ofHours(1));
+            }
+            if (remaining == 0)
+                return false;
+            remaining--;
+            return true;
+        }
+
+        private synchronized void addHeaders(ResponseDefinitionBuilder response) {
+            response.withHeader(RateLimitScheduler.REMAINING_HEADER, String.valueOf(remaining))
+                    .withHeader(RateLimitScheduler.RESET_HEADER, String.valueOf(resetAt.getEpochSecond()));
+        }
+    }
+
+    LatencyInjector(LoadTestProfile profile) {
+        this.profile = profile;
+        for (RateLimitCategory category : RateLimitCategory.values())
+            profile.requestsPerHour(category).ifPresent(requestsPerHour -> budgets.put(category, new Budget(requestsPerHour)));
+    }
+
+    @Override
+    public String getName() {
+        return "latency-injector";
+    }
+
+    @Override
+    public ResponseDefinition transform(ServeEvent serveEvent) {
+        String url = serveEvent.getRequest().getUrl();
+        int query = url.indexOf('?');
+        String endpoint = QuestradeMetrics.endpointOf(URI.create(query < 0 ? url : url.substring(0, query)));
+        LoadTestProfile.Endpoint injected = profile.endpoint(endpoint).orElse(null);
+
+        Budget budget = endpoint.equals(LOGIN_ENDPOINT) ? null : budgets.get(RateLimitCategory.of(endpoint));
+        boolean overBudget = budget != null && !budget.spend(Instant.now());
+        boolean throttled = overBudget || injected != null && ThreadLocalRandom.current().nextDouble() < injected.tooManyRequests();
+
+        ResponseDefinitionBuilder response = throttled ? ResponseDefinitionBuilder.responseDefinition()
+                                                                                  .withStatus(429)
+                                                                                  .withHeader("Content-Type", "application/json")
+                                                                                  .withBody(TOO_MANY_REQUESTS)
+                                                       : ResponseDefinitionBuilder.like(serveEvent.getResponseDefinition());
+        if (injected != null && injected.latency() != null)
+            response.withRandomDelay(injected.latency());
+        if (budget != null)
+            budget.addHeaders(response);
+
+        return response.build();
+    }
+}
@@ -0,0 +1,216 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.QuestradePosition;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Drives {@link QuestradeWebClientImpl} with concurrent workers against a local WireMock serving the
+ * {@code wiremock/mappings} stubs, delayed and throttled by a {@link LatencyInjector}, then prints the throughput,
+ * latency percentiles, errors and allocations of each endpoint.
+ * <p>
+ * Run with {@code ./gradlew loadTest}, settings are passed as {@code -PloadTest.<setting>=<value>}:
+ * <ul>
+ * <li>{@code profile}: a {@link LoadTestProfile} file, or the name of a bundled one ({@code load-test}, {@code soak-test})</li>
+ * <li>{@code workers}: number of threads calling the client, each waiting for its call to return before the next one</li>
+ * <li>{@code warmup} and {@code duration}: ISO-8601 durations, nothing is measured during the warmup</li>
+ * <li>{@code maxConcurrentRequests} and {@code maxConnectionsPerHost}: the client settings under test</li>
+ * </ul>
+ * Allocations per call are those of the worker thread only: work handed to Reactor Netty or to the fan-out threads
+ * only shows in the allocation rate of the whole JVM.
+ */
+public final class LoadTest {
+    private static final String ACCESS_TOKEN = "my-access-token-123";
+    private static final List<Double> PERCENTILES = List.of(0.5, 0.9, 0.99, 0.999);
+
+    private final LoadTestProfile profile;
+    private final QuestradeWebClientImpl client;
+    private final AuthenticationToken authToken;
+    private final QuestradeAccount account;
+    private final QuestradePosition position;
+    private final RequestPeriod period;
+    private final Map<String, Runnable> calls;
+
+    /**
+     * What one worker measured for one endpoint.
+     */
+    private static final class EndpointStats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final Map<String, Long> errors = new TreeMap<>();
+        private long allocatedBytes;
+
+        private void add(EndpointStats other) {
+            latencies.add(other.latencies);
+            other.errors.forEach((error, count) -> errors.merge(error, count, Long::sum));
+            allocatedBytes += other.allocatedBytes;
+        }
+    }
+
+    private static class UnlimitedRateLimitScheduler extends RateLimitScheduler {
+        @Override
+        public void acquire(RateLimitCategory category) {
+        }
+    }
+
+    private LoadTest(LoadTestProfile profile, WebClientProperties properties, String baseUrl) {
+        this.profile = profile;
+        RateLimitScheduler rateLimitScheduler = profile.paced() ? new RateLimitScheduler() : new UnlimitedRateLimitScheduler();
+        client = new QuestradeWebClientImpl(properties, rateLimitScheduler, new QuestradeMetrics(Metrics.globalRegistry));
+
+        authToken = new AuthenticationToken(ACCESS_TOKEN, baseUrl + "/", ZonedDateTime.now().plusYears(1), "refresh-token", "Bearer");
+        account = new QuestradeAccount("TFSA", "99912345", "Active", true, true, "Individual");
+        position = client.getPositions(authToken, account).iterator().next();
+        period = new RequestPeriod(ZonedDateTime.now().minusDays(10), ZonedDateTime.now());
+
+        calls = Map.ofEntries(Map.entry("oauth2/token", () -> client.authenticate("refresh-token")),
+                              Map.entry("accounts", () -> client.getAccounts(authToken)),
+                              Map.entry("accounts/{id}/positions", () -> client.getPositions(authToken, account)),
+                              Map.entry("accounts/{id}/balances", () -> client.getBalances(authToken, account)),
+                              Map.entry("accounts/{id}/activities", () -> client.getAccountActivities(authToken, account, period)),
+                              Map.entry("accounts/{id}/orders", () -> client.getOrders(authToken, account, period, OrderStateFilter.All)),
+                              Map.entry("accounts/{id}/executions", () -> client.getExecutions(authToken, account, period)),
+                              Map.entry("markets/candles/{id}", () -> client.getPositionCandles(authToken, position, period)),
+                              Map.entry("markets/quotes", () -> client.getQuotes(authToken, List.of(38738, 8049))),
+                              Map.entry("symbols/search", () -> client.searchSymbols(authToken, "BMO")),
+                              Map.entry("symbols", () -> client.getSymbols(authToken, List.of(8049))));
+        for (LoadTestProfile.Endpoint endpoint : profile.called())
+            if (!calls.containsKey(endpoint.name()))
+                throw new IllegalArgumentException("Profile %s gives a weight to %s, which has no call".formatted(profile.name(), endpoint.name()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestProfile profile = LoadTestProfile.load(System.getProperty("loadTest.profile", "load-test"));
+        int workers = Integer.getInteger("loadTest.workers", 16);
+        Duration warmup = Duration.parse(System.getProperty("loadTest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadTest.duration", "PT1M"));
+
+        WebClientProperties properties = new WebClientProperties();
+        properties.setMaxConcurrentRequests(Integer.getInteger("loadTest.maxConcurrentRequests", properties.getMaxConcurrentRequests()));
+        properties.getTransport().setMaxConnectionsPerHost(Integer.getInteger("loadTest.maxConnectionsPerHost",
+                                                                              properties.getTransport().getMaxConnectionsPerHost()));
+
+        WireMockServer wiremock = new WireMockServer(wireMockConfig().dynamicPort()
+                                                                     .usingFilesUnderDirectory(System.getProperty("wiremock.root", "wiremock"))
+                                                                     .globalTemplating(true)
+                                                                     .containerThreads(Math.max(32, 2 * workers))
+                                                                     // delayed responses do not hold a Jetty thread
+                                                                     .asynchronousResponseEnabled(true)
+                                                                     .asynchronousResponseThreads(Math.max(8, workers))
+                                                                     .disableRequestJournal()
+                                                                     .extensions(new LatencyInjector(profile)));
+        wiremock.start();
+        try {
+            properties.setLoginUrl(wiremock.baseUrl() + "/");
+            System.out.printf("Load test: profile=%s workers=%d warmup=%s duration=%s maxConcurrentRequests=%d maxConnectionsPerHost=%d paced=%b%n",
+                              profile.name(), workers, warmup, duration, properties.getMaxConcurrentRequests(),
+                              properties.getTransport().getMaxConnectionsPerHost(), profile.paced());
+            new LoadTest(profile, properties, wiremock.baseUrl()).run(workers, warmup, duration);
+        } finally {
+            wiremock.stop();
+        }
+    }
+
+    private void run(int workers, Duration warmup, Duration duration) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+
+        List<Future<Map<String, EndpointStats>>> results = new ArrayList<>();
+        long allocatedBefore;
+        try (ExecutorService pool = Executors.newFixedThreadPool(workers)) {
+            for (int i = 0; i < workers; i++)
+                results.add(pool.submit(() -> work(threads, measureFrom, measureUntil)));
+
+            long untilMeasured = measureFrom - System.nanoTime();
+            if (untilMeasured > 0)
+                TimeUnit.NANOSECONDS.sleep(untilMeasured);
+            allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        }
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+
+        Map<String, EndpointStats> merged = new TreeMap<>();
+        for (Future<Map<String, EndpointStats>> result : results)
+            result.get().forEach((endpoint, stats) -> merged.computeIfAbsent(endpoint, key -> new EndpointStats()).add(stats));
+
+        report(merged, duration, allocated);
+    }
+
+    private Map<String, EndpointStats> work(com.sun.management.ThreadMXBean threads, long measureFrom, long measureUntil) {
+        Map<String, EndpointStats> stats = new HashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long now;
+        while ((now = System.nanoTime()) < measureUntil) {
+            String endpoint = profile.pick(random).name();
+            Runnable call = calls.get(endpoint);
+
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            String error = null;
+            try {
+                call.run();
+            } catch (StatusCodeException e) {
+                error = String.valueOf(e.getStatusCode());
+            } catch (RestClientResponseException e) {
+                // the login server is called without retries
+                error = String.valueOf(e.getStatusCode().value());
+            } catch (RuntimeException e) {
+                error = e.getClass().getSimpleName();
+            }
+            long end = System.nanoTime();
+
+            if (now >= measureFrom) {
+                EndpointStats endpointStats = stats.computeIfAbsent(endpoint, key -> new EndpointStats());
+                endpointStats.latencies.record((end - now) / 1000);
+                endpointStats.allocatedBytes += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                if (error != null)
+                    endpointStats.errors.merge(error, 1L, Long::sum);
+            }
+        }
+        return stats;
+    }
+
+    private static void report(Map<String, EndpointStats> stats, Duration duration, long allocated) {
+        double seconds = duration.toNanos() / 1e9;
+
+        StringBuilder header = new StringBuilder("%-28s %10s %10s".formatted("endpoint", "calls", "calls/s"));
+        PERCENTILES.forEach(percentile -> header.append(" %9s".formatted("p" + formatPercentile(percentile) + " ms")));
+        header.append(" %9s %9s  %s".formatted("max ms", "KB/call", "errors"));
+        System.out.println(header);
+
+        long totalCalls = 0;
+        for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpoint = entry.getValue();
+            long calls = endpoint.latencies.count();
+            totalCalls += calls;
+
+            StringBuilder line = new StringBuilder("%-28s %10d %10.1f".formatted(entry.getKey(), calls, calls / seconds));
+            PERCENTILES.forEach(percentile -> line.append(" %9.2f".formatted(endpoint.latencies.percentile(percentile) / 1000.0)));
+            line.append(" %9.2f %9.1f  %s".formatted(endpoint.latencies.max() / 1000.0,
+                                                     calls == 0 ? 0.0 : endpoint.allocatedBytes / 1024.0 / calls,
+                                                     endpoint.errors.isEmpty() ? "-" : endpoint.errors));
+            System.out.println(line);
+        }
+
+        System.out.printf("total: %d calls, %.1f calls/s, JVM allocation rate %.1f MB/s%n",
+                          totalCalls, totalCalls / seconds, allocated / 1024.0 / 1024.0 / seconds);
+    }
+
+    private static String formatPercentile(double percentile) {
+        String digits = String.valueOf(percentile * 100);
+        return digits.endsWith(".0") ? digits.substring(0, digits.length() - 2) : digits;
+    }
+}
@@ -0,0 +1,133 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.http.DelayDistribution;
+import com.github.tomakehurst.wiremock.http.FixedDelayDistribution;
+import com.github.tomakehurst.wiremock.http.LogNormal;
+import com.github.tomakehurst.wiremock.http.UniformDistribution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * What WireMock injects and what the workers call during a {@link LoadTest}, read from a properties file.
+ * <p>
+ * Endpoints are named as in the {@link QuestradeMetrics} tags ({@code accounts/{id}/positions}, {@code markets/quotes}...):
+ * <ul>
+ * <li>{@code <endpoint>.latency}: {@code fixed:<ms>}, {@code uniform:<min ms>:<max ms>} or {@code lognormal:<median ms>:<sigma>}</li>
+ * <li>{@code <endpoint>.tooManyRequests}: share of the calls answered {@code 429}, on top of those over the hourly budget</li>
+ * <li>{@code <endpoint>.weight}: relative share of the calls workers make, endpoints without a weight are not called</li>
+ * <li>{@code rateLimit.<Account|Market>.requestsPerHour}: hourly budget reported in the rate limit headers, none are sent without it</li>
+ * <li>{@code paced}: whether the client paces its calls on those headers, as in production</li>
+ * </ul>
+ */
+final class LoadTestProfile {
+
+    record Endpoint(String name, DelayDistribution latency, double tooManyRequests, int weight) {
+    }
+
+    private final String name;
+    private final Map<String, Endpoint> endpoints;
+    private final Map<RateLimitCategory, Integer> requestsPerHour;
+    private final boolean paced;
+    private final List<Endpoint> called;
+    private final int totalWeight;
+
+    private LoadTestProfile(String name, Map<String, Endpoint> endpoints, Map<RateLimitCategory, Integer> requestsPerHour, boolean paced) {
+        this.name = name;
+        this.endpoints = endpoints;
+        this.requestsPerHour = requestsPerHour;
+        this.paced = paced;
+        this.called = endpoints.values().stream().filter(endpoint -> endpoint.weight() > 0).toList();
+        this.totalWeight = called.stream().mapToInt(Endpoint::weight).sum();
+        if (totalWeight == 0)
+            throw new IllegalArgumentException("Profile %s gives no endpoint a weight".formatted(name));
+    }
+
+    /**
+     * Reads the profile from a file if there is one at that path, otherwise from {@code <name>.properties} on the classpath.
+     */
+    static LoadTestProfile load(String name) {
+        Properties properties = new Properties();
+        Path file = Path.of(name);
+        try (InputStream in = Files.isRegularFile(file) ? Files.newInputStream(file)
+                                                        : LoadTestProfile.class.getResourceAsStream("/%s.properties".formatted(name))) {
+            if (in == null)
+                throw new IllegalArgumentException("No load test profile %s".formatted(name));
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read load test profile %s".formatted(name), e);
+        }
+
+        Map<String, Endpoint> endpoints = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            if (key.startsWith("rateLimit.") || dot < 0)
+                continue;
+            String endpoint = key.substring(0, dot);
+            endpoints.computeIfAbsent(endpoint, ignored -> new Endpoint(endpoint,
+                                                                        latency(properties.getProperty(endpoint + ".latency")),
+                                                                        Double.parseDouble(properties.getProperty(endpoint + ".tooManyRequests", "0")),
+                                                                        Integer.parseInt(properties.getProperty(endpoint + ".weight", "0"))));
+        }
+
+        Map<RateLimitCategory, Integer> requestsPerHour = new EnumMap<>(RateLimitCategory.class);
+        for (RateLimitCategory category : RateLimitCategory.values()) {
+            String budget = properties.getProperty("rateLimit.%s.requestsPerHour".formatted(category));
+            if (budget != null)
+                requestsPerHour.put(category, Integer.parseInt(budget.trim()));
+        }
+
+        return new LoadTestProfile(name, endpoints, requestsPerHour, Boolean.parseBoolean(properties.getProperty("paced", "false")));
+    }
+
+    static DelayDistribution latency(String definition) {
+        if (definition == null || definition.isBlank() || definition.equals("none"))
+            return null;
+
+        String[] parts = definition.trim().split(":");
+        return switch (parts[0]) {
+            case "fixed" -> new FixedDelayDistribution(Integer.parseInt(parts[1]));
+            case "uniform" -> new UniformDistribution(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            case "lognormal" -> new LogNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            default -> throw new IllegalArgumentException("Unknown latency distribution '%s'".formatted(definition));
+        };
+    }
+
+    String name() {
+        return name;
+    }
+
+    Optional<Endpoint> endpoint(String endpoint) {
+        return Optional.ofNullable(endpoints.get(endpoint));
+    }
+
+    Optional<Integer> requestsPerHour(RateLimitCategory category) {
+        return Optional.ofNullable(requestsPerHour.get(category));
+    }
+
+    boolean paced() {
+        return paced;
+    }
+
+    List<Endpoint> called() {
+        return called;
+    }
+
+    /**
+     * Picks the endpoint of the next call, in proportion of the weights.
+     */
+    Endpoint pick(RandomGenerator random) {
+        int draw = random.nextInt(totalWeight);
+        for (Endpoint endpoint : called) {
+            draw -= endpoint.weight();
+            if (draw < 0)
+                return endpoint;
+        }
+        return called.getLast();
+    }
+}
@@ -0,0 +1,141 @@
+package info.martindupuis.jquestrade;
+
+import info.martindupuis.jquestrade.exceptions.ArgumentException;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Derives candles of a coarser {@link QuestradeCandle.Interval} from finer ones, without calling the API.
+ * <p>
+ * Candles are grouped in buckets aligned on an {@link ExchangeSession}: intraday buckets start at the session
+ * open and never run past its close, days start at midnight in the exchange zone, weeks on Monday, months on
+ * their first day. Each bucket opens at the open of its first candle and closes at the close of its last one,
+ * its volume is the sum of the candles volume and its VWAP is their volume weighted VWAP.
+ */
+public final class CandleResampler {
+
+    private CandleResampler() {
+    }
+
+    /**
+     * Tells if candles of the {@code from} interval fit exactly in candles of the {@code to} interval.
+     */
+    public static boolean canResample(QuestradeCandle.Interval from, QuestradeCandle.Interval to) {
+        if (to.getDuration().compareTo(from.getDuration()) <= 0)
+            return false;
+        if (isIntraday(to))
+            return to.getDuration().toMillis() % from.getDuration().toMillis() == 0;
+
+        return switch (from) {
+            case OneWeek -> false;
+            case OneMonth -> to == QuestradeCandle.Interval.OneYear;
+            default -> true;
+        };
+    }
+
+    /**
+     * Aggregates candles of the {@code from} interval into candles of the {@code to} interval, in one pass.
+     *
+     * @param candles The candles to aggregate, all of the {@code from} interval.
+     * @param from    The interval of the given candles.
+     * @param to      The interval of the candles to return, coarser than {@code from}.
+     * @param session The exchange session on which buckets are aligned.
+     * @return The aggregated candles, one per bucket holding at least one candle.
+     * @throws ArgumentException if candles of the {@code from} interval cannot be aggregated into the {@code to} interval.
+     */
+    public static CandleSeries resample(CandleSeries candles, QuestradeCandle.Interval from, QuestradeCandle.Interval to,
+                                        ExchangeSession session) {
+        if (!canResample(from, to))
+            throw new ArgumentException("Cannot resample %s candles into %s candles.".formatted(from, to));
+
+        long ratio = to.getDuration().toMillis() / from.getDuration().toMillis();
+        CandleSeries.Builder builder = CandleSeries.builder((int) (candles.size() / ratio) + 1);
+
+        long bucketStart = Long.MAX_VALUE;
+        long bucketEnd = Long.MIN_VALUE;
+        double low = 0;
+        double high = 0;
+        double open = 0;
+        double close = 0;
+        long volume = 0;
+        double weightedPrices = 0;
+
+        for (int i = 0; i < candles.size(); i++) {
+            long start = candles.getStart(i);
+            if (start < bucketStart || start >= bucketEnd) {
+                if (bucketEnd != Long.MIN_VALUE)
+                    builder.add(bucketStart, bucketEnd, low, high, open, close, volume, vwap(weightedPrices, volume, close));
+
+                long[] bucket = bucketOf(start, to, session);
+                bucketStart = bucket[0];
+                bucketEnd = bucket[1];
+                low = candles.getLow(i);
+                high = candles.getHigh(i);
+                open = candles.getOpen(i);
+                volume = 0;
+                weightedPrices = 0;
+            }
+
+            low = Math.min(low, candles.getLow(i));
+            high = Math.max(high, candles.getHigh(i));
+            close = candles.getClose(i);
+            volume += candles.getVolume(i);
+            weightedPrices += candles.getVWAP(i) * candles.getVolume(i);
+        }
+
+        if (bucketEnd != Long.MIN_VALUE)
+            builder.add(bucketStart, bucketEnd, low, high, open, close, volume, vwap(weightedPrices, volume, close));
+
+        return builder.build();
+    }
+
+    private static double vwap(double weightedPrices, long volume, double close) {
+        return volume == 0 ? close : weightedPrices / volume;
+    }
+
+    private static boolean isIntraday(QuestradeCandle.Interval interval) {
+        return interval.getDuration().compareTo(QuestradeCandle.Interval.OneDay.getDuration()) < 0;
+    }
+
+    /*
+     * Returns the [start, end[ of the bucket holding the given time, in epoch milliseconds.
+     */
+    private static long[] bucketOf(long epochMilli, QuestradeCandle.Interval interval, ExchangeSession session) {
+        ZonedDateTime time = Instant.ofEpochMilli(epochMilli).atZone(session.zone());
+        LocalDate date = time.toLocalDate();
+
+        if (isIntraday(interval)) {
+            long open = date.atTime(session.open()).atZone(session.zone()).toInstant().toEpochMilli();
+            long close = date.atTime(session.close()).atZone(session.zone()).toInstant().toEpochMilli();
+            long duration = interval.getDuration().toMillis();
+
+            // inside the session, buckets are counted from the open; after it, from the close
+            long anchor = epochMilli < close ? open : close;
+            long start = anchor + Math.floorDiv(epochMilli - anchor, duration) * duration;
+            long end = start + duration;
+            if (start < close && end > close)
+                end = close;
+            return new long[]{start, end};
+        }
+
+        LocalDate first = switch (interval) {
+            case OneWeek -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case OneMonth -> date.withDayOfMonth(1);
+            case OneYear -> date.withDayOfYear(1);
+            default -> date;
+        };
+        LocalDate next = switch (interval) {
+            case OneWeek -> first.plusWeeks(1);
+            case OneMonth -> first.plusMonths(1);
+            case OneYear -> first.plusYears(1);
+            default -> first.plusDays(1);
+        };
+
+        return new long[]{first.atStartOfDay(session.zone()).toInstant().toEpochMilli(),
+                          next.atStartOfDay(session.zone()).toInstant().toEpochMilli()};
+    }
+}
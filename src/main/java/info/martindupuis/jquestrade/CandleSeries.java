@@ -0,0 +1,312 @@
+package info.martindupuis.jquestrade;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * A time-ordered series of OHLC candlesticks, stored column by column in primitive arrays.
+ * <p>
+ * This holds the same data as a collection of {@link QuestradeCandle}, without one object and two timestamp
+ * strings per candle. Timestamps are epoch milliseconds. A series is immutable; {@link #range} returns a view
+ * sharing the columns of the series it comes from.
+ */
+public final class CandleSeries {
+    public static final CandleSeries EMPTY = new Builder(0).build();
+
+    private final long[] starts;
+    private final long[] ends;
+    private final double[] lows;
+    private final double[] highs;
+    private final double[] opens;
+    private final double[] closes;
+    private final long[] volumes;
+    private final double[] vwaps;
+    private final int offset;
+    private final int size;
+
+    private CandleSeries(long[] starts, long[] ends, double[] lows, double[] highs, double[] opens, double[] closes,
+                         long[] volumes, double[] vwaps, int offset, int size) {
+        this.starts = starts;
+        this.ends = ends;
+        this.lows = lows;
+        this.highs = highs;
+        this.opens = opens;
+        this.closes = closes;
+        this.volumes = volumes;
+        this.vwaps = vwaps;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public static CandleSeries of(Collection<QuestradeCandle> candles) {
+        Builder builder = new Builder(candles.size());
+        candles.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Merges many series into one. When candles of different series start at the same time, the one of the
+     * last series wins.
+     */
+    public static CandleSeries concat(List<CandleSeries> series) {
+        Builder builder = new Builder(series.stream().mapToInt(CandleSeries::size).sum());
+        for (CandleSeries part : series)
+            for (int i = 0; i < part.size(); i++)
+                builder.add(part.getStart(i), part.getEnd(i), part.getLow(i), part.getHigh(i), part.getOpen(i),
+                            part.getClose(i), part.getVolume(i), part.getVWAP(i));
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the candlestick start timestamp, in epoch milliseconds.
+     */
+    public long getStart(int index) {
+        return starts[position(index)];
+    }
+
+    /**
+     * Returns the candlestick end timestamp, in epoch milliseconds.
+     */
+    public long getEnd(int index) {
+        return ends[position(index)];
+    }
+
+    public double getLow(int index) {
+        return lows[position(index)];
+    }
+
+    public double getHigh(int index) {
+        return highs[position(index)];
+    }
+
+    public double getOpen(int index) {
+        return opens[position(index)];
+    }
+
+    public double getClose(int index) {
+        return closes[position(index)];
+    }
+
+    public long getVolume(int index) {
+        return volumes[position(index)];
+    }
+
+    public double getVWAP(int index) {
+        return vwaps[position(index)];
+    }
+
+    /**
+     * Returns the candle at the given index, with its timestamps formatted in the given zone.
+     */
+    public QuestradeCandle getCandle(int index, ZoneId zone) {
+        return new QuestradeCandle(Instant.ofEpochMilli(getStart(index)).atZone(zone).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                   Instant.ofEpochMilli(getEnd(index)).atZone(zone).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                   getLow(index),
+                                   getHigh(index),
+                                   getOpen(index),
+                                   getClose(index),
+                                   (int) getVolume(index),
+                                   getVWAP(index));
+    }
+
+    public List<QuestradeCandle> toCandles(ZoneId zone) {
+        List<QuestradeCandle> candles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            candles.add(getCandle(i, zone));
+        return candles;
+    }
+
+    /**
+     * Returns the index of the first candle starting at or after {@code time}, {@link #size()} if there is none.
+     */
+    public int indexOf(Instant time) {
+        int index = Arrays.binarySearch(starts, offset, offset + size, time.toEpochMilli());
+        if (index < 0)
+            return -index - 1 - offset;
+
+        // binarySearch does not guarantee which one of equal keys is found
+        while (index > offset && starts[index - 1] == starts[index])
+            index--;
+        return index - offset;
+    }
+
+    /**
+     * Returns the candles starting within [{@code from}, {@code to}].
+     */
+    public CandleSeries range(Instant from, Instant to) {
+        int first = indexOf(from);
+        int last = first;
+        while (last < size && getStart(last) <= to.toEpochMilli())
+            last++;
+
+        return new CandleSeries(starts, ends, lows, highs, opens, closes, volumes, vwaps, offset + first, last - first);
+    }
+
+    private int position(int index) {
+        return offset + Objects.checkIndex(index, size);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof CandleSeries series) || series.size != size)
+            return false;
+
+        for (int i = 0; i < size; i++)
+            if (getStart(i) != series.getStart(i) || getEnd(i) != series.getEnd(i)
+                    || Double.compare(getLow(i), series.getLow(i)) != 0 || Double.compare(getHigh(i), series.getHigh(i)) != 0
+                    || Double.compare(getOpen(i), series.getOpen(i)) != 0 || Double.compare(getClose(i), series.getClose(i)) != 0
+                    || getVolume(i) != series.getVolume(i) || Double.compare(getVWAP(i), series.getVWAP(i)) != 0)
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < size; i++)
+            hash = 31 * hash + Long.hashCode(getStart(i)) + Double.hashCode(getClose(i));
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return size == 0 ? "CandleSeries[]"
+                         : "CandleSeries[size=%d, from=%s, to=%s]".formatted(size, Instant.ofEpochMilli(getStart(0)), Instant.ofEpochMilli(getEnd(size - 1)));
+    }
+
+    /**
+     * Accumulates candles in any order. {@link #build()} sorts them by start, keeping only the last candle added
+     * for a given start.
+     */
+    public static final class Builder {
+        private long[] starts;
+        private long[] ends;
+        private double[] lows;
+        private double[] highs;
+        private double[] opens;
+        private double[] closes;
+        private long[] volumes;
+        private double[] vwaps;
+        private int size;
+        private boolean sorted = true;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 0);
+            starts = new long[capacity];
+            ends = new long[capacity];
+            lows = new double[capacity];
+            highs = new double[capacity];
+            opens = new double[capacity];
+            closes = new double[capacity];
+            volumes = new long[capacity];
+            vwaps = new double[capacity];
+        }
+
+        public Builder add(QuestradeCandle candle) {
+            return add(OffsetDateTime.parse(candle.start()).toInstant().toEpochMilli(),
+                       OffsetDateTime.parse(candle.end()).toInstant().toEpochMilli(),
+                       candle.low(), candle.high(), candle.open(), candle.close(), candle.volume(), candle.VWAP());
+        }
+
+        public Builder add(long start, long end, double low, double high, double open, double close, long volume, double vwap) {
+            if (size == starts.length)
+                grow();
+            if (size > 0 && start <= starts[size - 1])
+                sorted = false;
+
+            starts[size] = start;
+            ends[size] = end;
+            lows[size] = low;
+            highs[size] = high;
+            opens[size] = open;
+            closes[size] = close;
+            volumes[size] = volume;
+            vwaps[size] = vwap;
+            size++;
+            return this;
+        }
+
+        public CandleSeries build() {
+            if (!sorted)
+                sortAndDeduplicate();
+
+            return new CandleSeries(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size), Arrays.copyOf(lows, size),
+                                    Arrays.copyOf(highs, size), Arrays.copyOf(opens, size), Arrays.copyOf(closes, size),
+                                    Arrays.copyOf(volumes, size), Arrays.copyOf(vwaps, size), 0, size);
+        }
+
+        private void sortAndDeduplicate() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+            // stable sort: among candles with the same start, the last one added stays last
+            Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            double[] sortedLows = new double[size];
+            double[] sortedHighs = new double[size];
+            double[] sortedOpens = new double[size];
+            double[] sortedCloses = new double[size];
+            long[] sortedVolumes = new long[size];
+            double[] sortedVwaps = new double[size];
+
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int from = order[i];
+                if (count > 0 && sortedStarts[count - 1] == starts[from])
+                    count--;
+
+                sortedStarts[count] = starts[from];
+                sortedEnds[count] = ends[from];
+                sortedLows[count] = lows[from];
+                sortedHighs[count] = highs[from];
+                sortedOpens[count] = opens[from];
+                sortedCloses[count] = closes[from];
+                sortedVolumes[count] = volumes[from];
+                sortedVwaps[count] = vwaps[from];
+                count++;
+            }
+
+            starts = sortedStarts;
+            ends = sortedEnds;
+            lows = sortedLows;
+            highs = sortedHighs;
+            opens = sortedOpens;
+            closes = sortedCloses;
+            volumes = sortedVolumes;
+            vwaps = sortedVwaps;
+            size = count;
+            sorted = true;
+        }
+
+        private void grow() {
+            int capacity = Math.max(16, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            opens = Arrays.copyOf(opens, capacity);
+            closes = Arrays.copyOf(closes, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+            vwaps = Arrays.copyOf(vwaps, capacity);
+        }
+    }
+}
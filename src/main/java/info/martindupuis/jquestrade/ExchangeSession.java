@@ -0,0 +1,23 @@
+package info.martindupuis.jquestrade;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * The regular trading session of an exchange, used to align resampled candles the way the exchange does.
+ *
+ * @param zone  The time zone of the exchange. Days, weeks, months and years start at midnight in this zone.
+ * @param open  The regular market opening time. Intraday candles are aligned on it.
+ * @param close The regular market closing time. No intraday candle runs past it.
+ */
+public record ExchangeSession(ZoneId zone, LocalTime open, LocalTime close) {
+    /**
+     * The regular session of the TSX, NYSE and NASDAQ, from 9:30 to 16:00 Eastern time.
+     */
+    public static final ExchangeSession NORTH_AMERICA = new ExchangeSession(ZoneId.of("America/Toronto"), LocalTime.of(9, 30), LocalTime.of(16, 0));
+
+    public ExchangeSession {
+        if (!open.isBefore(close))
+            throw new IllegalArgumentException("Session open (%s) must be before its close (%s).".formatted(open, close));
+    }
+}
@@ -1,9 +1,16 @@
 package info.martindupuis.jquestrade;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /** Represents an order. 
  * @see <a href="https://www.questrade.com/api/documentation/rest-operations/account-calls/accounts-id-orders">
  * The order properties documentation</a>
  */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+                getterVisibility = JsonAutoDetect.Visibility.NONE,
+                isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Order {
     private int id;
     private String symbol;
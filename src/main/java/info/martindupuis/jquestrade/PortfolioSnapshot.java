@@ -0,0 +1,28 @@
+package info.martindupuis.jquestrade;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The accounts of a Questrade user, with their positions and balances, and the quotes of every symbol held.
+ *
+ * @param takenAt  When the snapshot was requested.
+ * @param accounts Every account, in the order Questrade returned them.
+ * @param quotes   The quotes of the symbols held in any account, keyed by {@code symbolId}, all from the same request.
+ */
+public record PortfolioSnapshot(Instant takenAt,
+                                List<AccountSnapshot> accounts,
+                                Map<Integer, Quote> quotes) {
+
+    /**
+     * @param account   The account.
+     * @param positions Its positions.
+     * @param balances  Its balances.
+     */
+    public record AccountSnapshot(QuestradeAccount account,
+                                  Set<QuestradePosition> positions,
+                                  QuestadeBalances balances) {
+    }
+}
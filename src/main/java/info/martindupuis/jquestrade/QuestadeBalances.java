@@ -1,11 +1,18 @@
 package info.martindupuis.jquestrade;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /** Represents the overall encompassing balance for an account.
  * Has methods to access per-currency blalances and combined balances.
  * @see <a href="https://www.questrade.com/api/documentation/rest-operations/account-calls/accounts-id-balances">
  * Accounts balances API documentation</a> 
  * for more insight.
  */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+                getterVisibility = JsonAutoDetect.Visibility.NONE,
+                isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class QuestadeBalances {
 
     private QuestradeBalance[] perCurrencyBalances;
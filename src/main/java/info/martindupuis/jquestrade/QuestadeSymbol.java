@@ -1,5 +1,7 @@
 package info.martindupuis.jquestrade;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents a symbol/ticker.
  *
@@ -14,12 +16,12 @@ package info.martindupuis.jquestrade;
  * @see <a href="https://www.questrade.com/api/documentation/rest-operations/market-calls/symbols-search">
  * The symbol search documentation</a>
  */
-public record QuestadeSymbol(String theSymbol,
+public record QuestadeSymbol(@JsonProperty("symbol") String theSymbol,
                              int symbolId,
                              String description,
                              String securityType,
                              String listingExchange,
-                             boolean tradable,
-                             boolean quotable,
+                             @JsonProperty("isTradable") boolean tradable,
+                             @JsonProperty("isQuotable") boolean quotable,
                              String currency) {
 }
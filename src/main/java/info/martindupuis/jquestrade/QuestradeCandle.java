@@ -1,5 +1,7 @@
 package info.martindupuis.jquestrade;
 
+import java.time.Duration;
+
 /**
  * Represents historical market data in the form of OHLC candlesticks for a specified symbol.
  *
@@ -31,21 +33,36 @@ public record QuestradeCandle(
      * The Historical Data Granularity (candle interval) documentation</a>
      */
     public enum Interval {
-        OneMinute,
-        TwoMinutes,
-        ThreeMinutes,
-        FourMinutes,
-        FiveMinutes,
-        TenMinutes,
-        FifteenMinutes,
-        TwentyMinutes,
-        HalfHour,
-        OneHour,
-        TwoHours,
-        FourHours,
-        OneDay,
-        OneWeek,
-        OneMonth,
-        OneYear
+        OneMinute(Duration.ofMinutes(1)),
+        TwoMinutes(Duration.ofMinutes(2)),
+        ThreeMinutes(Duration.ofMinutes(3)),
+        FourMinutes(Duration.ofMinutes(4)),
+        FiveMinutes(Duration.ofMinutes(5)),
+        TenMinutes(Duration.ofMinutes(10)),
+        FifteenMinutes(Duration.ofMinutes(15)),
+        TwentyMinutes(Duration.ofMinutes(20)),
+        HalfHour(Duration.ofMinutes(30)),
+        OneHour(Duration.ofHours(1)),
+        TwoHours(Duration.ofHours(2)),
+        FourHours(Duration.ofHours(4)),
+        OneDay(Duration.ofDays(1)),
+        OneWeek(Duration.ofDays(7)),
+        OneMonth(Duration.ofDays(28)),
+        OneYear(Duration.ofDays(365));
+
+        private final Duration duration;
+
+        Interval(Duration duration) {
+            this.duration = duration;
+        }
+
+        /**
+         * Returns the duration of one candle. For months and years, this is their shortest possible duration.
+         *
+         * @return The duration of one candle.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
     }
 }
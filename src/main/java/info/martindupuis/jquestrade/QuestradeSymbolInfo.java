@@ -1,5 +1,7 @@
 package info.martindupuis.jquestrade;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents information about a symbol/ticker
  *
@@ -48,7 +50,7 @@ public record QuestradeSymbolInfo(String symbol,
                                   double eps,
                                   double pe,
                                   double dividend,
-                                  double symbolYield,
+                                  @JsonProperty("yield") double symbolYield,
                                   String exDate,
                                   long marketCap,
                                   int tradeUnit,
@@ -62,8 +64,8 @@ public record QuestradeSymbolInfo(String symbol,
                                   String optionExpiryDate,
                                   String dividendDate,
                                   String optionStrikePrice,
-                                  boolean tradable,
-                                  boolean quotable,
+                                  @JsonProperty("isTradable") boolean tradable,
+                                  @JsonProperty("isQuotable") boolean quotable,
                                   boolean hasOptions,
                                   String currency,
                                   MinTick[] minTicks,
@@ -71,6 +73,13 @@ public record QuestradeSymbolInfo(String symbol,
                                   String industryGroup,
                                   String industrySubgroup) {
 
+    /**
+     * Returns the subset of this information also returned by a symbol search.
+     */
+    public QuestadeSymbol toSymbol() {
+        return new QuestadeSymbol(symbol, symbolId, description, securityType, listingExchange, tradable, quotable, currency);
+    }
+
     /**
      * Represents a min tick.
      *
@@ -78,7 +87,7 @@ public record QuestradeSymbolInfo(String symbol,
      * @param minPriceIncrement Returns the minimum price increment.
      */
     public record MinTick(double pivot,
-                          double minPriceIncrement) {
+                          @JsonProperty("minTick") double minPriceIncrement) {
     }
 
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package info.martindupuis.jquestrade;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /** Represents a single Level 1 market data quote for a ticker. <br><br>
  * <b>IMPORTANT NOTE:</b> The Questrade user needs to be subscribed to a real-time data package, 
  * to receive market quotes in real-time, otherwise call to get quote is considered snap quote and 
@@ -8,6 +11,10 @@ package info.martindupuis.jquestrade;
  * @see <a href="https://www.questrade.com/api/documentation/rest-operations/market-calls/markets-quotes-id">
  * The symbol quote documentation</a>
  */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+                getterVisibility = JsonAutoDetect.Visibility.NONE,
+                isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Quote {
     private String symbol;
     private long symbolId;
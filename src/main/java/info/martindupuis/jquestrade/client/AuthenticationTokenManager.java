@@ -0,0 +1,277 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.exceptions.AuthenticationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the current {@link AuthenticationToken} and keeps it fresh.
+ * <p>
+ * The token is refreshed in the background a little before it expires, so callers of {@link #getToken()}
+ * normally get a valid token with a single volatile read. Questrade refresh tokens can only be used once,
+ * so at most one refresh is ever in flight: every thread noticing an expired token waits on that same refresh.
+ * <p>
+ * Given a {@link TokenStore}, every new token is saved as soon as it is received, and a new process can start
+ * from the saved token instead of authenticating again, see {@link #authenticate(QuestradeWebClient, String, TokenStore)}.
+ */
+@Slf4j
+public class AuthenticationTokenManager implements AutoCloseable {
+    public static final Duration DEFAULT_REFRESH_MARGIN = Duration.ofMinutes(2);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+
+    private final QuestradeWebClient webClient;
+    private final Duration refreshMargin;
+    private final ScheduledExecutorService scheduler;
+    private final QuestradeMetrics metrics;
+    private final TokenStore tokenStore;
+
+    private final AtomicReference<AuthenticationToken> currentToken = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<AuthenticationToken>> refreshInFlight = new AtomicReference<>();
+    private volatile ScheduledFuture<?> scheduledRefresh;
+    private volatile boolean closed;
+
+    public AuthenticationTokenManager(QuestradeWebClient webClient, AuthenticationToken initialToken) {
+        this(webClient, initialToken, DEFAULT_REFRESH_MARGIN);
+    }
+
+    /**
+     * @param webClient     The client used to call {@code authenticate(refreshToken)}.
+     * @param initialToken  The token to start with. It will be refreshed right away if it is already expired.
+     * @param refreshMargin How long before {@code expires_at} the background refresh happens.
+     */
+    public AuthenticationTokenManager(QuestradeWebClient webClient, AuthenticationToken initialToken, Duration refreshMargin) {
+        this(webClient, initialToken, refreshMargin, Metrics.globalRegistry);
+    }
+
+    /**
+     * Same as {@link #AuthenticationTokenManager(QuestradeWebClient, AuthenticationToken, Duration)}, counting
+     * refreshes in the given registry.
+     */
+    public AuthenticationTokenManager(QuestradeWebClient webClient, AuthenticationToken initialToken, Duration refreshMargin,
+                                      MeterRegistry meterRegistry) {
+        this(webClient, initialToken, refreshMargin, meterRegistry, TokenStore.NONE);
+    }
+
+    /**
+     * Same as {@link #AuthenticationTokenManager(QuestradeWebClient, AuthenticationToken, Duration, MeterRegistry)},
+     * saving the initial token and each refreshed one in the given store.
+     */
+    public AuthenticationTokenManager(QuestradeWebClient webClient, AuthenticationToken initialToken, Duration refreshMargin,
+                                      MeterRegistry meterRegistry, TokenStore tokenStore) {
+        this.webClient = webClient;
+        this.refreshMargin = refreshMargin;
+        this.metrics = new QuestradeMetrics(meterRegistry);
+        this.tokenStore = tokenStore;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> Thread.ofPlatform()
+                                                                                      .name("questrade-token-refresh")
+                                                                                      .daemon()
+                                                                                      .unstarted(runnable));
+        save(initialToken);
+        currentToken.set(initialToken);
+        scheduleRefresh(initialToken);
+    }
+
+    /**
+     * Authenticates with the given refresh token and returns a manager owning the resulting token.
+     */
+    public static AuthenticationTokenManager authenticate(QuestradeWebClient webClient, String refreshToken) {
+        return new AuthenticationTokenManager(webClient, webClient.authenticate(refreshToken));
+    }
+
+    /**
+     * Returns a manager owning the token saved in the store if it is still valid, without calling the server.
+     * Otherwise authenticates with the saved refresh token, the latest one handed out, then with the given one if
+     * the saved one is missing or rejected.
+     *
+     * @param refreshToken The refresh token from the configuration, only used if the store cannot do without it.
+     */
+    public static AuthenticationTokenManager authenticate(QuestradeWebClient webClient, String refreshToken, TokenStore tokenStore) {
+        Optional<AuthenticationToken> stored = load(tokenStore);
+        AuthenticationToken token;
+        if (stored.isPresent() && stored.get().isValid()) {
+            log.info("AuthenticationTokenManager: action=authenticate reusing stored token expiresAt={}", stored.get().expires_at());
+            token = stored.get();
+        } else {
+            token = authenticate(webClient, refreshToken, stored);
+        }
+
+        return new AuthenticationTokenManager(webClient, token, DEFAULT_REFRESH_MARGIN, Metrics.globalRegistry, tokenStore);
+    }
+
+    private static AuthenticationToken authenticate(QuestradeWebClient webClient, String refreshToken, Optional<AuthenticationToken> stored) {
+        if (stored.isPresent() && stored.get().refresh_token() != null && !stored.get().refresh_token().equals(refreshToken)) {
+            try {
+                AuthenticationToken token = webClient.authenticate(stored.get().refresh_token());
+                if (token != null)
+                    return token;
+            } catch (RuntimeException e) {
+                log.warn("AuthenticationTokenManager: action=authenticate stored refresh token rejected, using the configured one", e);
+            }
+        }
+        return webClient.authenticate(refreshToken);
+    }
+
+    /**
+     * Returns the current token. Only blocks if the token has actually expired, in which case the caller
+     * waits for the (single) refresh in progress.
+     */
+    public AuthenticationToken getToken() {
+        AuthenticationToken token = currentToken.get();
+        if (!token.isExpired())
+            return token;
+
+        log.info("AuthenticationTokenManager: action=getToken token expired at {}, waiting for refresh", token.expires_at());
+        try {
+            return refresh(token).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Forces a refresh of the current token, unless one is already in progress.
+     *
+     * @return The refresh in progress.
+     */
+    public CompletableFuture<AuthenticationToken> refresh() {
+        return refresh(currentToken.get());
+    }
+
+    /*
+     * Refreshes staleToken, unless another thread already replaced it.
+     * The thread winning the compareAndSet does the refresh, all the others get its future.
+     */
+    private CompletableFuture<AuthenticationToken> refresh(AuthenticationToken staleToken) {
+        while (true) {
+            if (closed)
+                return CompletableFuture.failedFuture(closedException());
+
+            CompletableFuture<AuthenticationToken> inFlight = refreshInFlight.get();
+            if (inFlight != null)
+                return inFlight;
+
+            AuthenticationToken token = currentToken.get();
+            if (token != staleToken)
+                return CompletableFuture.completedFuture(token);
+
+            CompletableFuture<AuthenticationToken> attempt = new CompletableFuture<>();
+            if (refreshInFlight.compareAndSet(null, attempt)) {
+                try {
+                    scheduler.execute(() -> doRefresh(staleToken, attempt));
+                } catch (RejectedExecutionException e) {
+                    // closed since the check above
+                    refreshInFlight.compareAndSet(attempt, null);
+                    attempt.completeExceptionally(closedException());
+                }
+                return attempt;
+            }
+        }
+    }
+
+    private void doRefresh(AuthenticationToken staleToken, CompletableFuture<AuthenticationToken> attempt) {
+        log.info("AuthenticationTokenManager: action=refresh expiresAt={}", staleToken.expires_at());
+        try {
+            AuthenticationToken newToken = authenticateAfter(staleToken);
+            if (newToken == null)
+                throw new AuthenticationException("Cannot retrieve auth token");
+
+            // the previous refresh token is used up, the new one must be saved before anything else
+            save(newToken);
+            currentToken.set(newToken);
+            refreshInFlight.set(null);
+            metrics.recordTokenRefresh(true);
+            attempt.complete(newToken);
+            scheduleRefresh(newToken);
+        } catch (RuntimeException e) {
+            log.error("AuthenticationTokenManager: action=refresh failed, retrying in {}", RETRY_DELAY, e);
+            refreshInFlight.set(null);
+            metrics.recordTokenRefresh(false);
+            attempt.completeExceptionally(e);
+            scheduleAt(RETRY_DELAY, staleToken);
+        }
+    }
+
+    /*
+     * Another process sharing the store may have refreshed first, using up the refresh token of staleToken:
+     * its token is taken over if it does not need a refresh yet, or refreshed with its own refresh token.
+     */
+    private AuthenticationToken authenticateAfter(AuthenticationToken staleToken) {
+        AuthenticationToken latest = load(tokenStore).filter(stored -> stored.expires_at().isAfter(staleToken.expires_at()))
+                                                     .orElse(staleToken);
+        if (latest != staleToken && latest.expires_at().isAfter(ZonedDateTime.now().plus(refreshMargin))) {
+            log.info("AuthenticationTokenManager: action=refresh taking over stored token expiresAt={}", latest.expires_at());
+            return latest;
+        }
+
+        return webClient.authenticate(latest.refresh_token());
+    }
+
+    private static Optional<AuthenticationToken> load(TokenStore tokenStore) {
+        try {
+            return tokenStore.load();
+        } catch (RuntimeException e) {
+            log.warn("AuthenticationTokenManager: action=load cannot load stored token", e);
+            return Optional.empty();
+        }
+    }
+
+    private void save(AuthenticationToken token) {
+        try {
+            tokenStore.save(token);
+        } catch (RuntimeException e) {
+            log.error("AuthenticationTokenManager: action=save cannot save token, the next start will authenticate again", e);
+        }
+    }
+
+    private void scheduleRefresh(AuthenticationToken token) {
+        Duration untilRefresh = Duration.between(ZonedDateTime.now(), token.expires_at()).minus(refreshMargin);
+        scheduleAt(untilRefresh.isNegative() ? Duration.ZERO : untilRefresh, token);
+    }
+
+    /*
+     * Replaces the scheduled refresh. The task only refreshes the token it was scheduled for: once another refresh
+     * replaced it, a task left over does nothing instead of using up the refresh token of the new one.
+     */
+    private synchronized void scheduleAt(Duration delay, AuthenticationToken token) {
+        if (scheduler.isShutdown())
+            return;
+
+        ScheduledFuture<?> previous = scheduledRefresh;
+        if (previous != null)
+            previous.cancel(false);
+
+        log.debug("AuthenticationTokenManager: action=scheduleRefresh in {}", delay);
+        scheduledRefresh = scheduler.schedule(() -> refresh(token), delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("AuthenticationTokenManager is closed, the token cannot be refreshed");
+    }
+
+    /**
+     * Stops refreshing the token. A refresh still waited for fails, as do the next ones.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        ScheduledFuture<?> pending = scheduledRefresh;
+        if (pending != null)
+            pending.cancel(false);
+        scheduler.shutdownNow();
+
+        // a refresh dropped from the queue would never complete
+        CompletableFuture<AuthenticationToken> inFlight = refreshInFlight.getAndSet(null);
+        if (inFlight != null)
+            inFlight.completeExceptionally(closedException());
+    }
+}
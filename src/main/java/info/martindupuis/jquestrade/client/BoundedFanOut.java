@@ -0,0 +1,107 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking calls on virtual threads, with at most {@code maxConcurrency} of them in flight at once
+ * across all the batches submitted to the same instance.
+ * <p>
+ * The Spring bean is shared by the clients fanning out calls on behalf of their callers, so they all stay within
+ * {@link WebClientProperties#getMaxConcurrentRequests()} together. A call must not fan out through the instance
+ * it runs on: it would hold a slot while waiting for more.
+ */
+@Slf4j
+@Component
+class BoundedFanOut {
+    private final Semaphore inFlight;
+
+    @Autowired
+    BoundedFanOut(WebClientProperties properties) {
+        this(properties.getMaxConcurrentRequests());
+    }
+
+    BoundedFanOut(int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("maxConcurrentRequests must be at least 1, was %d".formatted(maxConcurrency));
+
+        this.inFlight = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Runs {@code fetch} for every key, without letting one failure abort the others.
+     *
+     * @return The result of every key, in the order of {@code keys}.
+     */
+    <K, V> Map<K, FetchResult<V>> fetchAll(Collection<K> keys, Function<K, V> fetch) {
+        Map<K, Future<FetchResult<V>>> futures = new LinkedHashMap<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            keys.forEach(key -> futures.put(key, executor.submit(() -> fetchOne(key, fetch))));
+        }
+
+        Map<K, FetchResult<V>> results = new LinkedHashMap<>();
+        futures.forEach((key, future) -> results.put(key, future.resultNow()));
+
+        return results;
+    }
+
+    /**
+     * Runs one call on its own virtual thread, counted against the same cap as the batches.
+     * Cancelling the future interrupts the call, or drops it if it is still waiting for a slot.
+     */
+    <V> CompletableFuture<V> supplyAsync(Supplier<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        Thread thread = Thread.ofVirtual().unstarted(() -> {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(new CancellationException("Interrupted before calling"));
+                return;
+            }
+
+            try {
+                if (!future.isDone())
+                    future.complete(call.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled())
+                thread.interrupt();
+        });
+        thread.start();
+
+        return future;
+    }
+
+    private <K, V> FetchResult<V> fetchOne(K key, Function<K, V> fetch) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FetchResult.failure(new CancellationException("Interrupted before fetching %s".formatted(key)));
+        }
+
+        try {
+            return FetchResult.success(fetch.apply(key));
+        } catch (RuntimeException e) {
+            log.warn("BoundedFanOut: action=fetch key={} failed: {}", key, e.getMessage());
+            return FetchResult.failure(e);
+        } finally {
+            inFlight.release();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Caches the responses of another {@link QuestradeWebClient}, one size-bounded cache per endpoint.
+ * <p>
+ * Accounts and positions are kept for a few seconds. Activities and candles of a period which is over never
+ * change, so they are kept until evicted; those of a period still running expire quickly. Concurrent calls for
+ * the same missing entry share a single call to the delegate, and failures are never cached.
+ * <p>
+ * Accounts are cached per access token. Positions and activities are cached per account number, so they are only
+ * returned to callers holding that account. Candles are the same for everyone and are shared. Balances,
+ * orders, executions, quotes and symbols are never cached here, {@link SymbolIndex} keeps the symbols.
+ * <p>
+ * Hits and misses of each cache are published to Micrometer as {@code cache.*} meters tagged
+ * {@code cache=questrade.<endpoint>}.
+ */
+@Service
+@Primary
+public class CachingQuestradeWebClient implements QuestradeWebClient {
+    private final QuestradeWebClient delegate;
+    private final Clock clock;
+
+    private final Cache<String, Set<QuestradeAccount>> accounts;
+    private final Cache<String, Set<QuestradePosition>> positions;
+    private final Cache<ActivitiesKey, Set<QuestradeActivity>> activities;
+    private final Cache<CandlesKey, Set<QuestradeCandle>> candles;
+    private final Cache<CandlesKey, CandleSeries> candleSeries;
+
+    record ActivitiesKey(String accountNumber, RequestPeriod period) {
+    }
+
+    record CandlesKey(int symbolId, RequestPeriod period, QuestradeCandle.Interval interval) {
+    }
+
+    @Autowired
+    public CachingQuestradeWebClient(QuestradeWebClientImpl delegate, WebClientProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(delegate, properties.getCache(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public CachingQuestradeWebClient(QuestradeWebClient delegate, WebClientProperties.Cache properties, MeterRegistry meterRegistry) {
+        this(delegate, properties, meterRegistry, Clock.systemUTC());
+    }
+
+    CachingQuestradeWebClient(QuestradeWebClient delegate, WebClientProperties.Cache properties, MeterRegistry meterRegistry, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+
+        accounts = newBuilder(properties).expireAfterWrite(properties.getAccountsTtl()).build();
+        positions = newBuilder(properties).expireAfterWrite(properties.getPositionsTtl()).build();
+        activities = newBuilder(properties).expireAfter(new PeriodExpiry<ActivitiesKey, Set<QuestradeActivity>>(
+                key -> key.period().periodEnd().toInstant(), properties.getOpenPeriodTtl())).build();
+        candles = newBuilder(properties).expireAfter(new PeriodExpiry<CandlesKey, Set<QuestradeCandle>>(
+                CachingQuestradeWebClient::lastCandleEnd, properties.getOpenPeriodTtl())).build();
+        candleSeries = newBuilder(properties).expireAfter(new PeriodExpiry<CandlesKey, CandleSeries>(
+                CachingQuestradeWebClient::lastCandleEnd, properties.getOpenPeriodTtl())).build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, "questrade.accounts");
+        CaffeineCacheMetrics.monitor(meterRegistry, positions, "questrade.positions");
+        CaffeineCacheMetrics.monitor(meterRegistry, activities, "questrade.activities");
+        CaffeineCacheMetrics.monitor(meterRegistry, candles, "questrade.candles");
+        CaffeineCacheMetrics.monitor(meterRegistry, candleSeries, "questrade.candleSeries");
+    }
+
+    private static Caffeine<Object, Object> newBuilder(WebClientProperties.Cache properties) {
+        return Caffeine.newBuilder()
+                       .maximumSize(properties.getMaximumSize())
+                       .recordStats();
+    }
+
+    /*
+     * The last candle of a period can end after the period itself: it only stops changing once that candle is closed.
+     */
+    private static Instant lastCandleEnd(CandlesKey key) {
+        return key.period().periodEnd().toInstant().plus(key.interval().getDuration());
+    }
+
+    @Override
+    public AuthenticationToken authenticate(String refreshToken) {
+        return delegate.authenticate(refreshToken);
+    }
+
+    @Override
+    public Set<QuestradeAccount> getAccounts(AuthenticationToken authToken) {
+        return accounts.get(authToken.access_token(), key -> Collections.unmodifiableSet(delegate.getAccounts(authToken)));
+    }
+
+    @Override
+    public Set<QuestradeActivity> getAccountActivities(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
+        return activities.get(new ActivitiesKey(account.number(), period),
+                              key -> Collections.unmodifiableSet(delegate.getAccountActivities(authToken, account, period)));
+    }
+
+    @Override
+    public Set<QuestradePosition> getPositions(AuthenticationToken authToken, QuestradeAccount account) {
+        return positions.get(account.number(), key -> Collections.unmodifiableSet(delegate.getPositions(authToken, account)));
+    }
+
+    @Override
+    public QuestadeBalances getBalances(AuthenticationToken authToken, QuestradeAccount account) {
+        return delegate.getBalances(authToken, account);
+    }
+
+    @Override
+    public List<QuestradeExecution> getExecutions(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
+        return delegate.getExecutions(authToken, account, period);
+    }
+
+    @Override
+    public List<Order> getOrders(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period, OrderStateFilter stateFilter) {
+        return delegate.getOrders(authToken, account, period, stateFilter);
+    }
+
+    @Override
+    public Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period) {
+        return getPositionCandles(authToken, position, period, QuestradeCandle.Interval.OneDay);
+    }
+
+    @Override
+    public Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        return candles.get(new CandlesKey(position.symbolId(), period, interval),
+                           key -> Collections.unmodifiableSet(delegate.getPositionCandles(authToken, position, period, interval)));
+    }
+
+    @Override
+    public CandleSeries getPositionCandleSeries(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        return candleSeries.get(new CandlesKey(position.symbolId(), period, interval),
+                                key -> delegate.getPositionCandleSeries(authToken, position, period, interval));
+    }
+
+    @Override
+    public List<QuestadeSymbol> searchSymbols(AuthenticationToken authToken, String prefix) {
+        return delegate.searchSymbols(authToken, prefix);
+    }
+
+    @Override
+    public List<QuestradeSymbolInfo> getSymbols(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        return delegate.getSymbols(authToken, symbolIds);
+    }
+
+    @Override
+    public List<Quote> getQuotes(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        return delegate.getQuotes(authToken, symbolIds);
+    }
+
+    @Override
+    public int getQuoteStreamPort(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        return delegate.getQuoteStreamPort(authToken, symbolIds);
+    }
+
+    /**
+     * Drops every cached response.
+     */
+    public void invalidateAll() {
+        accounts.invalidateAll();
+        positions.invalidateAll();
+        activities.invalidateAll();
+        candles.invalidateAll();
+        candleSeries.invalidateAll();
+    }
+
+    /*
+     * Keeps responses of periods over until they are evicted, and those of periods still running for openPeriodTtl.
+     */
+    private class PeriodExpiry<K, V> implements Expiry<K, V> {
+        private final Function<K, Instant> periodEnd;
+        private final long openPeriodTtlNanos;
+
+        private PeriodExpiry(Function<K, Instant> periodEnd, Duration openPeriodTtl) {
+            this.periodEnd = periodEnd;
+            this.openPeriodTtlNanos = openPeriodTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(K key, V value, long currentTime) {
+            return periodEnd.apply(key).isBefore(clock.instant()) ? Long.MAX_VALUE : openPeriodTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
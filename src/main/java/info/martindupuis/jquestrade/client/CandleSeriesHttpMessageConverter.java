@@ -0,0 +1,101 @@
+package info.martindupuis.jquestrade.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import info.martindupuis.jquestrade.CandleSeries;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+
+/**
+ * Reads a candles response straight into a {@link CandleSeries}, streaming through the JSON body without
+ * creating any intermediate object per candle.
+ *
+ * @see <a href="https://www.questrade.com/api/documentation/rest-operations/market-calls/markets-candles-id">
+ * Candles API documentation</a>
+ */
+class CandleSeriesHttpMessageConverter extends AbstractHttpMessageConverter<CandleSeries> {
+    private static final int EXPECTED_NB_CANDLES = 256;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    CandleSeriesHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CandleSeries.class == clazz;
+    }
+
+    @Override
+    protected CandleSeries readInternal(Class<? extends CandleSeries> clazz, HttpInputMessage inputMessage) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputMessage.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new HttpMessageNotReadableException("Candles response is not a JSON object", inputMessage);
+
+            CandleSeries.Builder builder = CandleSeries.builder(EXPECTED_NB_CANDLES);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+
+                if ("candles".equals(field) && parser.currentToken() == JsonToken.START_ARRAY)
+                    readCandles(parser, builder);
+                else
+                    parser.skipChildren();
+            }
+
+            return builder.build();
+        }
+    }
+
+    private static void readCandles(JsonParser parser, CandleSeries.Builder builder) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            long start = 0;
+            long end = 0;
+            double low = 0;
+            double high = 0;
+            double open = 0;
+            double close = 0;
+            long volume = 0;
+            double vwap = 0;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL)
+                    continue;
+
+                switch (field) {
+                    case "start" -> start = toEpochMilli(parser.getText());
+                    case "end" -> end = toEpochMilli(parser.getText());
+                    case "low" -> low = parser.getDoubleValue();
+                    case "high" -> high = parser.getDoubleValue();
+                    case "open" -> open = parser.getDoubleValue();
+                    case "close" -> close = parser.getDoubleValue();
+                    case "volume" -> volume = parser.getLongValue();
+                    case "VWAP" -> vwap = parser.getDoubleValue();
+                    default -> parser.skipChildren();
+                }
+            }
+
+            builder.add(start, end, low, high, open, close, volume, vwap);
+        }
+    }
+
+    private static long toEpochMilli(String isoDateTime) {
+        return OffsetDateTime.parse(isoDateTime).toInstant().toEpochMilli();
+    }
+
+    @Override
+    protected void writeInternal(CandleSeries candleSeries, HttpOutputMessage outputMessage) {
+        throw new HttpMessageNotWritableException("Candle series are only read from Questrade responses");
+    }
+}
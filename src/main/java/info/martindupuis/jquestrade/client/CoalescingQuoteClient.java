@@ -0,0 +1,101 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.Quote;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses the quote requests of concurrent callers into a single call to {@link QuestradeWebClient#getQuotes}.
+ * <p>
+ * The first caller opens a batch which stays open for {@link WebClientProperties.Quotes#getCoalescingWindow()}.
+ * The symbols asked for by every caller joining it in the meantime are requested together once the window is
+ * over, and each caller gets the quotes of its own symbols. Callers holding different access tokens never share a batch.
+ */
+@Slf4j
+@Service
+public class CoalescingQuoteClient {
+    private final QuestradeWebClient webClient;
+    private final Executor sendAfterWindow;
+
+    private final Map<String, Batch> openBatches = new HashMap<>();
+
+    private static class Batch {
+        private final AuthenticationToken authToken;
+        private final Set<Integer> symbolIds = new LinkedHashSet<>();
+        private final CompletableFuture<Map<Integer, Quote>> quotes = new CompletableFuture<>();
+
+        private Batch(AuthenticationToken authToken) {
+            this.authToken = authToken;
+        }
+    }
+
+    public CoalescingQuoteClient(QuestradeWebClient webClient, WebClientProperties properties) {
+        this.webClient = webClient;
+        // the call itself blocks, so each batch is sent from its own virtual thread
+        this.sendAfterWindow = CompletableFuture.delayedExecutor(properties.getQuotes().getCoalescingWindow().toNanos(), TimeUnit.NANOSECONDS,
+                                                                 runnable -> Thread.ofVirtual().name("quote-batch").start(runnable));
+    }
+
+    /**
+     * Returns the quotes of the given symbols, waiting for the batch they joined to be sent.
+     *
+     * @return The quotes, in the order of {@code symbolIds}. Symbols unknown to Questrade are left out.
+     */
+    public List<Quote> getQuotes(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        if (symbolIds.isEmpty())
+            return List.of();
+
+        Map<Integer, Quote> quotes;
+        try {
+            quotes = join(authToken, symbolIds).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+
+        return new LinkedHashSet<>(symbolIds).stream()
+                                             .map(quotes::get)
+                                             .filter(Objects::nonNull)
+                                             .toList();
+    }
+
+    private CompletableFuture<Map<Integer, Quote>> join(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        synchronized (openBatches) {
+            Batch batch = openBatches.get(authToken.access_token());
+            if (batch == null) {
+                Batch newBatch = new Batch(authToken);
+                openBatches.put(authToken.access_token(), newBatch);
+                CompletableFuture.runAsync(() -> send(newBatch), sendAfterWindow);
+                batch = newBatch;
+            }
+            batch.symbolIds.addAll(symbolIds);
+            return batch.quotes;
+        }
+    }
+
+    private void send(Batch batch) {
+        synchronized (openBatches) {
+            openBatches.remove(batch.authToken.access_token(), batch);
+        }
+        // closed: no caller adds symbols anymore
+        log.info("CoalescingQuoteClient: action=send nbSymbols={}", batch.symbolIds.size());
+
+        try {
+            Map<Integer, Quote> quotes = new HashMap<>();
+            webClient.getQuotes(batch.authToken, batch.symbolIds)
+                     .forEach(quote -> quotes.put((int) quote.getSymbolId(), quote));
+            batch.quotes.complete(quotes);
+        } catch (RuntimeException e) {
+            batch.quotes.completeExceptionally(e);
+        }
+    }
+}
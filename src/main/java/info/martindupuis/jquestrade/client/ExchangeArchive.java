@@ -0,0 +1,155 @@
+package info.martindupuis.jquestrade.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.*;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The format of the archives written by {@link ExchangeRecorder} and read by {@link ExchangeReplayer}: a GZIP
+ * compressed stream starting with a header, followed by one entry per exchange, in the order they were answered.
+ * <p>
+ * An entry holds the signature of the request, then the status, headers and body of its response. Archives hold
+ * the access and refresh tokens returned by the login server: keep them as private as the tokens themselves.
+ */
+final class ExchangeArchive {
+    static final int MAGIC = 0x4A515241; // JQRA
+    static final int VERSION = 1;
+    static final byte ENTRY = 1;
+    static final byte END = 0;
+
+    private static final Pattern REFRESH_TOKEN = Pattern.compile("(?<=[?&]refresh_token=)[^&]*");
+
+    /**
+     * A response as it was recorded.
+     */
+    record Exchange(String signature, int status, HttpHeaders headers, byte[] body) {
+    }
+
+    private ExchangeArchive() {
+    }
+
+    /**
+     * Returns the key requests are recorded and replayed under: their method and URI. The refresh token sent to
+     * the login server is left out, it changes with every authentication.
+     */
+    static String signature(HttpMethod method, URI uri) {
+        String target = uri.toString();
+        if (target.contains("refresh_token="))
+            target = REFRESH_TOKEN.matcher(target).replaceAll("*");
+
+        return method.name() + ' ' + target;
+    }
+
+    static void writeHeader(DataOutputStream out, Instant recordedAt) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(recordedAt.toEpochMilli());
+    }
+
+    static void writeEntry(DataOutputStream out, Exchange exchange) throws IOException {
+        out.writeByte(ENTRY);
+        out.writeUTF(exchange.signature());
+        out.writeInt(exchange.status());
+        out.writeShort(exchange.headers().size());
+        for (Map.Entry<String, List<String>> header : exchange.headers().entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeShort(header.getValue().size());
+            for (String value : header.getValue())
+                out.writeUTF(value);
+        }
+        out.writeInt(exchange.body().length);
+        out.write(exchange.body());
+    }
+
+    /**
+     * Reads the archive, passing its exchanges in the order they were recorded.
+     * <p>
+     * An archive whose recording did not stop cleanly is read up to its last complete entry.
+     *
+     * @return When the recording started.
+     */
+    static Instant read(InputStream archive, Consumer<Exchange> exchanges) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(archive, 1 << 16), 1 << 16));
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a Questrade exchange archive");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported exchange archive version %d".formatted(version));
+        Instant recordedAt = Instant.ofEpochMilli(in.readLong());
+
+        try {
+            while (in.readByte() == ENTRY) {
+                String signature = in.readUTF();
+                int status = in.readInt();
+                HttpHeaders headers = new HttpHeaders();
+                int nbHeaders = in.readUnsignedShort();
+                for (int i = 0; i < nbHeaders; i++) {
+                    String name = in.readUTF();
+                    int nbValues = in.readUnsignedShort();
+                    for (int j = 0; j < nbValues; j++)
+                        headers.add(name, in.readUTF());
+                }
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                exchanges.accept(new Exchange(signature, status, headers, body));
+            }
+        } catch (EOFException e) {
+            // the recording was cut short, what was written before is still usable
+        }
+        return recordedAt;
+    }
+
+    /**
+     * A recorded response, read from memory.
+     */
+    static class RecordedResponse implements ClientHttpResponse {
+        private final int status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private InputStream bodyStream;
+
+        RecordedResponse(int status, HttpHeaders headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(status);
+        }
+
+        @Override
+        public String getStatusText() {
+            HttpStatus httpStatus = HttpStatus.resolve(status);
+            return httpStatus == null ? "" : httpStatus.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            if (bodyStream == null)
+                bodyStream = new ByteArrayInputStream(body);
+            return bodyStream;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
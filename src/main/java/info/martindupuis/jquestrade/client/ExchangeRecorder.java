@@ -0,0 +1,85 @@
+package info.martindupuis.jquestrade.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes every {@code RestClient} exchange to an {@link ExchangeArchive}, for {@link ExchangeReplayer} to serve
+ * them back later.
+ * <p>
+ * The response body is read in full before it is returned, so it can be written. Each entry is flushed once
+ * written: the archive can be replayed up to its last exchange even if the recorder is never closed.
+ */
+@Slf4j
+class ExchangeRecorder implements ClientHttpRequestInterceptor, AutoCloseable {
+    private final Path archive;
+    private final DataOutputStream out;
+    private int nbExchanges;
+    private boolean closed;
+
+    ExchangeRecorder(Path archive) {
+        this.archive = archive;
+        try {
+            if (archive.getParent() != null)
+                Files.createDirectories(archive.getParent());
+            out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(archive), 1 << 16), 1 << 16, true));
+            ExchangeArchive.writeHeader(out, Instant.now());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create exchange archive %s".formatted(archive), e);
+        }
+        log.info("ExchangeRecorder: action=record archive={}", archive);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        int status;
+        HttpHeaders headers = new HttpHeaders();
+        byte[] responseBody;
+        try (ClientHttpResponse response = execution.execute(request, body)) {
+            status = response.getStatusCode().value();
+            headers.putAll(response.getHeaders());
+            try (InputStream in = response.getBody()) {
+                responseBody = in.readAllBytes();
+            }
+        }
+
+        String signature = ExchangeArchive.signature(request.getMethod(), request.getURI());
+        write(new ExchangeArchive.Exchange(signature, status, headers, responseBody));
+
+        return new ExchangeArchive.RecordedResponse(status, headers, responseBody);
+    }
+
+    private synchronized void write(ExchangeArchive.Exchange exchange) {
+        try {
+            ExchangeArchive.writeEntry(out, exchange);
+            out.flush();
+            nbExchanges++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write exchange archive %s".formatted(archive), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            out.writeByte(ExchangeArchive.END);
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close exchange archive %s".formatted(archive), e);
+        }
+        log.info("ExchangeRecorder: action=close archive={} nbExchanges={}", archive, nbExchanges);
+    }
+}
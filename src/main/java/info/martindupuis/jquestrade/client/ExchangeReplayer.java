@@ -0,0 +1,142 @@
+package info.martindupuis.jquestrade.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers {@code RestClient} requests with the responses of an {@link ExchangeArchive}, without opening any connection.
+ * <p>
+ * Requests are matched by {@link ExchangeArchive#signature signature}. A request recorded several times gets its
+ * responses in the order they were recorded, then the last one over and over. Each {@code Date} header is moved by
+ * the time elapsed between the recording and the replay, so tokens expire as long after the replay started as they
+ * did after the recording started.
+ * <p>
+ * The whole archive is loaded in memory, with headers parsed once: replaying a call only costs a map lookup.
+ */
+@Slf4j
+class ExchangeReplayer implements ClientHttpRequestFactory {
+    private final Map<String, Replies> replies;
+
+    private static class Replies {
+        private final ExchangeArchive.Exchange[] exchanges;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Replies(List<ExchangeArchive.Exchange> exchanges) {
+            this.exchanges = exchanges.toArray(ExchangeArchive.Exchange[]::new);
+        }
+
+        private ExchangeArchive.Exchange next() {
+            int last = exchanges.length - 1;
+            // stops counting once on the last one, so replaying it forever never overflows
+            if (last == 0 || next.get() >= last)
+                return exchanges[last];
+            return exchanges[Math.min(next.getAndIncrement(), last)];
+        }
+    }
+
+    private ExchangeReplayer(Map<String, Replies> replies) {
+        this.replies = replies;
+    }
+
+    static ExchangeReplayer load(Path archive) {
+        return load(archive, Clock.systemUTC());
+    }
+
+    static ExchangeReplayer load(Path archive, Clock clock) {
+        Map<String, List<ExchangeArchive.Exchange>> exchanges = new HashMap<>();
+        Instant recordedAt;
+        try (InputStream in = Files.newInputStream(archive)) {
+            recordedAt = ExchangeArchive.read(in, exchange -> exchanges.computeIfAbsent(exchange.signature(), key -> new ArrayList<>())
+                                                                        .add(exchange));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read exchange archive %s".formatted(archive), e);
+        }
+
+        Duration shift = Duration.between(recordedAt, clock.instant());
+        Map<String, Replies> replies = HashMap.newHashMap(exchanges.size());
+        exchanges.forEach((signature, recorded) -> replies.put(signature, new Replies(recorded.stream()
+                                                                                             .map(exchange -> shifted(exchange, shift))
+                                                                                             .toList())));
+
+        log.info("ExchangeReplayer: action=load archive={} recordedAt={} nbSignatures={}", archive, recordedAt, replies.size());
+        return new ExchangeReplayer(replies);
+    }
+
+    private static ExchangeArchive.Exchange shifted(ExchangeArchive.Exchange exchange, Duration shift) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(exchange.headers());
+        String date = headers.getFirst(HttpHeaders.DATE);
+        if (date != null) {
+            try {
+                // same format the token expiry is computed from
+                ZonedDateTime shiftedDate = ZonedDateTime.parse(date, DateUtils.DATE_HEADER_FORMAT).plus(shift);
+                headers.set(HttpHeaders.DATE, shiftedDate.format(DateUtils.DATE_HEADER_FORMAT));
+            } catch (DateTimeParseException e) {
+                log.warn("ExchangeReplayer: action=shift signature={} unparseable date '{}'", exchange.signature(), date);
+            }
+        }
+
+        return new ExchangeArchive.Exchange(exchange.signature(), exchange.status(), HttpHeaders.readOnlyHttpHeaders(headers), exchange.body());
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new ReplayedRequest(uri, httpMethod);
+    }
+
+    private class ReplayedRequest extends AbstractClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+
+        private ReplayedRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            String signature = ExchangeArchive.signature(method, uri);
+            Replies recorded = replies.get(signature);
+            if (recorded == null)
+                throw new IOException("No exchange recorded for %s".formatted(signature));
+
+            ExchangeArchive.Exchange exchange = recorded.next();
+            return new ExchangeArchive.RecordedResponse(exchange.status(), exchange.headers(), exchange.body());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.QuestradeExecution;
+
+import java.util.List;
+
+record ExecutionsResponse(
+        List<QuestradeExecution> executions) {
+}
@@ -0,0 +1,23 @@
+package info.martindupuis.jquestrade.client;
+
+/**
+ * Outcome of one fetch within a batch: either a value or the error that prevented getting it.
+ *
+ * @param value The fetched value, {@code null} if the fetch failed.
+ * @param error The reason why the fetch failed, {@code null} if it succeeded.
+ */
+public record FetchResult<T>(T value,
+                             RuntimeException error) {
+
+    public static <T> FetchResult<T> success(T value) {
+        return new FetchResult<>(value, null);
+    }
+
+    public static <T> FetchResult<T> failure(RuntimeException error) {
+        return new FetchResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,44 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Builds the Reactor Netty {@link HttpClient} both Questrade clients send their requests with.
+ * <p>
+ * Connections are kept alive and pooled per host, so the TLS handshake is only paid on cold connections, and
+ * HTTP/2 is negotiated through ALPN so concurrent requests to the same {@code api_server} share a connection.
+ */
+final class HttpTransport {
+
+    private HttpTransport() {
+    }
+
+    /**
+     * Returns a new pool of connections, to be disposed by the client owning it once closed.
+     */
+    static ConnectionProvider connectionProvider(WebClientProperties.Transport properties) {
+        return ConnectionProvider.builder("questrade")
+                                 .maxConnections(properties.getMaxConnectionsPerHost())
+                                 .maxIdleTime(properties.getMaxIdleTime())
+                                 .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+                                 .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                                 .build();
+    }
+
+    static HttpClient create(WebClientProperties.Transport properties, ConnectionProvider connectionProvider) {
+        HttpProtocol[] protocols = properties.isHttp2()
+                                   ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                                   : new HttpProtocol[]{HttpProtocol.HTTP11};
+
+        return HttpClient.create(connectionProvider)
+                         .protocol(protocols)
+                         .keepAlive(true)
+                         .option(ChannelOption.SO_KEEPALIVE, true)
+                         .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(properties.getConnectTimeout().toMillis()))
+                         .responseTimeout(properties.getReadTimeout());
+    }
+}
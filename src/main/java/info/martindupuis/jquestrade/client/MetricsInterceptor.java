@@ -0,0 +1,124 @@
+package info.martindupuis.jquestrade.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * Records the {@link QuestradeMetrics} of every {@code RestClient} exchange.
+ * <p>
+ * The call is only timed once its response is closed, so the time spent reading the body is included, and the
+ * body is counted as it is read.
+ */
+class MetricsInterceptor implements ClientHttpRequestInterceptor {
+    private final QuestradeMetrics metrics;
+
+    MetricsInterceptor(QuestradeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String endpoint = QuestradeMetrics.endpointOf(request.getURI());
+        long start = System.nanoTime();
+        try {
+            return new MeteredResponse(execution.execute(request, body), endpoint, start);
+        } catch (IOException e) {
+            metrics.recordRequest(endpoint, QuestradeMetrics.IO_ERROR, Duration.ofNanos(System.nanoTime() - start));
+            throw e;
+        }
+    }
+
+    private class MeteredResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final String endpoint;
+        private final long start;
+
+        private CountingInputStream body;
+        private boolean closed;
+
+        private MeteredResponse(ClientHttpResponse delegate, String endpoint, long start) {
+            this.delegate = delegate;
+            this.endpoint = endpoint;
+            this.start = start;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null)
+                body = new CountingInputStream(delegate.getBody());
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                String status;
+                try {
+                    status = String.valueOf(delegate.getStatusCode().value());
+                } catch (IOException e) {
+                    status = QuestradeMetrics.IO_ERROR;
+                }
+                metrics.recordRequest(endpoint, status, Duration.ofNanos(System.nanoTime() - start));
+                if (body != null)
+                    metrics.recordResponseSize(endpoint, body.count);
+            }
+            delegate.close();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1)
+                count++;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
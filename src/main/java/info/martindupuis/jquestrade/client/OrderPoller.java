@@ -0,0 +1,144 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.Order;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Polls the orders of accounts, returning only the orders which changed since the previous poll.
+ * <p>
+ * For each account and state filter, the time of the last successful poll and the latest {@code updateTime} seen are
+ * kept as a watermark. The next poll only asks for the orders updated since the last poll, minus a small overlap
+ * covering orders updated while it was answered, and drops those it already returned with the same
+ * {@code updateTime}. Accounts without any change are thus not asked for the whole lookback again on each poll.
+ * <p>
+ * Watermarks are kept in memory: after a restart, or a {@link #reset}, the first poll looks
+ * {@link WebClientProperties.Orders#getInitialLookback()} back.
+ */
+@Slf4j
+@Service
+public class OrderPoller {
+    private static final Comparator<Order> BY_UPDATE_TIME = Comparator.comparing((Order order) -> OffsetDateTime.parse(order.getUpdateTime()))
+                                                                      .thenComparingInt(Order::getId);
+
+    private final QuestradeWebClient webClient;
+    private final Duration initialLookback;
+    private final Duration overlap;
+    private final Clock clock;
+
+    private final Map<WatermarkKey, Watermark> watermarks = new ConcurrentHashMap<>();
+
+    private record WatermarkKey(String accountNumber, OrderStateFilter stateFilter) {
+    }
+
+    private static class Watermark {
+        private ZonedDateTime polledUntil;
+        private OffsetDateTime latestUpdate;
+        // updateTime of the orders returned within the overlap before latestUpdate
+        private final Map<Integer, OffsetDateTime> recentlyReturned = new HashMap<>();
+    }
+
+    @Autowired
+    public OrderPoller(QuestradeWebClient webClient, WebClientProperties properties) {
+        this(webClient, properties.getOrders(), Clock.systemDefaultZone());
+    }
+
+    OrderPoller(QuestradeWebClient webClient, WebClientProperties.Orders properties, Clock clock) {
+        this.webClient = webClient;
+        this.initialLookback = properties.getInitialLookback();
+        this.overlap = properties.getOverlap();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the orders of the account, in any state, changed since the previous poll.
+     */
+    public List<Order> poll(AuthenticationToken authToken, QuestradeAccount account) {
+        return poll(authToken, account, OrderStateFilter.All);
+    }
+
+    /**
+     * Returns the orders of the account in the given states, changed since the previous poll with the same filter.
+     *
+     * @return The orders, by ascending {@code updateTime}.
+     */
+    public List<Order> poll(AuthenticationToken authToken, QuestradeAccount account, OrderStateFilter stateFilter) {
+        Watermark watermark = watermarks.computeIfAbsent(new WatermarkKey(account.number(), stateFilter), key -> new Watermark());
+
+        // one poll at a time per watermark, or both would return the same orders
+        synchronized (watermark) {
+            ZonedDateTime now = ZonedDateTime.now(clock);
+            ZonedDateTime start = watermark.polledUntil == null ? now.minus(initialLookback)
+                                                                : watermark.polledUntil.withZoneSameInstant(now.getZone()).minus(overlap);
+            if (start.isAfter(now))
+                start = now;
+
+            List<Order> changed = webClient.getOrders(authToken, account, new RequestPeriod(start, now), stateFilter)
+                                           .stream()
+                                           .filter(order -> order.getUpdateTime() != null)
+                                           .filter(order -> isNew(watermark, order))
+                                           .sorted(BY_UPDATE_TIME)
+                                           .toList();
+
+            advance(watermark, changed);
+            watermark.polledUntil = now;
+            log.info("OrderPoller: action=poll account=***** stateFilter={} since={} nbChanged={}", stateFilter, start, changed.size());
+            return changed;
+        }
+    }
+
+    /**
+     * Returns the latest {@code updateTime} returned for the account and filter, if it was polled.
+     */
+    public Optional<OffsetDateTime> getWatermark(QuestradeAccount account, OrderStateFilter stateFilter) {
+        Watermark watermark = watermarks.get(new WatermarkKey(account.number(), stateFilter));
+        if (watermark == null)
+            return Optional.empty();
+
+        synchronized (watermark) {
+            return Optional.ofNullable(watermark.latestUpdate);
+        }
+    }
+
+    /**
+     * Forgets the watermarks of the account, so its next polls start over.
+     */
+    public void reset(QuestradeAccount account) {
+        watermarks.keySet().removeIf(key -> key.accountNumber().equals(account.number()));
+    }
+
+    private boolean isNew(Watermark watermark, Order order) {
+        OffsetDateTime updateTime = OffsetDateTime.parse(order.getUpdateTime());
+        // already covered by the previous polls
+        if (watermark.latestUpdate != null && updateTime.isBefore(watermark.latestUpdate.minus(overlap)))
+            return false;
+
+        OffsetDateTime returned = watermark.recentlyReturned.get(order.getId());
+        return returned == null || updateTime.isAfter(returned);
+    }
+
+    private void advance(Watermark watermark, List<Order> changed) {
+        for (Order order : changed) {
+            OffsetDateTime updateTime = OffsetDateTime.parse(order.getUpdateTime());
+            watermark.recentlyReturned.put(order.getId(), updateTime);
+            if (watermark.latestUpdate == null || updateTime.isAfter(watermark.latestUpdate))
+                watermark.latestUpdate = updateTime;
+        }
+
+        if (watermark.latestUpdate != null) {
+            OffsetDateTime overlapStart = watermark.latestUpdate.minus(overlap);
+            watermark.recentlyReturned.values().removeIf(updateTime -> updateTime.isBefore(overlapStart));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package info.martindupuis.jquestrade.client;
+
+/**
+ * Which orders {@link QuestradeWebClient#getOrders} returns, by state.
+ *
+ * @see <a href="https://www.questrade.com/api/documentation/rest-operations/enumerations/enumerations#order-state-filter-type">
+ * The order state filter documentation</a>
+ */
+public enum OrderStateFilter {
+    All,
+    Open,
+    Closed
+}
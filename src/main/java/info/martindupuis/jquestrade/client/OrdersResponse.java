@@ -0,0 +1,9 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.Order;
+
+import java.util.List;
+
+record OrdersResponse(
+        List<Order> orders) {
+}
@@ -0,0 +1,106 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Builds a {@link PortfolioSnapshot} with as few sequential round-trips as the calls depend on each other.
+ * <p>
+ * Once the accounts are known, the positions and balances of every account are all fetched in parallel. As soon as
+ * every position is known, the quotes of all their symbols are requested at once, while balances may still be on
+ * their way. Loading a portfolio thus takes about three round-trips, however many accounts it has.
+ * <p>
+ * The number of calls in flight is capped by {@link WebClientProperties#getMaxConcurrentRequests()}, shared with
+ * the {@link QuestradeBatchClient}. The quotes of many symbols are requested in chunks, which the web client fans out
+ * under a cap of its own. When a call fails, those still waiting or in flight are cancelled.
+ */
+@Slf4j
+@Service
+public class PortfolioClient {
+    private final QuestradeWebClient webClient;
+    private final BoundedFanOut fanOut;
+    private final Clock clock;
+
+    /**
+     * Outside of Spring: the calls of this client have a cap of their own.
+     */
+    public PortfolioClient(QuestradeWebClient webClient, WebClientProperties properties) {
+        this(webClient, new BoundedFanOut(properties), Clock.systemUTC());
+    }
+
+    @Autowired
+    PortfolioClient(QuestradeWebClient webClient, BoundedFanOut fanOut) {
+        this(webClient, fanOut, Clock.systemUTC());
+    }
+
+    PortfolioClient(QuestradeWebClient webClient, BoundedFanOut fanOut, Clock clock) {
+        this.webClient = webClient;
+        this.fanOut = fanOut;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the accounts of the user with their positions, balances and the quotes of their symbols.
+     * Fails as a whole if any of the calls fails.
+     */
+    public PortfolioSnapshot getSnapshot(AuthenticationToken authToken) {
+        log.info("PortfolioClient: entryPoint=getSnapshot");
+        Instant takenAt = clock.instant();
+
+        List<QuestradeAccount> accounts = List.copyOf(webClient.getAccounts(authToken));
+
+        List<CompletableFuture<Set<QuestradePosition>>> positions = new ArrayList<>();
+        List<CompletableFuture<QuestadeBalances>> balances = new ArrayList<>();
+        for (QuestradeAccount account : accounts) {
+            positions.add(fanOut.supplyAsync(() -> webClient.getPositions(authToken, account)));
+            balances.add(fanOut.supplyAsync(() -> webClient.getBalances(authToken, account)));
+        }
+
+        CompletableFuture<Map<Integer, Quote>> quotes =
+                CompletableFuture.allOf(positions.toArray(CompletableFuture[]::new))
+                                 .thenCompose(allPositions -> fanOut.supplyAsync(() -> quotesOf(authToken, positions)));
+
+        List<CompletableFuture<?>> calls = new ArrayList<>(positions);
+        calls.addAll(balances);
+        calls.add(quotes);
+        // the snapshot fails as a whole: the other calls would only spend rate limit budget
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (CompletableFuture<?> call : calls)
+            call.whenComplete((result, error) -> {
+                if (error != null && firstFailure.completeExceptionally(error instanceof CompletionException ? error.getCause() : error))
+                    calls.forEach(other -> other.cancel(true));
+            });
+
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)), firstFailure).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+
+        List<PortfolioSnapshot.AccountSnapshot> accountSnapshots = new ArrayList<>();
+        for (int i = 0; i < accounts.size(); i++)
+            accountSnapshots.add(new PortfolioSnapshot.AccountSnapshot(accounts.get(i), positions.get(i).resultNow(), balances.get(i).resultNow()));
+
+        return new PortfolioSnapshot(takenAt, accountSnapshots, quotes.resultNow());
+    }
+
+    private Map<Integer, Quote> quotesOf(AuthenticationToken authToken, List<CompletableFuture<Set<QuestradePosition>>> positions) {
+        Set<Integer> symbolIds = new LinkedHashSet<>();
+        positions.forEach(accountPositions -> accountPositions.resultNow().forEach(position -> symbolIds.add(position.symbolId())));
+
+        Map<Integer, Quote> quotes = new LinkedHashMap<>();
+        webClient.getQuotes(authToken, symbolIds).forEach(quote -> quotes.put((int) quote.getSymbolId(), quote));
+        return Collections.unmodifiableMap(quotes);
+    }
+}
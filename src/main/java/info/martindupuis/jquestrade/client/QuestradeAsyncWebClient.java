@@ -0,0 +1,26 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.*;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link QuestradeWebClient}: no thread waits on a call in flight.
+ * <p>
+ * Errors the synchronous client throws, like {@link info.martindupuis.jquestrade.exceptions.AuthenticationExpiredException},
+ * complete the returned future exceptionally instead.
+ */
+public interface QuestradeAsyncWebClient {
+    CompletableFuture<AuthenticationToken> authenticate(String refreshToken);
+
+    CompletableFuture<Set<QuestradeAccount>> getAccounts(AuthenticationToken authToken);
+
+    CompletableFuture<Set<QuestradeActivity>> getAccountActivities(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period);
+
+    CompletableFuture<Set<QuestradePosition>> getPositions(AuthenticationToken authToken, QuestradeAccount account);
+
+    CompletableFuture<Set<QuestradeCandle>> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period);
+
+    CompletableFuture<Set<QuestradeCandle>> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval);
+}
@@ -0,0 +1,209 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link QuestradeAsyncWebClient} on top of Spring's reactive {@link WebClient}, so requests in flight hold no thread.
+ * <p>
+ * Waiting for the rate limit does not block either: the request is delayed on a timer instead.
+ */
+@Slf4j
+@Service
+public class QuestradeAsyncWebClientImpl implements QuestradeAsyncWebClient, AutoCloseable {
+
+    private final WebClient authenticationClient;
+    private final WebClient apiClient;
+    private final RateLimitScheduler rateLimitScheduler = new RateLimitScheduler();
+    private final int maxConcurrentRequests;
+    private final QuestradeMetrics metrics;
+    private final ConnectionProvider connectionProvider;
+    private final List<Meter> rateLimitGauges;
+
+    public QuestradeAsyncWebClientImpl(WebClientProperties properties) {
+        this(properties, Metrics.globalRegistry);
+    }
+
+    /**
+     * Records the {@link QuestradeMetrics} in the application {@link MeterRegistry} if there is one, otherwise in
+     * Micrometer's global registry.
+     */
+    @Autowired
+    public QuestradeAsyncWebClientImpl(WebClientProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(properties, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public QuestradeAsyncWebClientImpl(WebClientProperties properties, MeterRegistry meterRegistry) {
+        connectionProvider = HttpTransport.connectionProvider(properties.getTransport());
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(HttpTransport.create(properties.getTransport(), connectionProvider));
+        metrics = new QuestradeMetrics(meterRegistry);
+        rateLimitGauges = metrics.registerRateLimitGauges(QuestradeMetrics.ASYNC_CLIENT, rateLimitScheduler);
+
+        authenticationClient = WebClient.builder()
+                                        .baseUrl(properties.getLoginUrl())
+                                        .clientConnector(connector)
+                                        .filter(this::recordMetrics)
+                                        .build();
+        apiClient = WebClient.builder()
+                             .clientConnector(connector)
+                             .filter(this::recordMetrics)
+                             .build();
+        maxConcurrentRequests = properties.getMaxConcurrentRequests();
+    }
+
+    /**
+     * Closes the pooled connections.
+     */
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+        metrics.remove(rateLimitGauges);
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationToken> authenticate(String refreshToken) {
+        log.info("QuestradeAsyncWebClient: Calling Questrade API with refresh token: {}", refreshToken);
+
+        return authenticationClient.get()
+                                   .uri(uriBuilder -> uriBuilder.path("/oauth2/token")
+                                                                .queryParam("grant_type", "refresh_token")
+                                                                .queryParam("refresh_token", refreshToken)
+                                                                .build())
+                                   .retrieve()
+                                   .toEntity(AuthorizationResponse.class)
+                                   .map(QuestradeWebClientImpl::createAuthenticationObject)
+                                   .toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Set<QuestradeAccount>> getAccounts(AuthenticationToken authToken) {
+        log.info("QuestradeAsyncWebClient: entryPoint=getAccounts");
+
+        return callQuestrade(authToken, "accounts", AccountResponse.class)
+                .map(response -> response.getBody() == null ? Collections.<QuestradeAccount>emptySet() : response.getBody().accounts())
+                .doOnNext(accounts -> metrics.recordResults("accounts", accounts.size()))
+                .toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Set<QuestradePosition>> getPositions(AuthenticationToken authToken, QuestradeAccount account) {
+        log.info("QuestradeAsyncWebClient: entryPoint=getPositions account=*****");
+
+        return callQuestrade(authToken, "accounts/%s/positions".formatted(account.number()), PositionsResponse.class)
+                .map(response -> response.getBody() == null ? Collections.<QuestradePosition>emptySet() : response.getBody().positions())
+                .doOnNext(positions -> metrics.recordResults("accounts/{id}/positions", positions.size()))
+                .toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Set<QuestradeActivity>> getAccountActivities(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
+        log.info("QuestradeAsyncWebClient: entryPoint=getAccountActivities (token, account=***** requestPeriod=%{}", period);
+
+        return Mono.fromCallable(() -> QuestradeWebClientImpl.activitiesResource(account, period))
+                   .flatMap(resource -> callQuestrade(authToken, resource, AccountActivityResponse.class))
+                   .map(response -> response.getBody() == null ? Collections.<QuestradeActivity>emptySet() : response.getBody().activities())
+                   .doOnNext(activities -> metrics.recordResults("accounts/{id}/activities", activities.size()))
+                   .toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Set<QuestradeCandle>> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period) {
+        return getPositionCandles(authToken, position, period, QuestradeCandle.Interval.OneDay);
+    }
+
+    /**
+     * Questrade caps the number of candles per response, so the period is split in as few chunks as possible
+     * under that cap, at most {@link WebClientProperties#getMaxConcurrentRequests()} of them in flight at once.
+     */
+    @Override
+    public CompletableFuture<Set<QuestradeCandle>> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        log.info("QuestradeAsyncWebClient: entryPoint=getCandles position={}, requestPeriod={}, interval={}", position.symbol(), period, interval);
+
+        return Flux.fromIterable(period.splitIntoPeriodsOf(QuestradeWebClientImpl.getCandlesRequestLength(interval)))
+                   .flatMapSequential(chunk -> callQuestrade(authToken, QuestradeWebClientImpl.candlesResource(position, chunk, interval), CandlesResponse.class),
+                                      maxConcurrentRequests)
+                   .map(response -> response.getBody() == null ? Collections.<QuestradeCandle>emptySet() : response.getBody().candles())
+                   .doOnNext(candles -> metrics.recordResults("markets/candles/{id}", candles.size()))
+                   .flatMapIterable(candles -> candles)
+                   .<Set<QuestradeCandle>>collect(LinkedHashSet::new, Set::add)
+                   .toFuture();
+    }
+
+    /**
+     * Returns the request budget left, as last reported by Questrade, for the given category of calls.
+     */
+    public RateLimitBudget getRateLimitBudget(RateLimitCategory category) {
+        return rateLimitScheduler.getBudget(category);
+    }
+
+    private <T> Mono<ResponseEntity<T>> callQuestrade(AuthenticationToken authToken, String resource, Class<T> responseType) {
+        return Mono.defer(() -> {
+            log.info("QuestradeAsyncWebClient: action=callQuestrade(..., {})", resource);
+
+            String uri = QuestradeWebClientImpl.apiUri(authToken, resource);
+            RateLimitCategory category = RateLimitCategory.of(resource);
+
+            return acquire(category)
+                    .then(apiClient.get()
+                                   .uri(uri)
+                                   .header("Authorization", authToken.getAuthHeader())
+                                   .retrieve()
+                                   .toEntity(responseType))
+                    .doOnNext(response -> rateLimitScheduler.update(category, response.getHeaders()))
+                    .doOnError(WebClientResponseException.class, e -> rateLimitScheduler.update(category, e.getHeaders()));
+        });
+    }
+
+    /*
+     * Times the exchange up to the response headers: the body is decoded later, by whoever subscribes to it.
+     */
+    private Mono<ClientResponse> recordMetrics(ClientRequest request, ExchangeFunction next) {
+        String endpoint = QuestradeMetrics.endpointOf(request.url());
+        long start = System.nanoTime();
+
+        return next.exchange(request)
+                   .doOnNext(response -> {
+                       metrics.recordRequest(endpoint, String.valueOf(response.statusCode().value()), Duration.ofNanos(System.nanoTime() - start));
+                       response.headers().contentLength().ifPresent(bytes -> metrics.recordResponseSize(endpoint, bytes));
+                   })
+                   .doOnError(e -> metrics.recordRequest(endpoint, QuestradeMetrics.IO_ERROR, Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    /*
+     * Completes once a request permit is taken, retrying on a timer rather than sleeping.
+     */
+    private Mono<Void> acquire(RateLimitCategory category) {
+        return Mono.defer(() -> {
+            Duration wait = rateLimitScheduler.tryAcquire(category);
+            if (wait.isZero())
+                return Mono.empty();
+
+            log.debug("QuestradeAsyncWebClient: action=acquire category={} waiting {}", category, wait);
+            return Mono.delay(wait).then(acquire(category));
+        });
+    }
+}
@@ -0,0 +1,199 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.QuestradeActivity;
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.QuestradeExecution;
+import info.martindupuis.jquestrade.QuestradePosition;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bulk operations on top of a {@link QuestradeWebClient}.
+ * <p>
+ * Each call of a batch runs on its own virtual thread. The number of calls in flight is capped by
+ * {@link WebClientProperties#getMaxConcurrentRequests()}, across all the batches running on this client and the
+ * calls of the {@link PortfolioClient} sharing its {@link BoundedFanOut}.
+ */
+@Slf4j
+@Service
+public class QuestradeBatchClient {
+    // some activity types have no trade date
+    private static final Comparator<QuestradeActivity> CHRONOLOGICAL_ORDER =
+            Comparator.comparing((QuestradeActivity activity) -> parseDate(activity.transactionDate()), Comparator.nullsLast(Comparator.naturalOrder()))
+                      .thenComparing(activity -> parseDate(activity.tradeDate()), Comparator.nullsLast(Comparator.naturalOrder()));
+    private static final Comparator<QuestradeExecution> EXECUTION_ORDER =
+            Comparator.comparing((QuestradeExecution execution) -> OffsetDateTime.parse(execution.timestamp()))
+                      .thenComparingDouble(QuestradeExecution::id);
+
+    private final QuestradeWebClient webClient;
+    private final BoundedFanOut fanOut;
+
+    /**
+     * Outside of Spring: the calls of this client have a cap of their own.
+     */
+    public QuestradeBatchClient(QuestradeWebClient webClient, WebClientProperties properties) {
+        this(webClient, new BoundedFanOut(properties));
+    }
+
+    @Autowired
+    QuestradeBatchClient(QuestradeWebClient webClient, BoundedFanOut fanOut) {
+        this.webClient = webClient;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Fetches the daily candles of many positions at once.
+     *
+     * @see #getPositionsCandles(AuthenticationToken, Collection, RequestPeriod, QuestradeCandle.Interval)
+     */
+    public Map<Integer, FetchResult<Set<QuestradeCandle>>> getPositionsCandles(AuthenticationToken authToken,
+                                                                               Collection<QuestradePosition> positions,
+                                                                               RequestPeriod period) {
+        return getPositionsCandles(authToken, positions, period, QuestradeCandle.Interval.OneDay);
+    }
+
+    /**
+     * Fetches the candles of many positions at once.
+     * Positions sharing the same symbol are only fetched once.
+     *
+     * @return The candles, or the error that occurred, keyed by {@code symbolId}.
+     */
+    public Map<Integer, FetchResult<Set<QuestradeCandle>>> getPositionsCandles(AuthenticationToken authToken,
+                                                                               Collection<QuestradePosition> positions,
+                                                                               RequestPeriod period,
+                                                                               QuestradeCandle.Interval interval) {
+        log.info("QuestradeBatchClient: entryPoint=getPositionsCandles nbPositions={}, requestPeriod={}, interval={}",
+                 positions.size(), period, interval);
+
+        Map<Integer, QuestradePosition> positionsBySymbol = new LinkedHashMap<>();
+        positions.forEach(position -> positionsBySymbol.putIfAbsent(position.symbolId(), position));
+
+        return fanOut.fetchAll(positionsBySymbol.keySet(),
+                               symbolId -> webClient.getPositionCandles(authToken, positionsBySymbol.get(symbolId), period, interval));
+    }
+
+    /**
+     * Fetches the activities of an account over a period of any length.
+     * <p>
+     * The period is split in windows the API accepts, which are fetched in parallel.
+     * Windows shorter than a day are widened to one day: what the widening adds before the period is dropped, the
+     * rest of the overlap is removed along with any other activity returned twice at window boundaries.
+     *
+     * @return The activities, in chronological order of transaction date.
+     */
+    public List<QuestradeActivity> getAccountActivities(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
+        log.info("QuestradeBatchClient: entryPoint=getAccountActivities (token, account=***** requestPeriod={})", period);
+
+        List<RequestPeriod> windows = period.splitIntoPeriodsOfXDays(QuestradeWebClientImpl.MAX_ACTIVITIES_PERIOD_DAYS);
+
+        Map<RequestPeriod, FetchResult<Set<QuestradeActivity>>> results =
+                fanOut.fetchAll(windows, window -> getWindowActivities(authToken, account, window, period));
+
+        Set<QuestradeActivity> activities = new LinkedHashSet<>();
+        for (FetchResult<Set<QuestradeActivity>> result : results.values()) {
+            if (!result.isSuccess())
+                throw result.error();
+            activities.addAll(result.value());
+        }
+
+        return activities.stream()
+                         .sorted(CHRONOLOGICAL_ORDER)
+                         .toList();
+    }
+
+    /**
+     * Fetches the executions of many accounts over a period of any length.
+     * <p>
+     * The period is split in windows the API accepts, and every window of every account is fetched in parallel.
+     * Executions returned twice at window boundaries are only kept once.
+     *
+     * @return The executions of all the accounts, in chronological order.
+     */
+    public Stream<QuestradeExecution> getExecutions(AuthenticationToken authToken, Collection<QuestradeAccount> accounts, RequestPeriod period) {
+        log.info("QuestradeBatchClient: entryPoint=getExecutions nbAccounts={} requestPeriod={}", accounts.size(), period);
+
+        record AccountWindow(QuestradeAccount account, RequestPeriod window) {
+        }
+
+        List<RequestPeriod> windows = period.splitIntoPeriodsOfXDays(QuestradeWebClientImpl.MAX_EXECUTIONS_PERIOD_DAYS);
+        List<AccountWindow> fetches = accounts.stream()
+                                              .distinct()
+                                              .flatMap(account -> windows.stream().map(window -> new AccountWindow(account, window)))
+                                              .toList();
+
+        Map<AccountWindow, FetchResult<List<QuestradeExecution>>> results =
+                fanOut.fetchAll(fetches, fetch -> webClient.getExecutions(authToken, fetch.account(), fetch.window()));
+
+        Set<QuestradeExecution> executions = new HashSet<>();
+        for (FetchResult<List<QuestradeExecution>> result : results.values()) {
+            if (!result.isSuccess())
+                throw result.error();
+            executions.addAll(result.value());
+        }
+
+        return executions.stream()
+                         .sorted(EXECUTION_ORDER);
+    }
+
+    /**
+     * Fetches the executions of one account over a period of any length.
+     *
+     * @see #getExecutions(AuthenticationToken, Collection, RequestPeriod)
+     */
+    public Stream<QuestradeExecution> getExecutions(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
+        return getExecutions(authToken, List.of(account), period);
+    }
+
+    private Set<QuestradeActivity> getWindowActivities(AuthenticationToken authToken, QuestradeAccount account,
+                                                       RequestPeriod window, RequestPeriod period) {
+        RequestPeriod fetched = atLeastOneDay(window);
+        Set<QuestradeActivity> activities = webClient.getAccountActivities(authToken, account, fetched);
+        if (fetched == window)
+            return activities;
+
+        LocalDate firstDay = period.periodStart().toLocalDate();
+        return activities.stream()
+                         .filter(activity -> dayOf(activity, period.periodStart().getZone()).map(day -> !day.isBefore(firstDay)).orElse(true))
+                         .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Returns the day of the transaction, or of the trade if it has none.
+     */
+    private static Optional<LocalDate> dayOf(QuestradeActivity activity, ZoneId zone) {
+        return Stream.of(activity.transactionDate(), activity.tradeDate())
+                     .map(QuestradeBatchClient::parseDate)
+                     .filter(Objects::nonNull)
+                     .findFirst()
+                     .map(date -> date.atZoneSameInstant(zone).toLocalDate());
+    }
+
+    private static OffsetDateTime parseDate(String date) {
+        if (date == null || date.isBlank())
+            return null;
+        try {
+            return OffsetDateTime.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static RequestPeriod atLeastOneDay(RequestPeriod window) {
+        if (window.numberDaysInBetween() >= 1)
+            return window;
+
+        return new RequestPeriod(window.periodEnd().minusDays(1), window.periodEnd());
+    }
+}
@@ -0,0 +1,120 @@
+package info.martindupuis.jquestrade.client;
+
+import io.micrometer.core.instrument.*;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Micrometer meters of the Questrade clients, all tagged by endpoint template ({@code accounts/{id}/activities},
+ * never the raw URL, to keep the number of time series bounded).
+ * <ul>
+ *     <li>{@value #REQUESTS}: timer of the calls, with a percentile histogram, tagged by HTTP status</li>
+ *     <li>{@value #RESPONSE_SIZE}: response body sizes, in bytes</li>
+ *     <li>{@value #RESULTS}: number of items returned by a call</li>
+ *     <li>{@value #RATE_LIMIT_REMAINING}: gauge of the requests left in the rate limit budget, per category and
+ *     client ({@value #SYNC_CLIENT} or {@value #ASYNC_CLIENT}), each having its own budget, and client instance</li>
+ *     <li>{@value #TOKEN_REFRESHES}: token refreshes, tagged by outcome</li>
+ * </ul>
+ */
+public class QuestradeMetrics {
+    public static final String REQUESTS = "questrade.api.requests";
+    public static final String RESPONSE_SIZE = "questrade.api.response.size";
+    public static final String RESULTS = "questrade.api.results";
+    public static final String RATE_LIMIT_REMAINING = "questrade.api.ratelimit.remaining";
+    public static final String TOKEN_REFRESHES = "questrade.token.refreshes";
+
+    public static final String SYNC_CLIENT = "sync";
+    public static final String ASYNC_CLIENT = "async";
+
+    static final String IO_ERROR = "IO_ERROR";
+
+    private static final Pattern ID_SEGMENT = Pattern.compile("^[0-9]+$");
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final MeterRegistry registry;
+
+    public QuestradeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns the endpoint template of a request URI: its path without the API version, identifiers replaced by {@code {id}}.
+     */
+    static String endpointOf(URI uri) {
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        String[] segments = path.replaceFirst("^/+", "").replaceFirst("^v1/", "").split("/");
+
+        StringBuilder endpoint = new StringBuilder();
+        for (String segment : segments) {
+            if (segment.isEmpty())
+                continue;
+            if (!endpoint.isEmpty())
+                endpoint.append('/');
+            endpoint.append(ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+        }
+        return endpoint.toString();
+    }
+
+    void recordRequest(String endpoint, String status, Duration duration) {
+        Timer.builder(REQUESTS)
+             .description("Calls to the Questrade API")
+             .tag("endpoint", endpoint)
+             .tag("status", status)
+             .publishPercentileHistogram()
+             .register(registry)
+             .record(duration);
+    }
+
+    void recordResponseSize(String endpoint, long bytes) {
+        DistributionSummary.builder(RESPONSE_SIZE)
+                           .description("Size of the Questrade API responses")
+                           .baseUnit("bytes")
+                           .tag("endpoint", endpoint)
+                           .register(registry)
+                           .record(bytes);
+    }
+
+    void recordResults(String endpoint, int nbResults) {
+        DistributionSummary.builder(RESULTS)
+                           .description("Number of items returned by a Questrade API call")
+                           .tag("endpoint", endpoint)
+                           .register(registry)
+                           .record(nbResults);
+    }
+
+    void recordTokenRefresh(boolean success) {
+        registry.counter(TOKEN_REFRESHES, "outcome", success ? "success" : "failure").increment();
+    }
+
+    /**
+     * Registers the gauges of a client instance, tagged by a number of its own: the registry would otherwise hand a
+     * second client of the same kind the gauges of the first, still reading the budget of the first scheduler.
+     *
+     * @return The gauges, to {@linkplain #remove(List) remove} when the client is closed.
+     */
+    List<Meter> registerRateLimitGauges(String client, RateLimitScheduler rateLimitScheduler) {
+        String instance = String.valueOf(INSTANCES.incrementAndGet());
+        List<Meter> gauges = new ArrayList<>();
+        for (RateLimitCategory category : RateLimitCategory.values())
+            gauges.add(Gauge.builder(RATE_LIMIT_REMAINING, rateLimitScheduler, scheduler -> scheduler.getBudget(category).remaining())
+                            .description("Requests left in the Questrade rate limit budget")
+                            .tag("category", category.name())
+                            .tag("client", client)
+                            .tag("instance", instance)
+                            .strongReference(true)
+                            .register(registry));
+        return gauges;
+    }
+
+    /**
+     * Removes meters from the registry, which would otherwise keep reporting them, and keep what they read alive.
+     */
+    void remove(List<Meter> meters) {
+        meters.forEach(registry::remove);
+    }
+}
@@ -2,6 +2,8 @@ package info.martindupuis.jquestrade.client;
 
 import info.martindupuis.jquestrade.*;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 public interface QuestradeWebClient {
@@ -13,5 +15,52 @@ public interface QuestradeWebClient {
 
     Set<QuestradePosition> getPositions(AuthenticationToken authToken, QuestradeAccount account);
 
+    QuestadeBalances getBalances(AuthenticationToken authToken, QuestradeAccount account);
+
+    /**
+     * Returns the executions of the account during a period of at most 30 days.
+     *
+     * @see QuestradeBatchClient#getExecutions(AuthenticationToken, Collection, RequestPeriod)
+     */
+    List<QuestradeExecution> getExecutions(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period);
+
+    /**
+     * Returns the orders of the account updated during the period, in the given states.
+     *
+     * @see OrderPoller
+     */
+    List<Order> getOrders(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period, OrderStateFilter stateFilter);
+
     Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period);
+
+    Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval);
+
+    CandleSeries getPositionCandleSeries(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval);
+
+    /**
+     * Returns the symbols whose ticker starts with the given prefix.
+     *
+     * @see SymbolIndex
+     */
+    List<QuestadeSymbol> searchSymbols(AuthenticationToken authToken, String prefix);
+
+    /**
+     * Returns the detailed information of the given symbols.
+     */
+    List<QuestradeSymbolInfo> getSymbols(AuthenticationToken authToken, Collection<Integer> symbolIds);
+
+    /**
+     * Returns the Level 1 quotes of the given symbols, requested in as few calls as the URL length allows.
+     *
+     * @see CoalescingQuoteClient
+     */
+    List<Quote> getQuotes(AuthenticationToken authToken, Collection<Integer> symbolIds);
+
+    /**
+     * Asks Questrade to open a Level 1 quotes stream for the given symbols.
+     *
+     * @return The port of the {@code api_server} to connect the WebSocket to.
+     * @see QuoteStreamClient
+     */
+    int getQuoteStreamPort(AuthenticationToken authToken, Collection<Integer> symbolIds);
 }
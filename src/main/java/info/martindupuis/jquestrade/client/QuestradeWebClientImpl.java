@@ -2,24 +2,54 @@ package info.martindupuis.jquestrade.client;
 
 import info.martindupuis.jquestrade.*;
 import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.ArgumentException;
 import info.martindupuis.jquestrade.exceptions.AuthenticationException;
 import info.martindupuis.jquestrade.exceptions.AuthenticationExpiredException;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
 import info.martindupuis.jquestrade.exceptions.TimeRangeException;
 import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
-
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriUtils;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Collections;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-public class QuestradeWebClientImpl implements QuestradeWebClient {
+public class QuestradeWebClientImpl implements QuestradeWebClient, AutoCloseable {
+
+    static final int MAX_ACTIVITIES_PERIOD_DAYS = 29;
+    static final int MAX_EXECUTIONS_PERIOD_DAYS = 29;
+    static final int MAX_CANDLES_PER_REQUEST = 2000;
+    /**
+     * Longest list of ids sent in one {@code markets/quotes} request, keeping its URL well under the 2000 characters
+     * servers and proxies commonly accept.
+     */
+    static final int MAX_QUOTES_IDS_LENGTH = 1500;
 
     private static final String API_V1_TEMPLATE = "%sv1/%s";
+    private static final String CANDLES_ENDPOINT = "markets/candles/{id}";
+    private static final String QUOTES_ENDPOINT = "markets/quotes";
     private static final DateTimeFormatter DATE_FORMATTER_FOR_URL = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
     private static final DateTimeFormatter DATE_FORMATTER_FOR_LOG = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
@@ -31,11 +61,91 @@ public class QuestradeWebClientImpl implements QuestradeWebClient {
 
     private final RestClient authenticationClient;
     private final RestClient apiClient;
+    private final RateLimitScheduler rateLimitScheduler;
+    private final BoundedFanOut fanOut;
+    private final QuestradeMetrics metrics;
+    private final ExchangeRecorder recorder;
+    private final ResilientCaller resilientCaller;
+    private final ConnectionProvider connectionProvider;
+    private final List<Meter> rateLimitGauges;
+    /**
+     * Whether responses come from a recording, which went through the rate limits when it was recorded.
+     */
+    private final boolean replaying;
 
     public QuestradeWebClientImpl(WebClientProperties properties) {
+        this(properties, Metrics.globalRegistry);
+    }
+
+    /**
+     * Records the {@link QuestradeMetrics} in the application {@link MeterRegistry} if there is one, otherwise in
+     * Micrometer's global registry.
+     */
+    @Autowired
+    public QuestradeWebClientImpl(WebClientProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(properties, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public QuestradeWebClientImpl(WebClientProperties properties, MeterRegistry meterRegistry) {
+        this(properties, new RateLimitScheduler(), new QuestradeMetrics(meterRegistry));
+    }
+
+    QuestradeWebClientImpl(WebClientProperties properties, RateLimitScheduler rateLimitScheduler, QuestradeMetrics metrics) {
+        this.rateLimitScheduler = rateLimitScheduler;
+        this.metrics = metrics;
+        rateLimitGauges = metrics.registerRateLimitGauges(QuestradeMetrics.SYNC_CLIENT, rateLimitScheduler);
+
+        WebClientProperties.Transport transport = properties.getTransport();
+        replaying = transport.getMode() == WebClientProperties.Transport.Mode.Replay;
+        recorder = transport.getMode() == WebClientProperties.Transport.Mode.Record ? new ExchangeRecorder(archiveOf(transport)) : null;
+        connectionProvider = replaying ? null : HttpTransport.connectionProvider(transport);
+        ClientHttpRequestFactory requestFactory = replaying ? ExchangeReplayer.load(archiveOf(transport)) : liveRequestFactory(transport, connectionProvider);
+
+        MetricsInterceptor metricsInterceptor = new MetricsInterceptor(metrics);
+        Consumer<List<ClientHttpRequestInterceptor>> interceptors = list -> {
+            list.add(metricsInterceptor);
+            if (recorder != null)
+                list.add(recorder);
+        };
+
+        authenticationClient = RestClient.builder()
+                                         .baseUrl(properties.getLoginUrl())
+                                         .requestFactory(requestFactory)
+                                         .requestInterceptors(interceptors)
+                                         .build();
+        apiClient = RestClient.builder()
+                              .requestFactory(requestFactory)
+                              .requestInterceptors(interceptors)
+                              .messageConverters(converters -> converters.addFirst(new CandleSeriesHttpMessageConverter()))
+                              .build();
+        fanOut = new BoundedFanOut(properties.getMaxConcurrentRequests());
+        resilientCaller = new ResilientCaller(properties.getResilience(), replaying);
+    }
+
+    private static ClientHttpRequestFactory liveRequestFactory(WebClientProperties.Transport transport, ConnectionProvider connectionProvider) {
+        ReactorNettyClientRequestFactory requestFactory = new ReactorNettyClientRequestFactory(HttpTransport.create(transport, connectionProvider));
+        // the factory waits on its own exchange timeout too, which defaults to 5 seconds
+        requestFactory.setExchangeTimeout(transport.getReadTimeout());
+        requestFactory.setReadTimeout(transport.getReadTimeout());
+        return requestFactory;
+    }
 
-        authenticationClient = RestClient.create(properties.getLoginUrl());
-        apiClient = RestClient.create();
+    private static Path archiveOf(WebClientProperties.Transport transport) {
+        if (transport.getArchive() == null)
+            throw new ArgumentException("An archive is required in %s mode".formatted(transport.getMode()));
+        return transport.getArchive();
+    }
+
+    /**
+     * Closes the archive being recorded, if any, and the pooled connections.
+     */
+    @Override
+    public void close() {
+        if (recorder != null)
+            recorder.close();
+        if (connectionProvider != null)
+            connectionProvider.dispose();
+        metrics.remove(rateLimitGauges);
     }
 
     @Override
@@ -57,10 +167,11 @@ public class QuestradeWebClientImpl implements QuestradeWebClient {
     public Set<QuestradeAccount> getAccounts(AuthenticationToken authToken) {
         log.info("QuestradeWebClient: entryPoint=getAccounts");
 
-        ResponseEntity<AccountResponse> response =
-                callQuestrade(authToken, "accounts").toEntity(AccountResponse.class);
+        ResponseEntity<AccountResponse> response = callQuestrade(authToken, "accounts", AccountResponse.class);
 
-        return response.getBody() == null ? Collections.emptySet() : response.getBody().accounts();
+        Set<QuestradeAccount> accounts = response.getBody() == null ? Collections.emptySet() : response.getBody().accounts();
+        metrics.recordResults("accounts", accounts.size());
+        return accounts;
     }
 
     @Override
@@ -68,59 +179,310 @@ public class QuestradeWebClientImpl implements QuestradeWebClient {
         log.info("QuestradeWebClient: entryPoint=getPositions account=*****");
 
         ResponseEntity<PositionsResponse> response =
-                callQuestrade(authToken, "accounts/%s/positions".formatted(account.number())).toEntity(PositionsResponse.class);
+                callQuestrade(authToken, "accounts/%s/positions".formatted(account.number()), PositionsResponse.class);
+
+        Set<QuestradePosition> positions = response.getBody() == null ? Collections.emptySet() : response.getBody().positions();
+        metrics.recordResults("accounts/{id}/positions", positions.size());
+        return positions;
+    }
+
+    @Override
+    public QuestadeBalances getBalances(AuthenticationToken authToken, QuestradeAccount account) {
+        log.info("QuestradeWebClient: entryPoint=getBalances account=*****");
+
+        ResponseEntity<QuestadeBalances> response =
+                callQuestrade(authToken, "accounts/%s/balances".formatted(account.number()), QuestadeBalances.class);
+
+        if (response.getBody() == null)
+            throw new StatusCodeException("Questrade did not return the balances", response.getStatusCode().value());
+        return response.getBody();
+    }
+
+    @Override
+    public List<QuestradeExecution> getExecutions(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
+        log.info("QuestradeWebClient: entryPoint=getExecutions account=***** requestPeriod={}", period);
+
+        ResponseEntity<ExecutionsResponse> response = callQuestrade(authToken, executionsResource(account, period), ExecutionsResponse.class);
+
+        List<QuestradeExecution> executions = response.getBody() == null || response.getBody().executions() == null ? List.of() : response.getBody().executions();
+        metrics.recordResults("accounts/{id}/executions", executions.size());
+        return executions;
+    }
+
+    static String executionsResource(QuestradeAccount account, RequestPeriod period) {
+        if (period.numberDaysInBetween() > MAX_EXECUTIONS_PERIOD_DAYS)
+            throw new TimeRangeException("Invalid period. Executions are limited to 30 days. Start: %s  End: %s"
+                                                 .formatted(period.periodStart().format(DATE_FORMATTER_FOR_LOG),
+                                                            period.periodEnd().format(DATE_FORMATTER_FOR_LOG)));
+
+        return "accounts/%s/executions?startTime=%s&endTime=%s".formatted(account.number(),
+                                                                          period.periodStart().format(DATE_FORMATTER_FOR_URL),
+                                                                          period.periodEnd().format(DATE_FORMATTER_FOR_URL));
+    }
+
+    @Override
+    public List<Order> getOrders(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period, OrderStateFilter stateFilter) {
+        log.info("QuestradeWebClient: entryPoint=getOrders account=***** requestPeriod={}, stateFilter={}", period, stateFilter);
+
+        ResponseEntity<OrdersResponse> response = callQuestrade(authToken, ordersResource(account, period, stateFilter), OrdersResponse.class);
+
+        List<Order> orders = response.getBody() == null || response.getBody().orders() == null ? List.of() : response.getBody().orders();
+        metrics.recordResults("accounts/{id}/orders", orders.size());
+        return orders;
+    }
 
-        return response.getBody() == null ? Collections.emptySet() : response.getBody().positions();
+    static String ordersResource(QuestradeAccount account, RequestPeriod period, OrderStateFilter stateFilter) {
+        //  v1/accounts/26598145/orders?startTime=2014-10-01T00:00:00-05:00&endTime=2014-10-20T23:59:59-05:00&stateFilter=All
+        return "accounts/%s/orders?startTime=%s&endTime=%s&stateFilter=%s".formatted(account.number(),
+                                                                                     period.periodStart().format(DATE_FORMATTER_FOR_URL),
+                                                                                     period.periodEnd().format(DATE_FORMATTER_FOR_URL),
+                                                                                     stateFilter);
     }
 
     @Override
     public Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period) {
-        log.info("QuestradeWebClient: entryPoint=getCandles position={}, requestPeriod={}", position.symbol(), period);
+        return getPositionCandles(authToken, position, period, QuestradeCandle.Interval.OneDay);
+    }
 
-        //  v1/markets/candles/38738?startTime=2014-10-01T00:00:00-05:00&endTime=2014-10-20T23:59:59-05:00&interval=OneDay
-        String url = "markets/candles/%s?startTime=%s&endTime=%s&interval=OneDay".formatted(position.symbolId(),
-                                                                                            period.periodStart().format(DATE_FORMATTER_FOR_URL),
-                                                                                            period.periodEnd().format(DATE_FORMATTER_FOR_URL));
+    /**
+     * Questrade caps the number of candles per response, so the period is split in as few chunks as possible
+     * under that cap, which are fetched concurrently.
+     */
+    @Override
+    public Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        log.info("QuestradeWebClient: entryPoint=getCandles position={}, requestPeriod={}, interval={}", position.symbol(), period, interval);
+
+        List<Set<QuestradeCandle>> chunks = fetchCandleChunks(period, interval, chunk -> {
+            ResponseEntity<CandlesResponse> response = callQuestrade(authToken, candlesResource(position, chunk, interval), CandlesResponse.class);
+            Set<QuestradeCandle> candles = response.getBody() == null ? Collections.emptySet() : response.getBody().candles();
+            metrics.recordResults(CANDLES_ENDPOINT, candles.size());
+            return candles;
+        });
+
+        if (chunks.size() == 1)
+            return chunks.getFirst();
+
+        Set<QuestradeCandle> candles = new LinkedHashSet<>();
+        chunks.forEach(candles::addAll);
+        return candles;
+    }
+
+    /**
+     * Same as {@link #getPositionCandles(AuthenticationToken, QuestradePosition, RequestPeriod, QuestradeCandle.Interval)},
+     * but the response is streamed into a columnar {@link CandleSeries}, sorted by time.
+     */
+    @Override
+    public CandleSeries getPositionCandleSeries(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        log.info("QuestradeWebClient: entryPoint=getCandleSeries position={}, requestPeriod={}, interval={}", position.symbol(), period, interval);
+
+        List<CandleSeries> chunks = fetchCandleChunks(period, interval, chunk -> {
+            ResponseEntity<CandleSeries> response = callQuestrade(authToken, candlesResource(position, chunk, interval), CandleSeries.class);
+            CandleSeries candles = response.getBody() == null ? CandleSeries.EMPTY : response.getBody();
+            metrics.recordResults(CANDLES_ENDPOINT, candles.size());
+            return candles;
+        });
+
+        return chunks.size() == 1 ? chunks.getFirst() : CandleSeries.concat(chunks);
+    }
 
-        ResponseEntity<CandlesResponse> response = callQuestrade(authToken, url).toEntity(CandlesResponse.class);
+    private <T> List<T> fetchCandleChunks(RequestPeriod period, QuestradeCandle.Interval interval, Function<RequestPeriod, T> fetchChunk) {
+        return fetchChunks(period.splitIntoPeriodsOf(getCandlesRequestLength(interval)), fetchChunk);
+    }
+
+    /**
+     * Fetches every chunk, concurrently when there is more than one, failing if any of them fails.
+     */
+    private <C, T> List<T> fetchChunks(List<C> chunks, Function<C, T> fetchChunk) {
+        if (chunks.size() == 1)
+            return List.of(fetchChunk.apply(chunks.getFirst()));
+
+        List<T> results = new ArrayList<>();
+        for (FetchResult<T> chunk : fanOut.fetchAll(chunks, fetchChunk).values()) {
+            if (!chunk.isSuccess())
+                throw chunk.error();
+            results.add(chunk.value());
+        }
+        return results;
+    }
+
+    /**
+     * Returns the longest period a single candles request can cover without going over the candles cap.
+     */
+    static Duration getCandlesRequestLength(QuestradeCandle.Interval interval) {
+        return interval.getDuration().multipliedBy(MAX_CANDLES_PER_REQUEST);
+    }
 
-        return response.getBody() == null ? Collections.emptySet() : response.getBody().candles();
+    static String candlesResource(QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        //  v1/markets/candles/38738?startTime=2014-10-01T00:00:00-05:00&endTime=2014-10-20T23:59:59-05:00&interval=OneDay
+        return "markets/candles/%s?startTime=%s&endTime=%s&interval=%s".formatted(position.symbolId(),
+                                                                                  period.periodStart().format(DATE_FORMATTER_FOR_URL),
+                                                                                  period.periodEnd().format(DATE_FORMATTER_FOR_URL),
+                                                                                  interval);
     }
 
     @Override
     public Set<QuestradeActivity> getAccountActivities(AuthenticationToken authToken, QuestradeAccount account, RequestPeriod period) {
         log.info("QuestradeWebClient: entryPoint=getAccountActivities (token, account=***** requestPeriod=%{}", period);
 
-        if (period.numberDaysInBetween() < 1 || period.numberDaysInBetween() > 29)
+        ResponseEntity<AccountActivityResponse> response = callQuestrade(authToken, activitiesResource(account, period), AccountActivityResponse.class);
+
+        Set<QuestradeActivity> activities = response.getBody() == null ? Collections.emptySet() : response.getBody().activities();
+        metrics.recordResults("accounts/{id}/activities", activities.size());
+        return activities;
+    }
+
+    static String activitiesResource(QuestradeAccount account, RequestPeriod period) {
+        if (period.numberDaysInBetween() < 1 || period.numberDaysInBetween() > MAX_ACTIVITIES_PERIOD_DAYS)
             throw new TimeRangeException("Invalid period. Account activities are limited to 30 days. Start: %s  End: %s"
                                                  .formatted(period.periodEnd().format(DATE_FORMATTER_FOR_LOG),
                                                             period.periodEnd().format(DATE_FORMATTER_FOR_LOG)));
 
-        String url = "accounts/%s/activities?startTime=%s&endTime=%s".formatted(account.number(),
-                                                                                period.periodStart().format(DATE_FORMATTER_FOR_URL),
-                                                                                period.periodEnd().format(DATE_FORMATTER_FOR_URL));
-        ResponseEntity<AccountActivityResponse> response = callQuestrade(authToken, url).toEntity(AccountActivityResponse.class);
+        return "accounts/%s/activities?startTime=%s&endTime=%s".formatted(account.number(),
+                                                                          period.periodStart().format(DATE_FORMATTER_FOR_URL),
+                                                                          period.periodEnd().format(DATE_FORMATTER_FOR_URL));
+    }
+
+    @Override
+    public List<QuestadeSymbol> searchSymbols(AuthenticationToken authToken, String prefix) {
+        log.info("QuestradeWebClient: entryPoint=searchSymbols prefix={}", prefix);
+
+        ResponseEntity<SymbolsResponse> response = callQuestrade(authToken, symbolsSearchResource(prefix), SymbolsResponse.class);
 
-        return response.getBody() == null ? Collections.emptySet() : response.getBody().activities();
+        List<QuestadeSymbol> symbols = response.getBody() == null || response.getBody().symbols() == null ? List.of() : response.getBody().symbols();
+        metrics.recordResults("symbols/search", symbols.size());
+        return symbols;
     }
 
-    private RestClient.ResponseSpec callQuestrade(AuthenticationToken authToken, String resource) {
-        if (authToken.isExpired())
-            throw new AuthenticationExpiredException("Authentication has expired at %s".formatted(authToken.expires_at()));
+    static String symbolsSearchResource(String prefix) {
+        // typed by users: '&', '#', '+' or '{' must not end up in the query as such
+        return "symbols/search?prefix=%s".formatted(UriUtils.encode(prefix, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<QuestradeSymbolInfo> getSymbols(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        log.info("QuestradeWebClient: entryPoint=getSymbols nbSymbols={}", symbolIds.size());
+
+        if (symbolIds.isEmpty())
+            return List.of();
+
+        String ids = symbolIds.stream().distinct().map(String::valueOf).collect(Collectors.joining(","));
+        ResponseEntity<SymbolInfoResponse> response = callQuestrade(authToken, "symbols?ids=%s".formatted(ids), SymbolInfoResponse.class);
+
+        List<QuestradeSymbolInfo> symbols = response.getBody() == null || response.getBody().symbols() == null ? List.of() : response.getBody().symbols();
+        metrics.recordResults("symbols", symbols.size());
+        return symbols;
+    }
+
+    /**
+     * The ids are split over as few requests as {@link #MAX_QUOTES_IDS_LENGTH} allows, which are fetched concurrently.
+     */
+    @Override
+    public List<Quote> getQuotes(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        log.info("QuestradeWebClient: entryPoint=getQuotes nbSymbols={}", symbolIds.size());
+
+        if (symbolIds.isEmpty())
+            return List.of();
+
+        List<List<Quote>> batches = fetchChunks(quotesResources(symbolIds), resource -> {
+            ResponseEntity<QuotesResponse> response = callQuestrade(authToken, resource, QuotesResponse.class);
+            List<Quote> quotes = response.getBody() == null || response.getBody().quotes() == null ? List.of() : response.getBody().quotes();
+            metrics.recordResults(QUOTES_ENDPOINT, quotes.size());
+            return quotes;
+        });
+
+        return batches.size() == 1 ? batches.getFirst() : batches.stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * Returns the {@code markets/quotes} resources asking for every distinct id, each listing as many ids as fit
+     * in {@link #MAX_QUOTES_IDS_LENGTH} characters.
+     */
+    static List<String> quotesResources(Collection<Integer> symbolIds) {
+        List<String> resources = new ArrayList<>();
+        StringJoiner ids = new StringJoiner(",");
+
+        for (int symbolId : new LinkedHashSet<>(symbolIds)) {
+            String id = String.valueOf(symbolId);
+            if (ids.length() > 0 && ids.length() + 1 + id.length() > MAX_QUOTES_IDS_LENGTH) {
+                resources.add(QUOTES_ENDPOINT + "?ids=" + ids);
+                ids = new StringJoiner(",");
+            }
+            ids.add(id);
+        }
+        if (ids.length() > 0)
+            resources.add(QUOTES_ENDPOINT + "?ids=" + ids);
+
+        return resources;
+    }
+
+    @Override
+    public int getQuoteStreamPort(AuthenticationToken authToken, Collection<Integer> symbolIds) {
+        log.info("QuestradeWebClient: entryPoint=getQuoteStreamPort nbSymbols={}", symbolIds.size());
+
+        String ids = symbolIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        ResponseEntity<StreamPortResponse> response =
+                callQuestrade(authToken, "markets/quotes?ids=%s&stream=true&mode=WebSocket".formatted(ids), StreamPortResponse.class);
+
+        if (response.getBody() == null)
+            throw new StatusCodeException("Questrade did not return a stream port", response.getStatusCode().value());
+        return response.getBody().streamPort();
+    }
 
+    /**
+     * Returns the request budget left, as last reported by Questrade, for the given category of calls.
+     */
+    public RateLimitBudget getRateLimitBudget(RateLimitCategory category) {
+        return rateLimitScheduler.getBudget(category);
+    }
+
+    private <T> ResponseEntity<T> callQuestrade(AuthenticationToken authToken, String resource, Class<T> responseType) {
         log.info("QuestradeWebClient: action=callQuestrade(..., {})", resource);
 
-        String uri = API_V1_TEMPLATE.formatted(authToken.api_server(), resource);
+        String uri = apiUri(authToken, resource);
         String authHeader = authToken.getAuthHeader();
         log.debug("QuestradeWebClient: uri={} header={}", uri, authHeader);
 
-        return apiClient.get()
-                        .uri(uri)
-                        .header("Authorization", authHeader)
-                        .retrieve();
+        RateLimitCategory category = RateLimitCategory.of(resource);
+        return resilientCaller.call(authToken.api_server(), endpointOf(resource), () -> {
+            if (!replaying)
+                rateLimitScheduler.acquire(category);
+
+            try {
+                ResponseEntity<T> response = apiClient.get()
+                                                      // resources are already encoded, not templates
+                                                      .uri(URI.create(uri))
+                                                      .header("Authorization", authHeader)
+                                                      .retrieve()
+                                                      .toEntity(responseType);
+
+                rateLimitScheduler.update(category, response.getHeaders());
+                return response;
+            } catch (RestClientResponseException e) {
+                if (e.getResponseHeaders() != null)
+                    rateLimitScheduler.update(category, e.getResponseHeaders());
+                throw e;
+            }
+        });
+    }
+
+    private static String endpointOf(String resource) {
+        int query = resource.indexOf('?');
+        return QuestradeMetrics.endpointOf(URI.create(query < 0 ? resource : resource.substring(0, query)));
+    }
+
+    /**
+     * Returns the URI of an API resource.
+     *
+     * @throws AuthenticationExpiredException if the token has expired.
+     */
+    static String apiUri(AuthenticationToken authToken, String resource) {
+        if (authToken.isExpired())
+            throw new AuthenticationExpiredException("Authentication has expired at %s".formatted(authToken.expires_at()));
+
+        return API_V1_TEMPLATE.formatted(authToken.api_server(), resource);
     }
 
-    private AuthenticationToken createAuthenticationObject(ResponseEntity<AuthorizationResponse> response) {
+    static AuthenticationToken createAuthenticationObject(ResponseEntity<AuthorizationResponse> response) {
         log.info("QuestradeWebClient: action=createAuthenticationObjectFromAnswer");
         AuthorizationResponse clientAuth = response.getBody();
 
@@ -132,7 +494,7 @@ public class QuestradeWebClientImpl implements QuestradeWebClient {
         return new AuthenticationToken(clientAuth.access_token(), clientAuth.api_server(), expiresAt, clientAuth.refresh_token(), clientAuth.token_type());
     }
 
-    private ZonedDateTime getExpirationDate(String dateHeader, AuthorizationResponse clientAuth) {
+    private static ZonedDateTime getExpirationDate(String dateHeader, AuthorizationResponse clientAuth) {
         ZonedDateTime localDate = DateUtils.parseHeaderDateToLocalOffsetDateTime(dateHeader);
 
         return localDate.plusSeconds(clientAuth.expires_in());
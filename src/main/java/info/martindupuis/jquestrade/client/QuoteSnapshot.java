@@ -0,0 +1,116 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.Quote;
+
+/**
+ * A consistent copy of the latest {@link Quote} of a symbol, filled by {@link QuoteTable#read(int, QuoteSnapshot)}.
+ * <p>
+ * Meant to be reused by the thread owning it, so reading quotes allocates nothing. Not thread-safe.
+ */
+public class QuoteSnapshot {
+    int symbolId;
+    String symbol;
+    String tier;
+    double bidPrice;
+    int bidSize;
+    double askPrice;
+    int askSize;
+    double lastTradePriceTrHrs;
+    double lastTradePrice;
+    int lastTradeSize;
+    String lastTradeTick;
+    String lastTradeTime;
+    long volume;
+    double openPrice;
+    double highPrice;
+    double lowPrice;
+    boolean delayed;
+    boolean halted;
+    double high52w;
+    double low52w;
+    double vwap;
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public double getBidPrice() {
+        return bidPrice;
+    }
+
+    public int getBidSize() {
+        return bidSize;
+    }
+
+    public double getAskPrice() {
+        return askPrice;
+    }
+
+    public int getAskSize() {
+        return askSize;
+    }
+
+    public double getLastTradePriceTrHrs() {
+        return lastTradePriceTrHrs;
+    }
+
+    public double getLastTradePrice() {
+        return lastTradePrice;
+    }
+
+    public int getLastTradeSize() {
+        return lastTradeSize;
+    }
+
+    public String getLastTradeTick() {
+        return lastTradeTick;
+    }
+
+    public String getLastTradeTime() {
+        return lastTradeTime;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public double getOpenPrice() {
+        return openPrice;
+    }
+
+    public double getHighPrice() {
+        return highPrice;
+    }
+
+    public double getLowPrice() {
+        return lowPrice;
+    }
+
+    public boolean isDelayed() {
+        return delayed;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public double getHigh52w() {
+        return high52w;
+    }
+
+    public double getLow52w() {
+        return low52w;
+    }
+
+    public double getVWAP() {
+        return vwap;
+    }
+}
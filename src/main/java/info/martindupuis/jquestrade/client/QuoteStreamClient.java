@@ -0,0 +1,149 @@
+package info.martindupuis.jquestrade.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.Quote;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Streams Level 1 quotes over Questrade's WebSocket streaming port, instead of polling {@code markets/quotes}.
+ * <p>
+ * Each connection asks for a stream port with {@link QuestradeWebClient#getQuoteStreamPort}, connects to it on the
+ * {@code api_server} host and authenticates by sending the access token as its first message. When the server
+ * closes the stream, or the connection fails, it reconnects with a fresh token and subscribes to the same symbols
+ * again, waiting longer after each consecutive failure.
+ *
+ * @see <a href="https://www.questrade.com/api/documentation/streaming">Streaming documentation</a>
+ */
+@Slf4j
+public class QuoteStreamClient {
+    private static final TypeReference<List<Quote>> QUOTES = new TypeReference<>() {
+    };
+
+    private final QuestradeWebClient webClient;
+    private final Supplier<AuthenticationToken> tokenSupplier;
+    private final WebSocketClient webSocketClient;
+    private final WebClientProperties.QuoteStream properties;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private record StreamTarget(AuthenticationToken token, URI uri) {
+    }
+
+    /**
+     * @param webClient     The client used to request stream ports.
+     * @param tokenSupplier Gives a valid token for every (re)connection, e.g. {@link AuthenticationTokenManager#getToken()}.
+     */
+    public QuoteStreamClient(QuestradeWebClient webClient, Supplier<AuthenticationToken> tokenSupplier) {
+        this(webClient, tokenSupplier, new ReactorNettyWebSocketClient(), new WebClientProperties.QuoteStream());
+    }
+
+    public QuoteStreamClient(QuestradeWebClient webClient, Supplier<AuthenticationToken> tokenSupplier, WebSocketClient webSocketClient,
+                             WebClientProperties.QuoteStream properties) {
+        this.webClient = webClient;
+        this.tokenSupplier = tokenSupplier;
+        this.webSocketClient = webSocketClient;
+        this.properties = properties;
+    }
+
+    /**
+     * Streams the quote updates of the given symbols until the returned {@link Flux} is cancelled.
+     * <p>
+     * The stream is cold: every subscriber opens its own connections. Use {@link Flux#share()} to fan one stream
+     * out to many subscribers.
+     */
+    public Flux<Quote> stream(Collection<Integer> symbolIds) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(symbolIds));
+        int maxPerConnection = properties.getMaxSymbolsPerConnection();
+
+        List<Flux<Quote>> connections = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += maxPerConnection)
+            connections.add(connection(ids.subList(from, Math.min(from + maxPerConnection, ids.size()))));
+
+        return Flux.merge(connections);
+    }
+
+    /**
+     * Delivers the quote updates of the given symbols to the listener, until the returned {@link Disposable} is disposed.
+     */
+    public Disposable subscribe(Collection<Integer> symbolIds, Consumer<Quote> listener) {
+        return stream(symbolIds).subscribe(listener,
+                                           e -> log.error("QuoteStreamClient: action=subscribe stream stopped", e));
+    }
+
+    private Flux<Quote> connection(List<Integer> symbolIds) {
+        return Flux.defer(() -> connectOnce(symbolIds))
+                   .repeatWhen(completions -> completions.doOnNext(ignored -> log.info("QuoteStreamClient: action=reconnect stream closed by the server"))
+                                                         .delayElements(properties.getReconnectDelay()))
+                   .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.getReconnectDelay())
+                                   .maxBackoff(properties.getMaxReconnectDelay())
+                                   .transientErrors(true)
+                                   .doBeforeRetry(signal -> log.warn("QuoteStreamClient: action=reconnect attempt={} after {}",
+                                                                     signal.totalRetriesInARow() + 1, signal.failure().toString())));
+    }
+
+    private Flux<Quote> connectOnce(List<Integer> symbolIds) {
+        return Mono.fromCallable(() -> {
+                       AuthenticationToken token = tokenSupplier.get();
+                       int port = webClient.getQuoteStreamPort(token, symbolIds);
+                       return new StreamTarget(token, streamUri(token.api_server(), port));
+                   })
+                   // getQuoteStreamPort blocks
+                   .subscribeOn(Schedulers.boundedElastic())
+                   .flatMapMany(target -> Flux.create(sink -> {
+                       log.info("QuoteStreamClient: action=connect uri={} nbSymbols={}", target.uri(), symbolIds.size());
+
+                       WebSocketHandler handler = session -> session.send(Mono.just(session.textMessage(target.token().access_token())))
+                                                                    .thenMany(session.receive())
+                                                                    .map(WebSocketMessage::getPayloadAsText)
+                                                                    .doOnNext(payload -> decode(payload).forEach(sink::next))
+                                                                    .then();
+
+                       sink.onDispose(webSocketClient.execute(target.uri(), handler)
+                                                     .subscribe(null, sink::error, sink::complete));
+                   }));
+    }
+
+    /*
+     * The stream sends {"success":true} once authenticated, then {"quotes":[...]} updates, or {"code":...} errors.
+     */
+    List<Quote> decode(String payload) {
+        try {
+            JsonNode message = objectMapper.readTree(payload);
+            if (message.has("quotes"))
+                return objectMapper.convertValue(message.get("quotes"), QUOTES);
+            if (message.has("code"))
+                throw new StatusCodeException(message.path("message").asText("Quote stream error"), message.get("code").asInt());
+            return List.of();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Invalid quote stream message", e);
+        }
+    }
+
+    static URI streamUri(String apiServer, int port) {
+        URI server = URI.create(apiServer);
+        String scheme = "http".equalsIgnoreCase(server.getScheme()) ? "ws" : "wss";
+
+        return URI.create("%s://%s:%d/".formatted(scheme, server.getHost(), port));
+    }
+}
@@ -0,0 +1,284 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.Quote;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The latest {@link Quote} of each symbol, for threads reading quotes much more often than they change.
+ * <p>
+ * Each symbol gets a slot in flat primitive arrays the first time it is updated. A slot is guarded by a sequence
+ * number, odd while an update is being written: readers copy the fields, then check that the sequence did not move
+ * in the meantime, and copy again otherwise. Reads never write shared memory, so they scale with the number of cores,
+ * and neither reads nor updates allocate once the symbol has its slot.
+ * <p>
+ * Plug it into a quote stream with {@code quoteStreamClient.subscribe(symbolIds, quoteTable::update)}.
+ */
+@Slf4j
+public class QuoteTable {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final int SEQUENCE = 0;
+    private static final int BID_PRICE = 1;
+    private static final int BID_SIZE = 2;
+    private static final int ASK_PRICE = 3;
+    private static final int ASK_SIZE = 4;
+    private static final int LAST_TRADE_PRICE_TR_HRS = 5;
+    private static final int LAST_TRADE_PRICE = 6;
+    private static final int LAST_TRADE_SIZE = 7;
+    private static final int VOLUME = 8;
+    private static final int OPEN_PRICE = 9;
+    private static final int HIGH_PRICE = 10;
+    private static final int LOW_PRICE = 11;
+    private static final int DELAYED = 12;
+    private static final int HALTED = 13;
+    private static final int HIGH_52W = 14;
+    private static final int LOW_52W = 15;
+    private static final int VWAP = 16;
+    private static final int NUMBERS_PER_SLOT = 17;
+
+    private static final int SYMBOL = 0;
+    private static final int TIER = 1;
+    private static final int LAST_TRADE_TICK = 2;
+    private static final int LAST_TRADE_TIME = 3;
+    private static final int STRINGS_PER_SLOT = 4;
+
+    private static final int NO_SYMBOL = -1;
+
+    private final int capacity;
+    private final long[] numbers;
+    private final String[] strings;
+
+    // open addressing from symbolId to slot, at most half full
+    private final int[] symbolIds;
+    private final int[] slots;
+    private int nbSlots;
+
+    private volatile Listener[] listeners = new Listener[0];
+
+    /**
+     * Called after every update, on the updating thread. Read the new values with {@link #read(int, QuoteSnapshot)}.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onUpdate(int symbolId);
+    }
+
+    /**
+     * @param capacity The maximum number of symbols held.
+     */
+    public QuoteTable(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1, was %d".formatted(capacity));
+
+        this.capacity = capacity;
+        numbers = new long[capacity * NUMBERS_PER_SLOT];
+        strings = new String[capacity * STRINGS_PER_SLOT];
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        symbolIds = new int[tableSize];
+        slots = new int[tableSize];
+        Arrays.fill(symbolIds, NO_SYMBOL);
+    }
+
+    public synchronized void addListener(Listener listener) {
+        Listener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        listeners = Arrays.stream(listeners).filter(registered -> registered != listener).toArray(Listener[]::new);
+    }
+
+    /**
+     * Replaces the quote of the symbol, then notifies the listeners.
+     *
+     * @throws IllegalStateException if the symbol is new and the table is full.
+     */
+    public void update(Quote quote) {
+        int symbolId = (int) quote.getSymbolId();
+        int slot = slotOf(symbolId);
+        if (slot == NO_SYMBOL)
+            slot = addSlot(symbolId);
+
+        int base = slot * NUMBERS_PER_SLOT;
+        long sequence = beginWrite(base);
+
+        numbers[base + BID_PRICE] = Double.doubleToRawLongBits(quote.getBidPrice());
+        numbers[base + BID_SIZE] = quote.getBidSize();
+        numbers[base + ASK_PRICE] = Double.doubleToRawLongBits(quote.getAskPrice());
+        numbers[base + ASK_SIZE] = quote.getAskSize();
+        numbers[base + LAST_TRADE_PRICE_TR_HRS] = Double.doubleToRawLongBits(quote.getLastTradePriceTrHrs());
+        numbers[base + LAST_TRADE_PRICE] = Double.doubleToRawLongBits(quote.getLastTradePrice());
+        numbers[base + LAST_TRADE_SIZE] = quote.getLastTradeSize();
+        numbers[base + VOLUME] = quote.getVolume();
+        numbers[base + OPEN_PRICE] = Double.doubleToRawLongBits(quote.getOpenPrice());
+        numbers[base + HIGH_PRICE] = Double.doubleToRawLongBits(quote.getHighPrice());
+        numbers[base + LOW_PRICE] = Double.doubleToRawLongBits(quote.getLowPrice());
+        numbers[base + DELAYED] = quote.isDelayed() ? 1 : 0;
+        numbers[base + HALTED] = quote.isHalted() ? 1 : 0;
+        numbers[base + HIGH_52W] = Double.doubleToRawLongBits(quote.getHigh52w());
+        numbers[base + LOW_52W] = Double.doubleToRawLongBits(quote.getLow52w());
+        numbers[base + VWAP] = Double.doubleToRawLongBits(quote.getVWAP());
+
+        int stringBase = slot * STRINGS_PER_SLOT;
+        strings[stringBase + SYMBOL] = quote.getSymbol();
+        strings[stringBase + TIER] = quote.getTier();
+        strings[stringBase + LAST_TRADE_TICK] = quote.getLastTradeTick();
+        strings[stringBase + LAST_TRADE_TIME] = quote.getLastTradeTime();
+
+        LONGS.setRelease(numbers, base + SEQUENCE, sequence + 2);
+
+        notifyListeners(symbolId);
+    }
+
+    /**
+     * Copies the latest quote of the symbol, all its fields coming from the same update.
+     *
+     * @return {@code false}, leaving {@code into} untouched, if the symbol was never updated.
+     */
+    public boolean read(int symbolId, QuoteSnapshot into) {
+        int slot = slotOf(symbolId);
+        if (slot == NO_SYMBOL)
+            return false;
+
+        int base = slot * NUMBERS_PER_SLOT;
+        int stringBase = slot * STRINGS_PER_SLOT;
+        while (true) {
+            long sequence = (long) LONGS.getAcquire(numbers, base + SEQUENCE);
+            if (sequence == 0)
+                return false;
+
+            if ((sequence & 1) == 0) {
+                into.bidPrice = Double.longBitsToDouble(numbers[base + BID_PRICE]);
+                into.bidSize = (int) numbers[base + BID_SIZE];
+                into.askPrice = Double.longBitsToDouble(numbers[base + ASK_PRICE]);
+                into.askSize = (int) numbers[base + ASK_SIZE];
+                into.lastTradePriceTrHrs = Double.longBitsToDouble(numbers[base + LAST_TRADE_PRICE_TR_HRS]);
+                into.lastTradePrice = Double.longBitsToDouble(numbers[base + LAST_TRADE_PRICE]);
+                into.lastTradeSize = (int) numbers[base + LAST_TRADE_SIZE];
+                into.volume = numbers[base + VOLUME];
+                into.openPrice = Double.longBitsToDouble(numbers[base + OPEN_PRICE]);
+                into.highPrice = Double.longBitsToDouble(numbers[base + HIGH_PRICE]);
+                into.lowPrice = Double.longBitsToDouble(numbers[base + LOW_PRICE]);
+                into.delayed = numbers[base + DELAYED] != 0;
+                into.halted = numbers[base + HALTED] != 0;
+                into.high52w = Double.longBitsToDouble(numbers[base + HIGH_52W]);
+                into.low52w = Double.longBitsToDouble(numbers[base + LOW_52W]);
+                into.vwap = Double.longBitsToDouble(numbers[base + VWAP]);
+                into.symbol = strings[stringBase + SYMBOL];
+                into.tier = strings[stringBase + TIER];
+                into.lastTradeTick = strings[stringBase + LAST_TRADE_TICK];
+                into.lastTradeTime = strings[stringBase + LAST_TRADE_TIME];
+
+                // the copies above must not be reordered after the sequence check
+                VarHandle.acquireFence();
+                if ((long) LONGS.getOpaque(numbers, base + SEQUENCE) == sequence) {
+                    into.symbolId = symbolId;
+                    return true;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the latest last trade price of the symbol, or {@link Double#NaN} if it was never updated.
+     */
+    public double lastTradePrice(int symbolId) {
+        return readPrice(symbolId, LAST_TRADE_PRICE);
+    }
+
+    /**
+     * Returns the latest bid price of the symbol, or {@link Double#NaN} if it was never updated.
+     */
+    public double bidPrice(int symbolId) {
+        return readPrice(symbolId, BID_PRICE);
+    }
+
+    /**
+     * Returns the latest ask price of the symbol, or {@link Double#NaN} if it was never updated.
+     */
+    public double askPrice(int symbolId) {
+        return readPrice(symbolId, ASK_PRICE);
+    }
+
+    public synchronized int size() {
+        return nbSlots;
+    }
+
+    /*
+     * A single field needs no sequence check, an opaque read is never torn.
+     */
+    private double readPrice(int symbolId, int field) {
+        int slot = slotOf(symbolId);
+        if (slot == NO_SYMBOL)
+            return Double.NaN;
+
+        int base = slot * NUMBERS_PER_SLOT;
+        if ((long) LONGS.getAcquire(numbers, base + SEQUENCE) == 0)
+            return Double.NaN;
+        return Double.longBitsToDouble((long) LONGS.getOpaque(numbers, base + field));
+    }
+
+    private long beginWrite(int base) {
+        while (true) {
+            long sequence = (long) LONGS.getVolatile(numbers, base + SEQUENCE);
+            if ((sequence & 1) == 0 && LONGS.compareAndSet(numbers, base + SEQUENCE, sequence, sequence + 1)) {
+                // readers must see the odd sequence before any of the new values
+                VarHandle.storeStoreFence();
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void notifyListeners(int symbolId) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onUpdate(symbolId);
+            } catch (RuntimeException e) {
+                log.warn("QuoteTable: action=notifyListeners symbolId={} failed: {}", symbolId, e.getMessage());
+            }
+        }
+    }
+
+    private int slotOf(int symbolId) {
+        int mask = symbolIds.length - 1;
+        for (int i = hash(symbolId) & mask; ; i = (i + 1) & mask) {
+            int key = (int) INTS.getAcquire(symbolIds, i);
+            if (key == symbolId)
+                return slots[i];
+            if (key == NO_SYMBOL)
+                return NO_SYMBOL;
+        }
+    }
+
+    private synchronized int addSlot(int symbolId) {
+        int mask = symbolIds.length - 1;
+        int i = hash(symbolId) & mask;
+        while (symbolIds[i] != NO_SYMBOL) {
+            if (symbolIds[i] == symbolId)
+                return slots[i];
+            i = (i + 1) & mask;
+        }
+
+        if (nbSlots == capacity)
+            throw new IllegalStateException("QuoteTable is full, it holds %d symbols".formatted(capacity));
+
+        slots[i] = nbSlots++;
+        // published last: readers finding the id also find its slot
+        INTS.setRelease(symbolIds, i, symbolId);
+        return slots[i];
+    }
+
+    private static int hash(int symbolId) {
+        int h = symbolId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
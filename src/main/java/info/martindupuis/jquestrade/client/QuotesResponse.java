@@ -0,0 +1,9 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.Quote;
+
+import java.util.List;
+
+record QuotesResponse(
+        List<Quote> quotes) {
+}
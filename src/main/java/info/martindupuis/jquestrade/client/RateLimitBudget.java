@@ -0,0 +1,13 @@
+package info.martindupuis.jquestrade.client;
+
+import java.time.Instant;
+
+/**
+ * The request budget left for a {@link RateLimitCategory}.
+ *
+ * @param remaining The number of requests that can still be made before {@code resetAt}.
+ * @param resetAt   When the budget will be reset to its full hourly value.
+ */
+public record RateLimitBudget(int remaining,
+                              Instant resetAt) {
+}
@@ -0,0 +1,35 @@
+package info.martindupuis.jquestrade.client;
+
+/**
+ * Questrade keeps a separate request budget for account calls and for market calls.
+ *
+ * @see <a href="https://www.questrade.com/api/documentation/rate-limiting">
+ * The rate limiting documentation</a>
+ */
+public enum RateLimitCategory {
+    Account(30, 30_000),
+    Market(20, 15_000);
+
+    private final int requestsPerSecond;
+    private final int requestsPerHour;
+
+    RateLimitCategory(int requestsPerSecond, int requestsPerHour) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.requestsPerHour = requestsPerHour;
+    }
+
+    public int getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public int getRequestsPerHour() {
+        return requestsPerHour;
+    }
+
+    /**
+     * Returns the category of the API resource (e.g. {@code accounts/123/positions} or {@code markets/candles/38738}).
+     */
+    public static RateLimitCategory of(String resource) {
+        return resource.startsWith("markets") || resource.startsWith("symbols") ? Market : Account;
+    }
+}
@@ -0,0 +1,140 @@
+package info.martindupuis.jquestrade.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Paces requests so they stay within Questrade's rate limits instead of running into {@code 429} responses.
+ * <p>
+ * Each {@link RateLimitCategory} has a token bucket holding one second worth of requests. The bucket is refilled
+ * at the per-second limit, or slower when the hourly budget reported by the {@code X-RateLimit-Remaining} and
+ * {@code X-RateLimit-Reset} headers would otherwise run out before it is reset.
+ */
+@Slf4j
+public class RateLimitScheduler {
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    static final String RESET_HEADER = "X-RateLimit-Reset";
+
+    private final Clock clock;
+    private final Map<RateLimitCategory, TokenBucket> buckets = new EnumMap<>(RateLimitCategory.class);
+
+    public RateLimitScheduler() {
+        this(Clock.systemUTC());
+    }
+
+    RateLimitScheduler(Clock clock) {
+        this.clock = clock;
+        for (RateLimitCategory category : RateLimitCategory.values())
+            buckets.put(category, new TokenBucket(category, clock.instant()));
+    }
+
+    /**
+     * Blocks until a request of the given category can be made.
+     */
+    public void acquire(RateLimitCategory category) {
+        Duration wait;
+        while (!(wait = tryAcquire(category)).isZero()) {
+            log.debug("RateLimitScheduler: action=acquire category={} waiting {}", category, wait);
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the %s rate limit".formatted(category), e);
+            }
+        }
+    }
+
+    /**
+     * Takes a request permit if one is available.
+     *
+     * @return {@link Duration#ZERO} if the permit was taken, otherwise how long to wait before trying again.
+     */
+    public Duration tryAcquire(RateLimitCategory category) {
+        return buckets.get(category).tryAcquire(clock.instant());
+    }
+
+    /**
+     * Updates the budget of a category from the rate limit headers of a response, if it has them.
+     */
+    public void update(RateLimitCategory category, HttpHeaders headers) {
+        String remaining = headers.getFirst(REMAINING_HEADER);
+        String reset = headers.getFirst(RESET_HEADER);
+        if (remaining == null || reset == null)
+            return;
+
+        try {
+            buckets.get(category).update(Integer.parseInt(remaining.trim()), Instant.ofEpochSecond(Long.parseLong(reset.trim())));
+        } catch (NumberFormatException e) {
+            log.warn("RateLimitScheduler: action=update category={} invalid headers remaining='{}' reset='{}'", category, remaining, reset);
+        }
+    }
+
+    public RateLimitBudget getBudget(RateLimitCategory category) {
+        return buckets.get(category).getBudget();
+    }
+
+    private static final class TokenBucket {
+        private final RateLimitCategory category;
+        private final double capacity;
+
+        private double tokens;
+        private Instant lastRefill;
+        private int remaining;
+        private Instant resetAt;
+
+        private TokenBucket(RateLimitCategory category, Instant now) {
+            this.category = category;
+            this.capacity = category.getRequestsPerSecond();
+            this.tokens = capacity;
+            this.lastRefill = now;
+            this.remaining = category.getRequestsPerHour();
+            this.resetAt = now.plus(Duration.ofHours(1));
+        }
+
+        private synchronized Duration tryAcquire(Instant now) {
+            if (!now.isBefore(resetAt)) {
+                remaining = category.getRequestsPerHour();
+                resetAt = now.plus(Duration.ofHours(1));
+            }
+
+            if (remaining <= 0)
+                return Duration.between(now, resetAt);
+
+            double rate = refillRate(now);
+            double elapsedSeconds = Duration.between(lastRefill, now).toNanos() / 1e9;
+            tokens = Math.min(capacity, tokens + Math.max(0, elapsedSeconds) * rate);
+            lastRefill = now;
+
+            if (tokens < 1)
+                return Duration.ofNanos((long) Math.ceil((1 - tokens) / rate * 1e9));
+
+            tokens--;
+            remaining--;
+            return Duration.ZERO;
+        }
+
+        /*
+         * Spreads what is left of the hourly budget evenly until it is reset, without going over the per-second limit.
+         */
+        private double refillRate(Instant now) {
+            double secondsUntilReset = Math.max(1, Duration.between(now, resetAt).toSeconds());
+
+            return Math.min(category.getRequestsPerSecond(), remaining / secondsUntilReset);
+        }
+
+        private synchronized void update(int remaining, Instant resetAt) {
+            this.remaining = remaining;
+            this.resetAt = resetAt;
+        }
+
+        private synchronized RateLimitBudget getBudget() {
+            return new RateLimitBudget(remaining, resetAt);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package info.martindupuis.jquestrade.client;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -24,12 +25,13 @@ public record RequestPeriod(ZonedDateTime periodStart,
 
 
     public List<RequestPeriod> splitIntoPeriodsOfXDays(int xDays) {
-        if (this.numberDaysInBetween() <= xDays)
+        // numberDaysInBetween() leaves out the remaining hours
+        if (!periodStart.plusDays(xDays).isBefore(periodEnd))
             return List.of(this);
 
         int nbPeriods = (int) (this.numberDaysInBetween() / xDays);
-        // add a period if the actual period is not a multiple of xDays
-        nbPeriods += this.numberDaysInBetween() % xDays == 0 ? 0 : 1;
+        // add a period if the actual period is not a multiple of xDays (including any remaining hours)
+        nbPeriods += periodStart.plusDays((long) nbPeriods * xDays).isBefore(periodEnd) ? 1 : 0;
 
 
         List<RequestPeriod> periods = new ArrayList<>();
@@ -48,6 +50,30 @@ public record RequestPeriod(ZonedDateTime periodStart,
         return periods;
     }
 
+    /**
+     * Splits the period into consecutive periods of the given length, the last one ending with this period. Unlike
+     * {@link #splitIntoPeriodsOfXDays(int)}, the length does not need to be a whole number of days, and periods are
+     * cut at the current time rather than at the start of the day, so intraday periods keep today's part. Nothing is
+     * left of an empty period, or of one starting at or after now.
+     */
+    public List<RequestPeriod> splitIntoPeriodsOf(Duration length) {
+        return splitIntoPeriodsOf(length, ZonedDateTime.now());
+    }
+
+    List<RequestPeriod> splitIntoPeriodsOf(Duration length, ZonedDateTime now) {
+        ZonedDateTime end = periodEnd.isAfter(now) ? now : periodEnd;
+        if (!periodStart.isBefore(end))
+            return List.of();
+
+        List<RequestPeriod> periods = new ArrayList<>();
+        for (ZonedDateTime newPeriodStart = periodStart; newPeriodStart.isBefore(end); newPeriodStart = newPeriodStart.plus(length)) {
+            ZonedDateTime newPeriodEnd = newPeriodStart.plus(length);
+            periods.add(new RequestPeriod(newPeriodStart, newPeriodEnd.isAfter(end) ? end : newPeriodEnd));
+        }
+
+        return periods;
+    }
+
     private ZonedDateTime getNewPeriodEnd(int xDays, ZonedDateTime newPeriodStart) {
         ZonedDateTime newPeriodEnd = newPeriodStart.plusDays(xDays);
 
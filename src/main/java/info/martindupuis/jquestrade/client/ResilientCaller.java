@@ -0,0 +1,290 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.CircuitOpenException;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the GET requests of {@link QuestradeWebClientImpl}, retrying transient failures, hedging slow requests and
+ * breaking the circuit of failing API servers.
+ * <ul>
+ * <li>{@code 429}, {@code 5xx} and I/O errors are retried with a jittered exponential backoff, or after the
+ * {@code Retry-After} of the response when it has one. A {@code 429} without it waits for the rate limit budget
+ * when the request is sent again.</li>
+ * <li>Error responses left are thrown as {@link StatusCodeException}.</li>
+ * <li>With hedging on, a request slower than a percentile of the recent ones to its endpoint is sent a second time,
+ * the first response wins. The other one is left to complete in the background.</li>
+ * <li>Consecutive {@code 5xx} and I/O errors of an API server open its circuit: calls to it fail with
+ * {@link CircuitOpenException} until one is let through to probe it.</li>
+ * </ul>
+ */
+@Slf4j
+class ResilientCaller {
+    private static final Executor VIRTUAL_THREADS = runnable -> Thread.ofVirtual().start(runnable);
+    private static final int MIN_SAMPLES_TO_HEDGE = 20;
+
+    private final WebClientProperties.Resilience properties;
+    private final Clock clock;
+    /**
+     * Replayed responses are retried as they were when recorded, without waiting, hedging nor breaking circuits.
+     */
+    private final boolean replaying;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    ResilientCaller(WebClientProperties.Resilience properties, boolean replaying) {
+        this(properties, replaying, Clock.systemUTC());
+    }
+
+    ResilientCaller(WebClientProperties.Resilience properties, boolean replaying, Clock clock) {
+        this.properties = properties;
+        this.replaying = replaying;
+        this.clock = clock;
+    }
+
+    /**
+     * Sends a request, as many times as needed.
+     *
+     * @param apiServer The server the request goes to, each server has its own circuit.
+     * @param endpoint  The endpoint of the request, hedging compares requests of the same endpoint.
+     * @throws StatusCodeException  if the response left is an error.
+     * @throws CircuitOpenException if the circuit of the server is open.
+     */
+    <T> T call(String apiServer, String endpoint, Supplier<T> request) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(apiServer, key -> new CircuitBreaker());
+
+        for (int attempt = 1; ; attempt++) {
+            breaker.acquire(apiServer);
+            try {
+                T response = properties.isHedging() && !replaying ? hedged(endpoint, request) : request.get();
+                breaker.onSuccess();
+                return response;
+            } catch (RestClientResponseException e) {
+                int status = e.getStatusCode().value();
+                if (status >= 500)
+                    breaker.onFailure(apiServer);
+                else
+                    breaker.onSuccess();
+
+                Optional<Duration> wait = retryable(status) && attempt < properties.getMaxAttempts()
+                                          ? waitBeforeRetry(e.getResponseHeaders(), attempt)
+                                          : Optional.empty();
+                if (wait.isEmpty())
+                    throw new StatusCodeException(e.getMessage(), status, e);
+
+                log.warn("QuestradeWebClient: action=retry endpoint={} status={} attempt={} wait={}", endpoint, status, attempt, wait.get());
+                sleep(wait.get());
+            } catch (ResourceAccessException e) {
+                breaker.onFailure(apiServer);
+                if (attempt >= properties.getMaxAttempts())
+                    throw e;
+
+                Duration wait = backoff(attempt);
+                log.warn("QuestradeWebClient: action=retry endpoint={} error={} attempt={} wait={}", endpoint, e.getMessage(), attempt, wait);
+                sleep(wait);
+            } catch (RuntimeException e) {
+                // neither a success nor a server failure, e.g. an undecodable body: the probe is let go all the same
+                breaker.release();
+                throw e;
+            }
+        }
+    }
+
+    private static boolean retryable(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Returns how long to wait before retrying, or nothing if the server asks to wait longer than allowed.
+     */
+    private Optional<Duration> waitBeforeRetry(HttpHeaders headers, int attempt) {
+        Optional<Duration> retryAfter = retryAfter(headers);
+        if (retryAfter.isEmpty())
+            return Optional.of(backoff(attempt));
+
+        return retryAfter.filter(wait -> wait.compareTo(properties.getMaxRetryAfter()) <= 0);
+    }
+
+    /**
+     * Reads the {@code Retry-After} header, given either in seconds or as an HTTP date.
+     */
+    Optional<Duration> retryAfter(HttpHeaders headers) {
+        String value = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank())
+            return Optional.empty();
+
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim()))));
+        } catch (NumberFormatException e) {
+            try {
+                Duration wait = Duration.between(clock.instant(), ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return Optional.of(wait.isNegative() ? Duration.ZERO : wait);
+            } catch (DateTimeParseException unparseable) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Returns the wait before the given retry: the initial backoff doubled for each previous retry, up to the
+     * maximum, then jittered between half and all of it so clients failing together do not retry together.
+     */
+    Duration backoff(int attempt) {
+        long max = properties.getMaxBackoff().toMillis();
+        long backoff = properties.getInitialBackoff().toMillis();
+        for (int retry = 1; retry < attempt && backoff < max; retry++)
+            backoff *= 2;
+        backoff = Math.min(max, backoff);
+
+        return Duration.ofMillis(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+    }
+
+    private <T> T hedged(String endpoint, Supplier<T> request) {
+        LatencyWindow window = latencies.computeIfAbsent(endpoint, key -> new LatencyWindow());
+        Optional<Duration> hedgeDelay = window.percentile(properties.getHedgePercentile())
+                                              .map(percentile -> percentile.compareTo(properties.getMinHedgeDelay()) < 0 ? properties.getMinHedgeDelay() : percentile);
+
+        Supplier<T> timedRequest = () -> {
+            long start = System.nanoTime();
+            T response = request.get();
+            window.record(System.nanoTime() - start);
+            return response;
+        };
+
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(timedRequest, VIRTUAL_THREADS);
+        if (hedgeDelay.isEmpty())
+            return join(primary);
+
+        try {
+            return primary.get(hedgeDelay.get().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.info("QuestradeWebClient: action=hedge endpoint={} after={}", endpoint, hedgeDelay.get());
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for %s".formatted(endpoint), e);
+        }
+
+        CompletableFuture<T> hedge = CompletableFuture.supplyAsync(timedRequest, VIRTUAL_THREADS);
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> sent : Arrays.asList(primary, hedge))
+            sent.whenComplete((response, error) -> {
+                if (error == null)
+                    first.complete(response);
+                else if (failures.incrementAndGet() == 2)
+                    first.completeExceptionally(error);
+            });
+
+        return join(first);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+        return error instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(error);
+    }
+
+    private void sleep(Duration wait) {
+        if (replaying)
+            return;
+
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    /**
+     * Closed, it lets every call through and counts consecutive failures. Open, it fails calls right away until
+     * its open duration is over, then lets a single call through: its success closes the circuit, its failure
+     * opens it again.
+     */
+    private class CircuitBreaker {
+        private int consecutiveFailures;
+        private Instant openUntil;
+        private boolean probing;
+
+        private synchronized void acquire(String apiServer) {
+            if (openUntil == null || replaying)
+                return;
+
+            if (probing || clock.instant().isBefore(openUntil))
+                throw new CircuitOpenException("Circuit open for %s after %d consecutive failures".formatted(apiServer, consecutiveFailures));
+            probing = true;
+        }
+
+        private synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            openUntil = null;
+            probing = false;
+        }
+
+        /**
+         * Ends a call telling nothing about the server, so another call can probe it.
+         */
+        private synchronized void release() {
+            probing = false;
+        }
+
+        private synchronized void onFailure(String apiServer) {
+            consecutiveFailures++;
+            if (probing || (properties.getFailureThreshold() > 0 && consecutiveFailures >= properties.getFailureThreshold())) {
+                if (openUntil == null || probing)
+                    log.warn("QuestradeWebClient: action=openCircuit apiServer={} consecutiveFailures={}", apiServer, consecutiveFailures);
+                openUntil = clock.instant().plus(properties.getOpenDuration());
+                probing = false;
+            }
+        }
+    }
+
+    /**
+     * The latencies of the latest calls to an endpoint.
+     */
+    private static class LatencyWindow {
+        private final long[] nanos = new long[256];
+        private int count;
+        private int next;
+
+        private synchronized void record(long latency) {
+            nanos[next] = latency;
+            next = (next + 1) % nanos.length;
+            count = Math.min(count + 1, nanos.length);
+        }
+
+        private synchronized Optional<Duration> percentile(double percentile) {
+            if (count < MIN_SAMPLES_TO_HEDGE)
+                return Optional.empty();
+
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.min(count - 1, Math.max(0, Math.ceil(percentile * count) - 1));
+            return Optional.of(Duration.ofNanos(sorted[rank]));
+        }
+    }
+}
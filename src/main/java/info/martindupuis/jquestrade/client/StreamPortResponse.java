@@ -0,0 +1,5 @@
+package info.martindupuis.jquestrade.client;
+
+record StreamPortResponse(
+        int streamPort) {
+}
@@ -0,0 +1,216 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestadeSymbol;
+import info.martindupuis.jquestrade.QuestradeSymbolInfo;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Resolves symbols by ticker or by id, and searches them by ticker prefix, from memory whenever it can.
+ * <p>
+ * Every symbol returned by the API is indexed by ticker, by id and in a prefix trie. Once the API has been searched
+ * for a prefix, that prefix and every longer one are answered from the trie, without calling the API again.
+ * At most {@link WebClientProperties.Symbols#getMaxSymbols()} symbols are kept, the least recently used ones are
+ * dropped beyond that, and the prefixes they were found under are searched again next time.
+ * <p>
+ * Tickers are compared ignoring case.
+ */
+@Slf4j
+@Service
+public class SymbolIndex {
+    private final QuestradeWebClient webClient;
+    private final int maxSymbols;
+
+    private final Node root = new Node();
+    private final LinkedHashMap<String, QuestadeSymbol> byTicker = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, QuestadeSymbol> byId = new HashMap<>();
+
+    private static class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private QuestadeSymbol symbol;
+        // every symbol whose ticker starts with this node's prefix is indexed
+        private boolean complete;
+    }
+
+    public SymbolIndex(QuestradeWebClient webClient, WebClientProperties properties) {
+        this.webClient = webClient;
+        this.maxSymbols = properties.getSymbols().getMaxSymbols();
+    }
+
+    /**
+     * Returns the symbols whose ticker starts with the prefix, in alphabetical order of ticker.
+     * The API is only called if that prefix, or a shorter one, was never searched.
+     */
+    public List<QuestadeSymbol> search(AuthenticationToken authToken, String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty())
+            return List.of();
+
+        synchronized (this) {
+            if (isComplete(key))
+                return collect(key, limit);
+        }
+
+        List<QuestadeSymbol> found = webClient.searchSymbols(authToken, key);
+        log.debug("SymbolIndex: action=search prefix={} nbFound={}", key, found.size());
+
+        synchronized (this) {
+            found.forEach(this::put);
+            // more results than the index holds: some were dropped already
+            if (found.size() <= maxSymbols)
+                markComplete(key);
+            return collect(key, limit);
+        }
+    }
+
+    /**
+     * Returns the symbol of the given ticker, searching the API only if it is not indexed.
+     */
+    public Optional<QuestadeSymbol> findByTicker(AuthenticationToken authToken, String ticker) {
+        String key = normalize(ticker);
+        synchronized (this) {
+            QuestadeSymbol symbol = byTicker.get(key);
+            if (symbol != null || isComplete(key))
+                return Optional.ofNullable(symbol);
+        }
+
+        search(authToken, key, 1);
+        synchronized (this) {
+            return Optional.ofNullable(byTicker.get(key));
+        }
+    }
+
+    /**
+     * Returns the symbol of the given id, asking the API only if it is not indexed.
+     */
+    public Optional<QuestadeSymbol> findById(AuthenticationToken authToken, int symbolId) {
+        synchronized (this) {
+            QuestadeSymbol symbol = byId.get(symbolId);
+            if (symbol != null)
+                return Optional.of(touch(symbol));
+        }
+
+        List<QuestadeSymbol> found = webClient.getSymbols(authToken, List.of(symbolId))
+                                              .stream()
+                                              .map(QuestradeSymbolInfo::toSymbol)
+                                              .toList();
+        warm(found);
+
+        return found.stream().filter(symbol -> symbol.symbolId() == symbolId).findFirst();
+    }
+
+    /**
+     * Indexes symbols obtained elsewhere, e.g. from a search result. This does not tell which prefixes are complete,
+     * so searches still call the API once per new prefix.
+     */
+    public synchronized void warm(Collection<QuestadeSymbol> symbols) {
+        symbols.forEach(this::put);
+    }
+
+    public synchronized int size() {
+        return byTicker.size();
+    }
+
+    private static String normalize(String ticker) {
+        return ticker.strip().toUpperCase(Locale.ROOT);
+    }
+
+    private QuestadeSymbol touch(QuestadeSymbol symbol) {
+        byTicker.get(normalize(symbol.theSymbol()));
+        return symbol;
+    }
+
+    private void put(QuestadeSymbol symbol) {
+        String key = normalize(symbol.theSymbol());
+        if (key.isEmpty())
+            return;
+
+        QuestadeSymbol previous = byTicker.put(key, symbol);
+        if (previous != null && previous.symbolId() != symbol.symbolId())
+            byId.remove(previous.symbolId());
+        byId.put(symbol.symbolId(), symbol);
+
+        Node node = root;
+        for (int i = 0; i < key.length(); i++)
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        node.symbol = symbol;
+
+        while (byTicker.size() > maxSymbols)
+            evictLeastRecentlyUsed();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<Map.Entry<String, QuestadeSymbol>> eldest = byTicker.entrySet().iterator();
+        Map.Entry<String, QuestadeSymbol> entry = eldest.next();
+        eldest.remove();
+        byId.remove(entry.getValue().symbolId(), entry.getValue());
+
+        // the prefixes of the ticker are no longer fully indexed
+        String key = entry.getKey();
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node.complete = false;
+            path.push(node);
+            node = node.children.get(key.charAt(i));
+        }
+        node.complete = false;
+        node.symbol = null;
+
+        for (int i = key.length() - 1; i >= 0 && node.symbol == null && node.children.isEmpty(); i--) {
+            Node parent = path.pop();
+            parent.children.remove(key.charAt(i));
+            node = parent;
+        }
+    }
+
+    private boolean isComplete(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            if (node.complete)
+                return true;
+            node = node.children.get(key.charAt(i));
+            if (node == null)
+                return false;
+        }
+        return node.complete;
+    }
+
+    /*
+     * Prefixes without any symbol have no node, so they are never marked and are searched again: the trie only
+     * grows with the symbols it holds.
+     */
+    private void markComplete(String key) {
+        Node node = find(key);
+        if (node != null)
+            node.complete = true;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++)
+            node = node.children.get(key.charAt(i));
+        return node;
+    }
+
+    private List<QuestadeSymbol> collect(String key, int limit) {
+        Node start = find(key);
+        if (start == null || limit <= 0)
+            return List.of();
+
+        List<QuestadeSymbol> symbols = new ArrayList<>();
+        Deque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(start);
+        while (!toVisit.isEmpty() && symbols.size() < limit) {
+            Node node = toVisit.pop();
+            if (node.symbol != null)
+                symbols.add(touch(node.symbol));
+            node.children.descendingMap().values().forEach(toVisit::push);
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,9 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.QuestradeSymbolInfo;
+
+import java.util.List;
+
+record SymbolInfoResponse(
+        List<QuestradeSymbolInfo> symbols) {
+}
@@ -0,0 +1,9 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.QuestadeSymbol;
+
+import java.util.List;
+
+record SymbolsResponse(
+        List<QuestadeSymbol> symbols) {
+}
@@ -0,0 +1,38 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+
+import java.util.Optional;
+
+/**
+ * Keeps the latest {@link AuthenticationToken} across restarts, so a new process can reuse it instead of
+ * authenticating again.
+ *
+ * @see AuthenticationTokenManager#authenticate(QuestradeWebClient, String, TokenStore)
+ */
+public interface TokenStore {
+    /**
+     * A store keeping nothing.
+     */
+    TokenStore NONE = new TokenStore() {
+        @Override
+        public Optional<AuthenticationToken> load() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void save(AuthenticationToken token) {
+        }
+    };
+
+    /**
+     * Returns the token last saved, if any.
+     */
+    Optional<AuthenticationToken> load();
+
+    /**
+     * Replaces the token saved, once the server handed out a new one: the refresh token of the previous one can no
+     * longer be used.
+     */
+    void save(AuthenticationToken token);
+}
@@ -4,9 +4,216 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "info.martindupuis.jquestrade")
 public class WebClientProperties {
     private String loginUrl;
+
+    /**
+     * Maximum number of requests kept in flight at the same time by the batch and portfolio clients together, and,
+     * separately, by the web client fetching a long period or many symbols in chunks.
+     */
+    private int maxConcurrentRequests = 8;
+
+    private Transport transport = new Transport();
+
+    private Cache cache = new Cache();
+
+    private Orders orders = new Orders();
+
+    private Quotes quotes = new Quotes();
+
+    private Symbols symbols = new Symbols();
+
+    private QuoteStream quoteStream = new QuoteStream();
+
+    private Resilience resilience = new Resilience();
+
+    /**
+     * HTTP connections to the Questrade servers. Each host gets its own pool, so the login server and every
+     * {@code api_server} are bounded separately.
+     */
+    @Data
+    public static class Transport {
+        /**
+         * Maximum number of connections kept open to one host.
+         */
+        private int maxConnectionsPerHost = 16;
+
+        /**
+         * How long an unused connection stays in the pool before being closed.
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(60);
+
+        /**
+         * Maximum number of requests waiting for a connection when all those to a host are busy. Negative is
+         * unbounded: over HTTP/1.1, every outstanding async call beyond the connections waits there.
+         */
+        private int pendingAcquireMaxCount = -1;
+
+        /**
+         * Maximum time a request waits for a connection when all those to a host are busy.
+         */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(60);
+
+        private Duration connectTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Maximum time to wait for a response once the request is sent.
+         */
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Negotiate HTTP/2 with hosts which support it, falling back to HTTP/1.1 otherwise.
+         */
+        private boolean http2 = true;
+
+        /**
+         * {@code Live} sends requests to Questrade. {@code Record} also writes every exchange to the archive, and
+         * {@code Replay} answers requests from the archive without opening any connection or waiting on rate limits.
+         */
+        private Mode mode = Mode.Live;
+
+        /**
+         * Compressed archive of the exchanges, written in {@code Record} mode and read in {@code Replay} mode.
+         */
+        private Path archive;
+
+        public enum Mode {
+            Live,
+            Record,
+            Replay
+        }
+    }
+
+    /**
+     * Responses cached by {@code CachingQuestradeWebClient}. A time to live of zero disables caching of that endpoint.
+     */
+    @Data
+    public static class Cache {
+        /**
+         * Maximum number of responses kept per endpoint.
+         */
+        private long maximumSize = 10_000;
+
+        private Duration accountsTtl = Duration.ofSeconds(5);
+
+        private Duration positionsTtl = Duration.ofSeconds(5);
+
+        /**
+         * How long activities and candles are kept for periods not over yet. Those of periods over are kept until evicted.
+         */
+        private Duration openPeriodTtl = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Order polling of {@code OrderPoller}.
+     */
+    @Data
+    public static class Orders {
+        /**
+         * How far back the first poll of an account looks.
+         */
+        private Duration initialLookback = Duration.ofDays(1);
+
+        /**
+         * How far before the previous poll each poll starts, so orders updated while the previous poll was answered
+         * are not missed. Orders already emitted are not emitted again.
+         */
+        private Duration overlap = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Quote requests of {@code CoalescingQuoteClient}.
+     */
+    @Data
+    public static class Quotes {
+        /**
+         * How long the symbols asked for are collected before one request is sent for all of them.
+         */
+        private Duration coalescingWindow = Duration.ofMillis(5);
+    }
+
+    /**
+     * Symbols kept in memory by {@code SymbolIndex}.
+     */
+    @Data
+    public static class Symbols {
+        /**
+         * Maximum number of symbols indexed. The least recently used ones are dropped beyond it.
+         */
+        private int maxSymbols = 50_000;
+    }
+
+    /**
+     * Level 1 quote streams of {@code QuoteStreamClient}.
+     */
+    @Data
+    public static class QuoteStream {
+        /**
+         * Symbols per WebSocket connection: more symbols are spread over several connections, keeping the URL
+         * requesting each stream short.
+         */
+        private int maxSymbolsPerConnection = 100;
+
+        /**
+         * Delay before reconnecting a stream closed by the server, and first delay between failed reconnections.
+         */
+        private Duration reconnectDelay = Duration.ofSeconds(1);
+
+        /**
+         * Longest delay between failed reconnections.
+         */
+        private Duration maxReconnectDelay = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Retries, hedging and circuit breaking of the API calls of {@code QuestradeWebClientImpl}.
+     */
+    @Data
+    public static class Resilience {
+        /**
+         * Attempts per call, the first one included. Only {@code 429}, {@code 5xx} and I/O errors are retried.
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * Wait before the first retry, doubled for each next one. Each wait is jittered between half and all of it.
+         */
+        private Duration initialBackoff = Duration.ofMillis(200);
+
+        private Duration maxBackoff = Duration.ofSeconds(5);
+
+        /**
+         * Longest {@code Retry-After} honored: a call asked to wait longer fails right away.
+         */
+        private Duration maxRetryAfter = Duration.ofSeconds(30);
+
+        /**
+         * Send a second request when the first one is slower than {@link #hedgePercentile} of the recent calls to
+         * the same endpoint, and keep whichever answers first. Each hedge spends a request of the rate limit.
+         */
+        private boolean hedging = false;
+
+        private double hedgePercentile = 0.95;
+
+        /**
+         * Shortest wait before hedging, whatever the percentile.
+         */
+        private Duration minHedgeDelay = Duration.ofMillis(50);
+
+        /**
+         * Consecutive failures of an {@code api_server} opening its circuit. Zero never opens it.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * How long an open circuit fails calls right away, before letting one through to probe the server.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
 }
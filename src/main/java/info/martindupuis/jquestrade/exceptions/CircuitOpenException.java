@@ -0,0 +1,10 @@
+package info.martindupuis.jquestrade.exceptions;
+
+/**
+ * Thrown instead of calling an API server which failed too many times in a row, until it is probed again.
+ */
+public class CircuitOpenException extends RuntimeException {
+    public CircuitOpenException(String reason) {
+        super(reason);
+    }
+}
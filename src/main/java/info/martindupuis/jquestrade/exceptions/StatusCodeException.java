@@ -12,6 +12,11 @@ public class StatusCodeException extends RuntimeException {
         this.statusCode = statusCode;
     }
 
+    public StatusCodeException(String reason, int statusCode, Throwable cause) {
+        super(reason, cause);
+        this.statusCode = statusCode;
+    }
+
     /**
      * Returns the status code that caused this exception.
      *
@@ -0,0 +1,208 @@
+package info.martindupuis.jquestrade.store;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import info.martindupuis.jquestrade.QuestradeActivity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Local on-disk store of account activities, with a checkpoint per account telling up to which settlement date
+ * they were all stored.
+ * <p>
+ * Each account has an append-only log of activities, one JSON document per line, and a checkpoint file replaced
+ * atomically after each append. The checkpoint records the length of the log it covers: anything written past it
+ * by an append which did not complete is ignored, then overwritten by the next append. The checkpoint also keeps the
+ * latest activities, so activities fetched again by an overlapping sync are only stored once.
+ */
+@Slf4j
+public class ActivityStore {
+    private final Path directory;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectWriter lineWriter = objectMapper.writerFor(QuestradeActivity.class);
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @param settledThrough The last settlement date whose activities are all stored.
+     * @param logLength      The number of bytes of the log holding committed activities.
+     * @param dedupeFrom     The day from which stored activities are kept in {@code recent}.
+     * @param recent         The stored activities dated from {@code dedupeFrom}, checked before appending.
+     */
+    record Checkpoint(LocalDate settledThrough, long logLength, LocalDate dedupeFrom, List<QuestradeActivity> recent) {
+    }
+
+    public ActivityStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create activity store directory %s".formatted(directory), e);
+        }
+    }
+
+    /**
+     * Returns the last settlement date whose activities were all stored for the account, if it was ever synced.
+     */
+    public Optional<LocalDate> getSettledThrough(String accountNumber) {
+        return readCheckpoint(accountNumber).map(Checkpoint::settledThrough);
+    }
+
+    /**
+     * Returns the stored activities of the account, in the order they were appended.
+     */
+    public List<QuestradeActivity> read(String accountNumber) {
+        synchronized (lockFor(accountNumber)) {
+            Optional<Checkpoint> checkpoint = readCheckpoint(accountNumber);
+            if (checkpoint.isEmpty())
+                return List.of();
+
+            Path logFile = logPath(accountNumber);
+            try {
+                byte[] bytes = Files.readAllBytes(logFile);
+                int length = (int) Math.min(checkpoint.get().logLength(), bytes.length);
+                try (MappingIterator<QuestradeActivity> activities = objectMapper.readerFor(QuestradeActivity.class)
+                                                                                 .readValues(new ByteArrayInputStream(bytes, 0, length))) {
+                    return activities.readAll();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read activity log %s".formatted(logFile), e);
+            }
+        }
+    }
+
+    /**
+     * Appends the activities not stored yet, then advances the checkpoint of the account.
+     * <p>
+     * Activities are compared with those of the previous checkpoint dated from its {@code dedupeFrom}: the fetched
+     * period must not start before it, or activities stored earlier could be stored twice.
+     *
+     * @param activities     The fetched activities, in the order to store them.
+     * @param settledThrough The last settlement date whose activities are all among those fetched or stored.
+     *                       The checkpoint never goes back to an earlier date.
+     * @param dedupeFrom     The start of the next fetch: stored activities dated from this day are kept to be
+     *                       compared with the next fetched ones.
+     * @return The activities appended, the others were already stored.
+     */
+    public List<QuestradeActivity> append(String accountNumber, Collection<QuestradeActivity> activities,
+                                          LocalDate settledThrough, LocalDate dedupeFrom) {
+        synchronized (lockFor(accountNumber)) {
+            Optional<Checkpoint> previous = readCheckpoint(accountNumber);
+            Set<QuestradeActivity> stored = new HashSet<>(previous.map(Checkpoint::recent).orElse(List.of()));
+
+            List<QuestradeActivity> added = activities.stream()
+                                                      .filter(stored::add)
+                                                      .toList();
+
+            long logLength = writeLog(accountNumber, previous.map(Checkpoint::logLength).orElse(0L), added);
+
+            LocalDate newSettledThrough = previous.map(Checkpoint::settledThrough)
+                                                  .filter(date -> date.isAfter(settledThrough))
+                                                  .orElse(settledThrough);
+            List<QuestradeActivity> recent = stored.stream()
+                                                   .filter(activity -> latestDate(activity).filter(date -> !date.isBefore(dedupeFrom)).isPresent())
+                                                   .toList();
+            writeCheckpoint(accountNumber, new Checkpoint(newSettledThrough, logLength, dedupeFrom, recent));
+
+            log.debug("ActivityStore: action=append account=***** nbActivities={} nbAdded={} settledThrough={}",
+                      activities.size(), added.size(), newSettledThrough);
+            return added;
+        }
+    }
+
+    Optional<Checkpoint> readCheckpoint(String accountNumber) {
+        Path checkpoint = checkpointPath(accountNumber);
+        if (Files.notExists(checkpoint))
+            return Optional.empty();
+
+        try {
+            return Optional.of(objectMapper.readValue(checkpoint.toFile(), Checkpoint.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read activity checkpoint %s".formatted(checkpoint), e);
+        }
+    }
+
+    private long writeLog(String accountNumber, long committedLength, List<QuestradeActivity> activities) {
+        Path logFile = logPath(accountNumber);
+        try (FileChannel channel = FileChannel.open(logFile, CREATE, WRITE)) {
+            // drops what an append which did not complete left past the checkpoint
+            channel.truncate(committedLength);
+            if (activities.isEmpty())
+                return committedLength;
+
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (QuestradeActivity activity : activities) {
+                lines.write(lineWriter.writeValueAsBytes(activity));
+                lines.write('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            long position = committedLength;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            channel.force(false);
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write activity log %s".formatted(logFile), e);
+        }
+    }
+
+    private void writeCheckpoint(String accountNumber, Checkpoint checkpoint) {
+        Path target = checkpointPath(accountNumber);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(objectMapper.writeValueAsBytes(checkpoint));
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write activity checkpoint %s".formatted(target), e);
+        }
+    }
+
+    /**
+     * Returns the latest of the dates of the activity: whichever date the API filters activities on, an activity
+     * fetched again by a period starting on some day has this date on that day or after.
+     */
+    private static Optional<LocalDate> latestDate(QuestradeActivity activity) {
+        return Stream.of(activity.tradeDate(), activity.transactionDate(), activity.settlementDate())
+                     .filter(date -> date != null && !date.isBlank())
+                     .map(date -> OffsetDateTime.parse(date).toLocalDate())
+                     .max(Comparator.naturalOrder());
+    }
+
+    private Object lockFor(String accountNumber) {
+        return locks.computeIfAbsent(accountNumber, key -> new Object());
+    }
+
+    private Path logPath(String accountNumber) {
+        return directory.resolve("%s.activities".formatted(fileName(accountNumber)));
+    }
+
+    private Path checkpointPath(String accountNumber) {
+        return directory.resolve("%s.checkpoint".formatted(fileName(accountNumber)));
+    }
+
+    private static String fileName(String accountNumber) {
+        return accountNumber.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
@@ -0,0 +1,78 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.ExchangeSession;
+import info.martindupuis.jquestrade.QuestradeActivity;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.client.QuestradeBatchClient;
+import info.martindupuis.jquestrade.client.RequestPeriod;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.*;
+import java.util.List;
+
+/**
+ * Syncs the activities of accounts into an {@link ActivityStore}, only fetching what was not synced yet.
+ * <p>
+ * A sync fetches from the checkpoint of the account, minus an overlap catching activities posted late, up to now.
+ * Every day before the current one is then considered settled: the checkpoint moves to the day before the sync.
+ */
+@Slf4j
+public class ActivitySync {
+    public static final Period DEFAULT_OVERLAP = Period.ofDays(7);
+
+    private final QuestradeBatchClient batchClient;
+    private final ActivityStore store;
+    private final LocalDate initialStart;
+    private final Period overlap;
+    private final Clock clock;
+    private final ZoneId zone = ExchangeSession.NORTH_AMERICA.zone();
+
+    /**
+     * @param initialStart The first day fetched for an account never synced, usually the day it was opened.
+     */
+    public ActivitySync(QuestradeBatchClient batchClient, ActivityStore store, LocalDate initialStart) {
+        this(batchClient, store, initialStart, DEFAULT_OVERLAP);
+    }
+
+    /**
+     * @param initialStart The first day fetched for an account never synced, usually the day it was opened.
+     * @param overlap      How far before the checkpoint each sync starts, to catch activities posted late.
+     */
+    public ActivitySync(QuestradeBatchClient batchClient, ActivityStore store, LocalDate initialStart, Period overlap) {
+        this(batchClient, store, initialStart, overlap, Clock.systemDefaultZone());
+    }
+
+    ActivitySync(QuestradeBatchClient batchClient, ActivityStore store, LocalDate initialStart, Period overlap, Clock clock) {
+        this.batchClient = batchClient;
+        this.store = store;
+        this.initialStart = initialStart;
+        this.overlap = overlap;
+        this.clock = clock;
+    }
+
+    /**
+     * Fetches the activities of the account since its checkpoint and stores those not stored yet.
+     *
+     * @return The activities stored by this sync, in chronological order of transaction date.
+     */
+    public List<QuestradeActivity> sync(AuthenticationToken authToken, QuestradeAccount account) {
+        ZonedDateTime now = ZonedDateTime.now(clock).withZoneSameInstant(zone);
+        LocalDate today = now.toLocalDate();
+
+        LocalDate start = store.getSettledThrough(account.number())
+                               .map(settledThrough -> settledThrough.plusDays(1).minus(overlap))
+                               .orElse(initialStart);
+        if (start.isAfter(today))
+            start = today;
+
+        List<QuestradeActivity> fetched = batchClient.getAccountActivities(authToken, account, new RequestPeriod(start.atStartOfDay(zone), now));
+
+        LocalDate settledThrough = today.minusDays(1);
+        List<QuestradeActivity> added = store.append(account.number(), fetched, settledThrough, settledThrough.plusDays(1).minus(overlap));
+
+        log.info("ActivitySync: action=sync account=***** since={} nbFetched={} nbAdded={} settledThrough={}",
+                 start, fetched.size(), added.size(), settledThrough);
+        return added;
+    }
+}
@@ -0,0 +1,302 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.CandleSeries;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The candles of one symbol at one interval, stored column by column in a memory-mapped file.
+ * <p>
+ * Layout: a header ({@code magic, version, count, capacity}) followed by one column of {@code capacity} 8-byte
+ * values per field, sorted by candle start. Timestamps are stored as epoch milliseconds.
+ * The periods already fetched from the API are kept next to it, in a small {@code .ranges} file.
+ */
+class CandleFile implements AutoCloseable {
+    private static final int MAGIC = 0x51434E44; // "QCND"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int START = 0;
+    private static final int END = 1;
+    private static final int LOW = 2;
+    private static final int HIGH = 3;
+    private static final int OPEN = 4;
+    private static final int CLOSE = 5;
+    private static final int VOLUME = 6;
+    private static final int VWAP = 7;
+    private static final int NB_COLUMNS = 8;
+
+    private final Path dataPath;
+    private final Path rangesPath;
+    private final List<long[]> coveredRanges;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int count;
+    private int capacity;
+
+    CandleFile(Path dataPath) {
+        this.dataPath = dataPath;
+        this.rangesPath = dataPath.resolveSibling(dataPath.getFileName() + ".ranges");
+
+        try {
+            boolean isNew = Files.notExists(dataPath) || Files.size(dataPath) == 0;
+            channel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            if (isNew) {
+                map(INITIAL_CAPACITY);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                setCount(0);
+                buffer.putInt(CAPACITY_OFFSET, INITIAL_CAPACITY);
+            } else {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                    throw new IllegalStateException("%s is not a candle file".formatted(dataPath));
+                map(header.getInt(CAPACITY_OFFSET));
+                count = buffer.getInt(COUNT_OFFSET);
+            }
+
+            coveredRanges = readRanges();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open candle file %s".formatted(dataPath), e);
+        }
+    }
+
+    /**
+     * Returns the candles starting within [{@code from}, {@code to}].
+     */
+    synchronized CandleSeries read(Instant from, Instant to) {
+        int first = firstIndexAtOrAfter(from.toEpochMilli());
+        CandleSeries.Builder builder = CandleSeries.builder(0);
+
+        for (int i = first; i < count && getLong(START, i) <= to.toEpochMilli(); i++)
+            builder.add(getLong(START, i), getLong(END, i), getDouble(LOW, i), getDouble(HIGH, i),
+                        getDouble(OPEN, i), getDouble(CLOSE, i), getLong(VOLUME, i), getDouble(VWAP, i));
+
+        return builder.build();
+    }
+
+    /**
+     * Returns the sub-ranges of [{@code from}, {@code to}] which were never fetched.
+     */
+    synchronized List<Instant[]> findMissingRanges(Instant from, Instant to) {
+        List<Instant[]> missing = new ArrayList<>();
+        long cursor = from.toEpochMilli();
+        long end = to.toEpochMilli();
+
+        for (long[] range : coveredRanges) {
+            if (range[1] < cursor)
+                continue;
+            if (range[0] > end)
+                break;
+            if (range[0] > cursor)
+                missing.add(new Instant[]{Instant.ofEpochMilli(cursor), Instant.ofEpochMilli(range[0])});
+            cursor = Math.max(cursor, range[1]);
+        }
+
+        if (cursor < end)
+            missing.add(new Instant[]{Instant.ofEpochMilli(cursor), Instant.ofEpochMilli(end)});
+
+        return missing;
+    }
+
+    /**
+     * Stores the candles and records [{@code from}, {@code to}] as fetched.
+     */
+    synchronized void write(CandleSeries candles, Instant from, Instant to) {
+        if (!candles.isEmpty()) {
+            if (count == 0 || candles.getStart(0) > getLong(START, count - 1))
+                append(candles);
+            else
+                merge(candles);
+        }
+
+        if (from.isBefore(to))
+            addCoveredRange(from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    private void append(CandleSeries candles) {
+        ensureCapacity(count + candles.size());
+        for (int i = 0; i < candles.size(); i++)
+            put(count++, candles, i);
+        setCount(count);
+    }
+
+    /*
+     * Candles filling a gap before already stored ones: rewrite the columns in order, the new candles replacing
+     * stored ones with the same start.
+     */
+    private void merge(CandleSeries candles) {
+        CandleSeries stored = read(Instant.ofEpochMilli(Long.MIN_VALUE), Instant.ofEpochMilli(Long.MAX_VALUE));
+        CandleSeries merged = CandleSeries.concat(List.of(stored, candles));
+
+        ensureCapacity(merged.size());
+        for (int i = 0; i < merged.size(); i++)
+            put(i, merged, i);
+        setCount(merged.size());
+    }
+
+    private void put(int index, CandleSeries candles, int candle) {
+        putLong(START, index, candles.getStart(candle));
+        putLong(END, index, candles.getEnd(candle));
+        putDouble(LOW, index, candles.getLow(candle));
+        putDouble(HIGH, index, candles.getHigh(candle));
+        putDouble(OPEN, index, candles.getOpen(candle));
+        putDouble(CLOSE, index, candles.getClose(candle));
+        putLong(VOLUME, index, candles.getVolume(candle));
+        putDouble(VWAP, index, candles.getVWAP(candle));
+    }
+
+    private int firstIndexAtOrAfter(long epochMilli) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getLong(START, middle) < epochMilli)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /*
+     * Growing copies the columns at their new offsets into a temporary file, forced to disk then moved over the
+     * current one: a crash leaves either file whole, never columns half moved under periods recorded as fetched.
+     */
+    private void ensureCapacity(int needed) {
+        if (needed <= capacity)
+            return;
+
+        int newCapacity = Math.max(needed, capacity * 2);
+        Path temp = dataPath.resolveSibling(dataPath.getFileName() + ".tmp");
+        try {
+            try (FileChannel grown = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                      StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer target = grown.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(newCapacity));
+                target.put(0, buffer, 0, HEADER_SIZE);
+                target.putInt(CAPACITY_OFFSET, newCapacity);
+                for (int c = 0; c < NB_COLUMNS; c++)
+                    target.put((int) offset(c, 0, newCapacity), buffer, (int) offset(c, 0, capacity), count * Long.BYTES);
+                target.force();
+            }
+            Files.move(temp, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel.close();
+            channel = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(newCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow candle file %s".formatted(dataPath), e);
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // left over, truncated by the next growth
+            }
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+        this.capacity = capacity;
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) NB_COLUMNS * capacity * Long.BYTES;
+    }
+
+    private void addCoveredRange(long from, long to) {
+        coveredRanges.add(new long[]{from, to});
+        coveredRanges.sort(Comparator.comparingLong(range -> range[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : coveredRanges) {
+            if (!merged.isEmpty() && range[0] <= merged.getLast()[1])
+                merged.getLast()[1] = Math.max(merged.getLast()[1], range[1]);
+            else
+                merged.add(range);
+        }
+        coveredRanges.clear();
+        coveredRanges.addAll(merged);
+
+        writeRanges();
+    }
+
+    private List<long[]> readRanges() throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        if (Files.notExists(rangesPath))
+            return ranges;
+
+        for (String line : Files.readAllLines(rangesPath)) {
+            String[] bounds = line.split(",");
+            if (bounds.length == 2)
+                ranges.add(new long[]{Long.parseLong(bounds[0]), Long.parseLong(bounds[1])});
+        }
+        return ranges;
+    }
+
+    private void writeRanges() {
+        List<String> lines = coveredRanges.stream().map(range -> range[0] + "," + range[1]).toList();
+        try {
+            Path temp = rangesPath.resolveSibling(rangesPath.getFileName() + ".tmp");
+            Files.write(temp, lines);
+            Files.move(temp, rangesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write fetched ranges of %s".formatted(dataPath), e);
+        }
+    }
+
+    private void setCount(int count) {
+        this.count = count;
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    private long offset(int column, int index, int capacity) {
+        return HEADER_SIZE + ((long) column * capacity + index) * Long.BYTES;
+    }
+
+    private long getLong(int column, int index) {
+        return buffer.getLong((int) offset(column, index, capacity));
+    }
+
+    private double getDouble(int column, int index) {
+        return buffer.getDouble((int) offset(column, index, capacity));
+    }
+
+    private void putLong(int column, int index, long value) {
+        buffer.putLong((int) offset(column, index, capacity), value);
+    }
+
+    private void putDouble(int column, int index, double value) {
+        buffer.putDouble((int) offset(column, index, capacity), value);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close candle file %s".formatted(dataPath), e);
+        }
+    }
+}
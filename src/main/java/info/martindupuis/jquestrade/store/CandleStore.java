@@ -0,0 +1,117 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.CandleSeries;
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.client.RequestPeriod;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local on-disk store of candles, one memory-mapped {@link CandleFile} per symbol and interval.
+ * <p>
+ * Only closed candles are stored: candles of closed periods never change, so whatever was fetched once never needs
+ * to be fetched again. Use {@link #findMissingPeriods} to know which parts of a period still have to be fetched.
+ */
+@Slf4j
+public class CandleStore implements AutoCloseable {
+    private final Path directory;
+    private final Map<String, CandleFile> files = new ConcurrentHashMap<>();
+
+    public CandleStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create candle store directory %s".formatted(directory), e);
+        }
+    }
+
+    /**
+     * Returns the stored candles starting within the period, in chronological order.
+     */
+    public Set<QuestradeCandle> read(int symbolId, QuestradeCandle.Interval interval, RequestPeriod period) {
+        return new LinkedHashSet<>(readSeries(symbolId, interval, period).toCandles(period.periodStart().getZone()));
+    }
+
+    /**
+     * Returns the stored candles starting within the period.
+     */
+    public CandleSeries readSeries(int symbolId, QuestradeCandle.Interval interval, RequestPeriod period) {
+        return fileFor(symbolId, interval).read(period.periodStart().toInstant(), period.periodEnd().toInstant());
+    }
+
+    /**
+     * Returns the parts of the period for which candles were never stored.
+     */
+    public List<RequestPeriod> findMissingPeriods(int symbolId, QuestradeCandle.Interval interval, RequestPeriod period) {
+        return fileFor(symbolId, interval).findMissingRanges(period.periodStart().toInstant(), period.periodEnd().toInstant())
+                                          .stream()
+                                          .map(range -> new RequestPeriod(range[0].atZone(period.periodStart().getZone()),
+                                                                          range[1].atZone(period.periodStart().getZone())))
+                                          .toList();
+    }
+
+    /**
+     * Tells if candles were stored for the whole period, without creating a file for the symbol and interval.
+     */
+    public boolean covers(int symbolId, QuestradeCandle.Interval interval, RequestPeriod period) {
+        String name = fileName(symbolId, interval);
+        if (!files.containsKey(name) && Files.notExists(directory.resolve(name)))
+            return false;
+
+        return findMissingPeriods(symbolId, interval, period).isEmpty();
+    }
+
+    /**
+     * Stores the candles fetched for a period.
+     *
+     * @see #write(int, QuestradeCandle.Interval, RequestPeriod, CandleSeries)
+     */
+    public void write(int symbolId, QuestradeCandle.Interval interval, RequestPeriod fetchedPeriod, Collection<QuestradeCandle> candles) {
+        write(symbolId, interval, fetchedPeriod, CandleSeries.of(candles));
+    }
+
+    /**
+     * Stores the candles fetched for a period. Candles which are not closed yet are left out, and the period is
+     * only recorded as fetched up to the start of the first of them.
+     */
+    public void write(int symbolId, QuestradeCandle.Interval interval, RequestPeriod fetchedPeriod, CandleSeries candles) {
+        long now = Instant.now().toEpochMilli();
+        long fetchedUntil = Math.min(now, fetchedPeriod.periodEnd().toInstant().toEpochMilli());
+
+        int nbClosedCandles = 0;
+        while (nbClosedCandles < candles.size() && candles.getEnd(nbClosedCandles) <= now)
+            nbClosedCandles++;
+        if (nbClosedCandles < candles.size())
+            fetchedUntil = Math.min(fetchedUntil, candles.getStart(nbClosedCandles));
+
+        CandleSeries closedCandles = nbClosedCandles == candles.size()
+                                     ? candles
+                                     : candles.range(Instant.ofEpochMilli(Long.MIN_VALUE), Instant.ofEpochMilli(candles.getStart(nbClosedCandles) - 1));
+
+        log.debug("CandleStore: action=write symbolId={} interval={} nbCandles={} fetchedUntil={}",
+                  symbolId, interval, closedCandles.size(), Instant.ofEpochMilli(fetchedUntil));
+        fileFor(symbolId, interval).write(closedCandles, fetchedPeriod.periodStart().toInstant(), Instant.ofEpochMilli(fetchedUntil));
+    }
+
+    private CandleFile fileFor(int symbolId, QuestradeCandle.Interval interval) {
+        return files.computeIfAbsent(fileName(symbolId, interval), key -> new CandleFile(directory.resolve(key)));
+    }
+
+    private static String fileName(int symbolId, QuestradeCandle.Interval interval) {
+        return "%d-%s.candles".formatted(symbolId, interval);
+    }
+
+    @Override
+    public void close() {
+        files.values().forEach(CandleFile::close);
+        files.clear();
+    }
+}
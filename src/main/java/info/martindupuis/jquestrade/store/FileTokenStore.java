@@ -0,0 +1,238 @@
+package info.martindupuis.jquestrade.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.client.TokenStore;
+import info.martindupuis.jquestrade.exceptions.ArgumentException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Keeps the latest {@link AuthenticationToken} in a local file.
+ * <p>
+ * The token is written to a temporary file, forced to disk, then moved over the previous one atomically: a crash
+ * leaves either the previous token or the new one, never a mix of both. On POSIX file systems the file is only
+ * readable by its owner.
+ * <p>
+ * Given a key, the token is encrypted with AES-GCM, a new IV for each save, and a file stored in clear is rejected:
+ * whoever can write the file could otherwise swap in a token, and its {@code api_server}. A file which cannot be
+ * read, decrypted or parsed is logged and ignored, the caller then authenticates as if nothing was stored.
+ */
+@Slf4j
+public class FileTokenStore implements TokenStore {
+    private static final byte[] MAGIC = "JQTK".getBytes(StandardCharsets.US_ASCII);
+    private static final byte VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final Path file;
+    private final SecretKey key;
+    private final boolean migrateClearText;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * The fields of {@link AuthenticationToken}, without what its helper methods would add.
+     */
+    record StoredToken(String access_token, String api_server, ZonedDateTime expires_at, String refresh_token,
+                       String token_type) {
+    }
+
+    /**
+     * Stores the token in clear.
+     */
+    public FileTokenStore(Path file) {
+        this(file, null);
+    }
+
+    /**
+     * @param key The AES key to encrypt the token with, see {@link #aesKey(String)}. {@code null} stores it in clear.
+     */
+    public FileTokenStore(Path file, SecretKey key) {
+        this(file, key, false);
+    }
+
+    /**
+     * @param migrateClearText Whether to still load a token stored in clear, left by a store without key, until it
+     *                         is saved again encrypted. Only meant for the first start after a key is given.
+     */
+    public FileTokenStore(Path file, SecretKey key, boolean migrateClearText) {
+        this.file = file;
+        this.key = key;
+        this.migrateClearText = migrateClearText;
+        try {
+            if (file.getParent() != null)
+                Files.createDirectories(file.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create token store directory %s".formatted(file.getParent()), e);
+        }
+    }
+
+    /**
+     * Decodes a base64 AES key of 128, 192 or 256 bits, e.g. generated with {@code openssl rand -base64 32}.
+     *
+     * @throws ArgumentException if it is not one.
+     */
+    public static SecretKey aesKey(String base64) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(base64.trim());
+        } catch (IllegalArgumentException e) {
+            throw new ArgumentException("Token store key is not valid base64");
+        }
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32)
+            throw new ArgumentException("Token store key must be 128, 192 or 256 bits, got %d".formatted(bytes.length * 8));
+
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    @Override
+    public synchronized Optional<AuthenticationToken> load() {
+        if (Files.notExists(file))
+            return Optional.empty();
+
+        try {
+            StoredToken token = objectMapper.readValue(decode(Files.readAllBytes(file)), StoredToken.class);
+            if (token.expires_at() == null || token.refresh_token() == null) {
+                log.warn("FileTokenStore: action=load file={} incomplete token ignored", file);
+                return Optional.empty();
+            }
+
+            // isExpired() compares local date-times
+            return Optional.of(new AuthenticationToken(token.access_token(),
+                                                       token.api_server(),
+                                                       token.expires_at().withZoneSameInstant(ZoneId.systemDefault()),
+                                                       token.refresh_token(),
+                                                       token.token_type()));
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("FileTokenStore: action=load file={} unreadable token ignored: {}", file, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public synchronized void save(AuthenticationToken token) {
+        Path temporary = null;
+        try {
+            byte[] bytes = encode(objectMapper.writeValueAsBytes(new StoredToken(token.access_token(),
+                                                                                  token.api_server(),
+                                                                                  token.expires_at(),
+                                                                                  token.refresh_token(),
+                                                                                  token.token_type())));
+
+            temporary = Files.createTempFile(directory(), file.getFileName().toString(), ".tmp", ownerOnly());
+            try (FileChannel channel = FileChannel.open(temporary, WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write token store %s".formatted(file), e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot encrypt token store %s".formatted(file), e);
+        } finally {
+            deleteQuietly(temporary);
+        }
+
+        log.debug("FileTokenStore: action=save file={} expiresAt={}", file, token.expires_at());
+    }
+
+    /*
+     * Encrypted: MAGIC, VERSION, IV, then the ciphertext and its tag. MAGIC and VERSION are authenticated too.
+     */
+    private byte[] encode(byte[] json) throws GeneralSecurityException {
+        if (key == null)
+            return json;
+
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(header());
+        byte[] ciphertext = cipher.doFinal(json);
+
+        return ByteBuffer.allocate(MAGIC.length + 1 + IV_LENGTH + ciphertext.length)
+                         .put(header())
+                         .put(iv)
+                         .put(ciphertext)
+                         .array();
+    }
+
+    private byte[] decode(byte[] bytes) throws IOException, GeneralSecurityException {
+        boolean encrypted = bytes.length > MAGIC.length && Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+        if (!encrypted) {
+            if (key == null)
+                return bytes;
+            if (!migrateClearText)
+                throw new IOException("Token is stored in clear while a key was given");
+
+            log.info("FileTokenStore: action=load file={} token stored in clear, it will be encrypted when next saved", file);
+            return bytes;
+        }
+
+        if (key == null)
+            throw new IOException("Token is encrypted and no key was given");
+        if (bytes.length < MAGIC.length + 1 + IV_LENGTH || bytes[MAGIC.length] != VERSION)
+            throw new IOException("Unsupported token store version");
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, MAGIC.length + 1, IV_LENGTH));
+        cipher.updateAAD(header());
+        int offset = MAGIC.length + 1 + IV_LENGTH;
+        return cipher.doFinal(bytes, offset, bytes.length - offset);
+    }
+
+    private static byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + 1);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    private Path directory() {
+        Path parent = file.toAbsolutePath().getParent();
+        return parent == null ? Path.of("") : parent;
+    }
+
+    private FileAttribute<?>[] ownerOnly() {
+        if (!file.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            return new FileAttribute<?>[0];
+        return new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))};
+    }
+
+    private static void deleteQuietly(Path temporary) {
+        if (temporary == null)
+            return;
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            log.warn("FileTokenStore: action=save cannot delete {}", temporary, e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.CandleResampler;
+import info.martindupuis.jquestrade.CandleSeries;
+import info.martindupuis.jquestrade.ExchangeSession;
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.QuestradePosition;
+import info.martindupuis.jquestrade.client.QuestradeWebClient;
+import info.martindupuis.jquestrade.client.RequestPeriod;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gets candles from a {@link CandleStore}, only calling the API for the parts of the period not stored yet.
+ */
+@Slf4j
+public class IncrementalCandleFetcher {
+
+    private final QuestradeWebClient webClient;
+    private final CandleStore store;
+
+    public IncrementalCandleFetcher(QuestradeWebClient webClient, CandleStore store) {
+        this.webClient = webClient;
+        this.store = store;
+    }
+
+    public Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period) {
+        return getPositionCandles(authToken, position, period, QuestradeCandle.Interval.OneDay);
+    }
+
+    public Set<QuestradeCandle> getPositionCandles(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        fetchMissingPeriods(authToken, position, period, interval);
+
+        return store.read(position.symbolId(), interval, period);
+    }
+
+    public CandleSeries getPositionCandleSeries(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        fetchMissingPeriods(authToken, position, period, interval);
+
+        return store.readSeries(position.symbolId(), interval, period);
+    }
+
+    /**
+     * Returns candles of the interval, derived from finer candles already stored for the whole period when there
+     * are some, and fetched otherwise. Candles at both ends of the period hold only what the period covers.
+     *
+     * @see CandleResampler
+     */
+    public CandleSeries getResampledCandleSeries(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period,
+                                                 QuestradeCandle.Interval interval, ExchangeSession session) {
+        QuestradeCandle.Interval[] intervals = QuestradeCandle.Interval.values();
+        // intervals go from the finest to the coarsest: the coarsest stored one is the cheapest to aggregate
+        for (int i = interval.ordinal() - 1; i >= 0; i--) {
+            QuestradeCandle.Interval finer = intervals[i];
+            if (CandleResampler.canResample(finer, interval) && store.covers(position.symbolId(), finer, period)) {
+                log.info("IncrementalCandleFetcher: entryPoint=getResampledCandleSeries position={}, requestPeriod={}, interval={}, from={}",
+                         position.symbol(), period, interval, finer);
+                return CandleResampler.resample(store.readSeries(position.symbolId(), finer, period), finer, interval, session);
+            }
+        }
+
+        return getPositionCandleSeries(authToken, position, period, interval);
+    }
+
+    private void fetchMissingPeriods(AuthenticationToken authToken, QuestradePosition position, RequestPeriod period, QuestradeCandle.Interval interval) {
+        List<RequestPeriod> missingPeriods = store.findMissingPeriods(position.symbolId(), interval, period);
+        log.info("IncrementalCandleFetcher: entryPoint=getPositionCandles position={}, requestPeriod={}, interval={}, nbMissingPeriods={}",
+                 position.symbol(), period, interval, missingPeriods.size());
+
+        for (RequestPeriod missingPeriod : missingPeriods) {
+            CandleSeries candles = webClient.getPositionCandleSeries(authToken, position, missingPeriod, interval);
+            store.write(position.symbolId(), interval, missingPeriod, candles);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package info.martindupuis.UtilsForTests.CustomGenerators;
 
 import info.martindupuis.jquestrade.client.RequestPeriod;
-import org.instancio.Instancio;
 import org.instancio.Random;
 import org.instancio.generator.Generator;
 
@@ -14,7 +13,9 @@ public class RequestPeriodGenerator implements Generator<RequestPeriod> {
     public RequestPeriod generate(Random random) {
         int nbDaysInFuture = random.intRange(1, MAX_DAYS_IN_PERIOD);
 
-        ZonedDateTime start = Instancio.create(ZonedDateTime.class);
+        // in the past, there is nothing to fetch after now
+        ZonedDateTime start = ZonedDateTime.now().minusDays(MAX_DAYS_IN_PERIOD + random.intRange(0, 3650))
+                                           .minusMinutes(random.intRange(0, 24 * 60));
         ZonedDateTime end = start.plusDays(nbDaysInFuture);
 
         return new RequestPeriod(start, end);
@@ -0,0 +1,101 @@
+package info.martindupuis.jquestrade;
+
+import info.martindupuis.jquestrade.exceptions.ArgumentException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CandleResamplerTest {
+    private static final ExchangeSession SESSION = ExchangeSession.NORTH_AMERICA;
+    // a Wednesday
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 3);
+
+    private static long at(LocalDate date, LocalTime time) {
+        return date.atTime(time).atZone(SESSION.zone()).toInstant().toEpochMilli();
+    }
+
+    private static void addCandle(CandleSeries.Builder builder, ZonedDateTime start, Duration duration, double open, double close, long volume) {
+        builder.add(start.toInstant().toEpochMilli(), start.plus(duration).toInstant().toEpochMilli(),
+                    Math.min(open, close) - 1, Math.max(open, close) + 1, open, close, volume, (open + close) / 2);
+    }
+
+    @Test
+    void givenMinuteCandles_resampleToOneHour_alignsBucketsOnTheSessionOpen() {
+        CandleSeries.Builder builder = CandleSeries.builder(0);
+        ZonedDateTime open = DAY.atTime(SESSION.open()).atZone(SESSION.zone());
+        for (int minute = 0; minute < 90; minute++)
+            addCandle(builder, open.plusMinutes(minute), Duration.ofMinutes(1), minute, minute + 1, 10);
+
+        CandleSeries result = CandleResampler.resample(builder.build(), QuestradeCandle.Interval.OneMinute, QuestradeCandle.Interval.OneHour, SESSION);
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.getStart(0)).isEqualTo(at(DAY, LocalTime.of(9, 30)));
+        assertThat(result.getEnd(0)).isEqualTo(at(DAY, LocalTime.of(10, 30)));
+        assertThat(result.getOpen(0)).isEqualTo(0);
+        assertThat(result.getClose(0)).isEqualTo(60);
+        assertThat(result.getLow(0)).isEqualTo(-1);
+        assertThat(result.getHigh(0)).isEqualTo(61);
+        assertThat(result.getVolume(0)).isEqualTo(600);
+        assertThat(result.getStart(1)).isEqualTo(at(DAY, LocalTime.of(10, 30)));
+        assertThat(result.getVolume(1)).isEqualTo(300);
+    }
+
+    @Test
+    void givenTheLastHourOfTheSession_resampleToTwoHours_endsTheBucketAtTheClose() {
+        CandleSeries.Builder builder = CandleSeries.builder(0);
+        addCandle(builder, DAY.atTime(15, 30).atZone(SESSION.zone()), Duration.ofMinutes(30), 1, 2, 10);
+        addCandle(builder, DAY.atTime(16, 0).atZone(SESSION.zone()), Duration.ofMinutes(30), 2, 3, 10);
+
+        CandleSeries result = CandleResampler.resample(builder.build(), QuestradeCandle.Interval.HalfHour, QuestradeCandle.Interval.TwoHours, SESSION);
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.getStart(0)).isEqualTo(at(DAY, LocalTime.of(15, 30)));
+        assertThat(result.getEnd(0)).isEqualTo(at(DAY, LocalTime.of(16, 0)));
+        assertThat(result.getStart(1)).isEqualTo(at(DAY, LocalTime.of(16, 0)));
+    }
+
+    @Test
+    void givenDailyCandles_resampleToOneWeek_startsWeeksOnMonday() {
+        CandleSeries.Builder builder = CandleSeries.builder(0);
+        for (int day = 0; day < 7; day++)
+            addCandle(builder, DAY.plusDays(day).atStartOfDay(SESSION.zone()), Duration.ofDays(1), day, day + 1, 100);
+
+        CandleSeries result = CandleResampler.resample(builder.build(), QuestradeCandle.Interval.OneDay, QuestradeCandle.Interval.OneWeek, SESSION);
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.getStart(0)).isEqualTo(at(LocalDate.of(2024, 1, 1), LocalTime.MIDNIGHT));
+        assertThat(result.getEnd(0)).isEqualTo(at(LocalDate.of(2024, 1, 8), LocalTime.MIDNIGHT));
+        assertThat(result.getVolume(0)).isEqualTo(500);
+        assertThat(result.getOpen(1)).isEqualTo(5);
+        assertThat(result.getClose(1)).isEqualTo(7);
+    }
+
+    @Test
+    void resample_weightsTheVwapByVolume() {
+        ZonedDateTime start = DAY.atStartOfDay(SESSION.zone());
+        CandleSeries candles = CandleSeries.builder(2)
+                                           .add(start.toInstant().toEpochMilli(), start.plusDays(1).toInstant().toEpochMilli(), 9, 11, 10, 10, 300, 10)
+                                           .add(start.plusDays(1).toInstant().toEpochMilli(), start.plusDays(2).toInstant().toEpochMilli(), 19, 21, 20, 20, 100, 20)
+                                           .build();
+
+        CandleSeries result = CandleResampler.resample(candles, QuestradeCandle.Interval.OneDay, QuestradeCandle.Interval.OneMonth, SESSION);
+
+        assertThat(result.getVWAP(0)).isEqualTo(12.5);
+    }
+
+    @Test
+    void givenIntervalsWhichDoNotNest_resample_throwsArgumentException() {
+        assertThat(CandleResampler.canResample(QuestradeCandle.Interval.TwentyMinutes, QuestradeCandle.Interval.HalfHour)).isFalse();
+        assertThat(CandleResampler.canResample(QuestradeCandle.Interval.OneWeek, QuestradeCandle.Interval.OneMonth)).isFalse();
+        assertThat(CandleResampler.canResample(QuestradeCandle.Interval.OneMonth, QuestradeCandle.Interval.OneYear)).isTrue();
+
+        assertThatThrownBy(() -> CandleResampler.resample(CandleSeries.EMPTY, QuestradeCandle.Interval.OneDay, QuestradeCandle.Interval.OneHour, SESSION))
+                .isInstanceOf(ArgumentException.class);
+    }
+}
@@ -0,0 +1,77 @@
+package info.martindupuis.jquestrade;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CandleSeriesTest {
+    private static final ZoneId ZONE = ZoneId.of("America/Toronto");
+    private static final ZonedDateTime START = ZonedDateTime.of(2024, 1, 2, 0, 0, 0, 0, ZONE);
+
+    private static QuestradeCandle candleOnDay(int day, double close) {
+        return new QuestradeCandle(START.plusDays(day).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                   START.plusDays(day + 1).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                   close - 1, close + 1, close, close, 100, close);
+    }
+
+    private static Instant day(int day) {
+        return START.plusDays(day).toInstant();
+    }
+
+    @Test
+    void givenUnsortedCandles_of_returnsThemSortedByStart() {
+        CandleSeries result = CandleSeries.of(List.of(candleOnDay(2, 3), candleOnDay(0, 1), candleOnDay(1, 2)));
+
+        assertThat(result.size()).isEqualTo(3);
+        assertThat(result.getClose(0)).isEqualTo(1);
+        assertThat(result.getClose(1)).isEqualTo(2);
+        assertThat(result.getClose(2)).isEqualTo(3);
+        assertThat(result.getStart(0)).isEqualTo(day(0).toEpochMilli());
+    }
+
+    @Test
+    void givenACandle_toCandles_returnsItUnchanged() {
+        QuestradeCandle candle = candleOnDay(0, 10);
+
+        assertThat(CandleSeries.of(List.of(candle)).toCandles(ZONE)).containsExactly(candle);
+    }
+
+    @Test
+    void indexOf_returnsTheFirstCandleStartingAtOrAfterTheTime() {
+        CandleSeries series = CandleSeries.of(List.of(candleOnDay(0, 1), candleOnDay(2, 3), candleOnDay(4, 5)));
+
+        assertThat(series.indexOf(day(2))).isEqualTo(1);
+        assertThat(series.indexOf(day(3))).isEqualTo(2);
+        assertThat(series.indexOf(day(5))).isEqualTo(3);
+    }
+
+    @Test
+    void range_returnsAViewOfTheCandlesWithinThePeriod() {
+        CandleSeries series = CandleSeries.of(List.of(candleOnDay(0, 1), candleOnDay(1, 2), candleOnDay(2, 3), candleOnDay(3, 4)));
+
+        CandleSeries result = series.range(day(1), day(2));
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.getClose(0)).isEqualTo(2);
+        assertThat(result.getClose(1)).isEqualTo(3);
+        assertThat(result.indexOf(day(2))).isEqualTo(1);
+    }
+
+    @Test
+    void givenOverlappingSeries_concat_keepsTheCandlesOfTheLastOne() {
+        CandleSeries first = CandleSeries.of(List.of(candleOnDay(0, 1), candleOnDay(1, 2)));
+        CandleSeries second = CandleSeries.of(List.of(candleOnDay(1, 20), candleOnDay(2, 30)));
+
+        CandleSeries result = CandleSeries.concat(List.of(first, second));
+
+        assertThat(result.size()).isEqualTo(3);
+        assertThat(result.getClose(1)).isEqualTo(20);
+        assertThat(result).isEqualTo(CandleSeries.of(List.of(candleOnDay(0, 1), candleOnDay(1, 20), candleOnDay(2, 30))));
+    }
+}
@@ -0,0 +1,176 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.exceptions.AuthenticationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthenticationTokenManagerTest {
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    @Mock
+    TokenStore tokenStore;
+
+    private static AuthenticationToken tokenExpiringAt(ZonedDateTime expiresAt, String refreshToken) {
+        return new AuthenticationToken("access-" + refreshToken, "http://localhost/", expiresAt, refreshToken, "Bearer");
+    }
+
+    @Test
+    void givenAValidToken_getToken_returnsItWithoutRefreshing() {
+        AuthenticationToken token = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-1");
+
+        try (AuthenticationTokenManager sut = new AuthenticationTokenManager(webClient, token)) {
+            assertThat(sut.getToken()).isSameAs(token);
+        }
+
+        verifyNoInteractions(webClient);
+    }
+
+    @Test
+    void givenAnExpiredToken_manyThreadsCallingGetToken_refreshesOnlyOnce() throws Exception {
+        AuthenticationToken expired = tokenExpiringAt(ZonedDateTime.now().minusSeconds(1), "refresh-1");
+        AuthenticationToken fresh = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-2");
+        when(webClient.authenticate("refresh-1")).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return fresh;
+        });
+
+        try (AuthenticationTokenManager sut = new AuthenticationTokenManager(webClient, expired);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<AuthenticationToken>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                results.add(executor.submit(sut::getToken));
+
+            for (Future<AuthenticationToken> result : results)
+                assertThat(result.get()).isEqualTo(fresh);
+        }
+
+        verify(webClient, times(1)).authenticate(anyString());
+    }
+
+    @Test
+    void givenATokenAboutToExpire_refreshHappensInTheBackground() {
+        AuthenticationToken aboutToExpire = tokenExpiringAt(ZonedDateTime.now().plusSeconds(1), "refresh-1");
+        AuthenticationToken fresh = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-2");
+        when(webClient.authenticate("refresh-1")).thenReturn(fresh);
+
+        try (AuthenticationTokenManager ignored = new AuthenticationTokenManager(webClient, aboutToExpire, Duration.ofMinutes(1))) {
+            verify(webClient, timeout(2000)).authenticate("refresh-1");
+        }
+    }
+
+    @Test
+    void givenAForcedRefresh_theRefreshScheduledBeforeIt_doesNotRefreshTheNewToken() throws Exception {
+        AuthenticationToken aboutToExpire = tokenExpiringAt(ZonedDateTime.now().plusSeconds(1), "refresh-1");
+        AuthenticationToken fresh = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-2");
+        when(webClient.authenticate("refresh-1")).thenReturn(fresh);
+
+        try (AuthenticationTokenManager sut = new AuthenticationTokenManager(webClient, aboutToExpire, Duration.ZERO)) {
+            assertThat(sut.refresh().get()).isSameAs(fresh);
+            Thread.sleep(1500);
+        }
+
+        verify(webClient, times(1)).authenticate(anyString());
+    }
+
+    @Test
+    void givenAClosedManager_getTokenOnAnExpiredToken_failsInsteadOfWaitingForever() {
+        // the refresh started by the constructor, if it runs before close(), gets no token from the mock and fails
+        AuthenticationToken expired = tokenExpiringAt(ZonedDateTime.now().minusSeconds(1), "refresh-1");
+        AuthenticationTokenManager sut = new AuthenticationTokenManager(webClient, expired, Duration.ofMinutes(1));
+        sut.close();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThatExceptionOfType(IllegalStateException.class).isThrownBy(sut::getToken)
+                                                                  .withMessageContaining("closed");
+            assertThat(sut.refresh()).isCompletedExceptionally();
+        });
+    }
+
+    @Test
+    void givenAnExpiredToken_getToken_countsTheRefresh() {
+        AuthenticationToken expired = tokenExpiringAt(ZonedDateTime.now().minusSeconds(1), "refresh-1");
+        AuthenticationToken fresh = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-2");
+        when(webClient.authenticate("refresh-1")).thenReturn(fresh);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (AuthenticationTokenManager sut = new AuthenticationTokenManager(webClient, expired, Duration.ofMinutes(1), registry)) {
+            sut.getToken();
+        }
+
+        assertThat(registry.get(QuestradeMetrics.TOKEN_REFRESHES).tag("outcome", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenAValidStoredToken_authenticate_reusesItWithoutCallingTheServer() {
+        AuthenticationToken stored = tokenExpiringAt(ZonedDateTime.now().plusMinutes(20), "refresh-2");
+        when(tokenStore.load()).thenReturn(Optional.of(stored));
+
+        try (AuthenticationTokenManager sut = AuthenticationTokenManager.authenticate(webClient, "refresh-1", tokenStore)) {
+            assertThat(sut.getToken()).isSameAs(stored);
+        }
+
+        verifyNoInteractions(webClient);
+    }
+
+    @Test
+    void givenAnExpiredStoredToken_authenticate_usesItsRefreshTokenAndSavesTheNewToken() {
+        AuthenticationToken stored = tokenExpiringAt(ZonedDateTime.now().minusMinutes(5), "refresh-2");
+        AuthenticationToken fresh = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-3");
+        when(tokenStore.load()).thenReturn(Optional.of(stored));
+        when(webClient.authenticate("refresh-2")).thenReturn(fresh);
+
+        try (AuthenticationTokenManager sut = AuthenticationTokenManager.authenticate(webClient, "refresh-1", tokenStore)) {
+            assertThat(sut.getToken()).isSameAs(fresh);
+        }
+
+        verify(webClient, never()).authenticate("refresh-1");
+        verify(tokenStore).save(fresh);
+    }
+
+    @Test
+    void givenARejectedStoredRefreshToken_authenticate_fallsBackOnTheConfiguredOne() {
+        AuthenticationToken stored = tokenExpiringAt(ZonedDateTime.now().minusMinutes(5), "refresh-2");
+        AuthenticationToken fresh = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-3");
+        when(tokenStore.load()).thenReturn(Optional.of(stored));
+        when(webClient.authenticate("refresh-2")).thenThrow(new AuthenticationException("Refresh token rejected"));
+        when(webClient.authenticate("refresh-1")).thenReturn(fresh);
+
+        try (AuthenticationTokenManager sut = AuthenticationTokenManager.authenticate(webClient, "refresh-1", tokenStore)) {
+            assertThat(sut.getToken()).isSameAs(fresh);
+        }
+    }
+
+    @Test
+    void givenAStoreRefreshedByAnotherProcess_getToken_takesOverItsToken() {
+        AuthenticationToken expired = tokenExpiringAt(ZonedDateTime.now().minusSeconds(1), "refresh-1");
+        AuthenticationToken refreshedElsewhere = tokenExpiringAt(ZonedDateTime.now().plusMinutes(30), "refresh-2");
+        when(tokenStore.load()).thenReturn(Optional.of(refreshedElsewhere));
+
+        try (AuthenticationTokenManager sut = new AuthenticationTokenManager(webClient, expired, Duration.ofMinutes(1), new SimpleMeterRegistry(), tokenStore)) {
+            assertThat(sut.getToken()).isSameAs(refreshedElsewhere);
+        }
+
+        verifyNoInteractions(webClient);
+    }
+}
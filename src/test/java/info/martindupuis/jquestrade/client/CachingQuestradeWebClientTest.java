@@ -0,0 +1,103 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.*;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(InstancioExtension.class)
+@ExtendWith(MockitoExtension.class)
+class CachingQuestradeWebClientTest {
+    private static final ZoneId ZONE = ZoneId.of("America/Toronto");
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2024, 3, 15, 12, 0, 0, 0, ZONE);
+
+    @Mock
+    QuestradeWebClient delegate;
+
+    SimpleMeterRegistry registry;
+    WebClientProperties.Cache properties;
+    CachingQuestradeWebClient sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+    private final QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+    private final QuestradePosition position = Instancio.create(QuestradePosition.class);
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        properties = new WebClientProperties.Cache();
+        properties.setOpenPeriodTtl(Duration.ZERO);
+
+        sut = new CachingQuestradeWebClient(delegate, properties, registry, Clock.fixed(NOW.toInstant(), ZONE));
+    }
+
+    @Test
+    void givenTheSameToken_getAccountsTwice_callsTheApiOnce() {
+        when(delegate.getAccounts(authToken)).thenReturn(Set.of(account));
+
+        sut.getAccounts(authToken);
+        Set<QuestradeAccount> result = sut.getAccounts(authToken);
+
+        assertThat(result).containsExactly(account);
+        verify(delegate, times(1)).getAccounts(authToken);
+        assertThat(registry.get("cache.gets").tag("cache", "questrade.accounts").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenAPeriodWhichIsOver_getPositionCandles_isCachedIndefinitely() {
+        RequestPeriod closedPeriod = new RequestPeriod(NOW.minusDays(30), NOW.minusDays(2));
+        when(delegate.getPositionCandles(eq(authToken), eq(position), eq(closedPeriod), any())).thenReturn(Set.of());
+
+        sut.getPositionCandles(authToken, position, closedPeriod);
+        sut.getPositionCandles(authToken, position, closedPeriod);
+
+        verify(delegate, times(1)).getPositionCandles(authToken, position, closedPeriod, QuestradeCandle.Interval.OneDay);
+    }
+
+    @Test
+    void givenAPeriodStillRunning_getAccountActivities_expiresAfterTheOpenPeriodTtl() {
+        RequestPeriod openPeriod = new RequestPeriod(NOW.minusDays(10), NOW.plusDays(1));
+        when(delegate.getAccountActivities(authToken, account, openPeriod)).thenReturn(Set.of());
+
+        sut.getAccountActivities(authToken, account, openPeriod);
+        sut.getAccountActivities(authToken, account, openPeriod);
+
+        verify(delegate, times(2)).getAccountActivities(authToken, account, openPeriod);
+    }
+
+    @Test
+    void givenTheLastCandleIsNotClosed_getPositionCandles_isNotCachedIndefinitely() {
+        RequestPeriod endingAnHourAgo = new RequestPeriod(NOW.minusDays(10), NOW.minusHours(1));
+        when(delegate.getPositionCandles(eq(authToken), eq(position), eq(endingAnHourAgo), any())).thenReturn(Set.of());
+
+        sut.getPositionCandles(authToken, position, endingAnHourAgo, QuestradeCandle.Interval.OneDay);
+        sut.getPositionCandles(authToken, position, endingAnHourAgo, QuestradeCandle.Interval.OneDay);
+
+        verify(delegate, times(2)).getPositionCandles(authToken, position, endingAnHourAgo, QuestradeCandle.Interval.OneDay);
+    }
+
+    @Test
+    void givenTheApiFails_getPositions_doesNotCacheTheFailure() {
+        when(delegate.getPositions(authToken, account)).thenThrow(new IllegalStateException("boom"))
+                                                       .thenReturn(Set.of(position));
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> sut.getPositions(authToken, account));
+
+        assertThat(sut.getPositions(authToken, account)).containsExactly(position);
+    }
+}
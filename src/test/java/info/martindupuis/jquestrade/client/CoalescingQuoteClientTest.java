@@ -0,0 +1,92 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.Quote;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.instancio.Select.field;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(InstancioExtension.class)
+@ExtendWith(MockitoExtension.class)
+class CoalescingQuoteClientTest {
+    @Mock
+    QuestradeWebClient webClient;
+
+    CoalescingQuoteClient sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+
+    @BeforeEach
+    void setUp() {
+        WebClientProperties properties = new WebClientProperties();
+        properties.getQuotes().setCoalescingWindow(Duration.ofMillis(200));
+
+        sut = new CoalescingQuoteClient(webClient, properties);
+    }
+
+    @Test
+    void givenConcurrentCallers_getQuotes_sharesASingleCall() throws Exception {
+        when(webClient.getQuotes(eq(authToken), any())).thenReturn(List.of(quote(1), quote(2), quote(3)));
+
+        List<Quote> first;
+        List<Quote> second;
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<List<Quote>> firstCaller = callers.submit(() -> sut.getQuotes(authToken, List.of(1, 2)));
+            Future<List<Quote>> secondCaller = callers.submit(() -> sut.getQuotes(authToken, List.of(3, 2)));
+            first = firstCaller.get();
+            second = secondCaller.get();
+        }
+
+        assertThat(first).extracting(Quote::getSymbolId).containsExactly(1L, 2L);
+        assertThat(second).extracting(Quote::getSymbolId).containsExactly(3L, 2L);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Integer>> symbolIds = ArgumentCaptor.forClass(Collection.class);
+        verify(webClient, times(1)).getQuotes(eq(authToken), symbolIds.capture());
+        assertThat(symbolIds.getValue()).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    void givenCallsInSuccessiveWindows_getQuotes_sendsOneCallPerWindow() {
+        when(webClient.getQuotes(eq(authToken), any())).thenReturn(List.of(quote(1)));
+
+        sut.getQuotes(authToken, List.of(1));
+        sut.getQuotes(authToken, List.of(1));
+
+        verify(webClient, times(2)).getQuotes(eq(authToken), any());
+    }
+
+    @Test
+    void givenTheCallFails_getQuotes_throwsTheErrorToEveryCaller() {
+        when(webClient.getQuotes(eq(authToken), any())).thenThrow(new IllegalStateException("boom"));
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> sut.getQuotes(authToken, List.of(1)))
+                                                               .withMessage("boom");
+    }
+
+    private static Quote quote(long symbolId) {
+        return Instancio.of(Quote.class)
+                        .set(field(Quote::getSymbolId), symbolId)
+                        .create();
+    }
+}
@@ -0,0 +1,124 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Set;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class ExchangeReplayerTest {
+
+    @RegisterExtension
+    static WireMockExtension wiremock = WireMockExtension.newInstance()
+                                                         .options(wireMockConfig().dynamicPort()
+                                                                                  .usingFilesUnderDirectory("wiremock")
+                                                                                  .globalTemplating(true))
+                                                         .build();
+
+    @TempDir
+    Path directory;
+
+    private Path archive;
+    private final QuestradeAccount account = new QuestradeAccount("TFSA", "99912345", "Active", true, true, "Individual");
+
+    @BeforeEach
+    void setUp() {
+        archive = directory.resolve("exchanges.gz");
+    }
+
+    private QuestradeWebClientImpl client(WebClientProperties.Transport.Mode mode) {
+        WebClientProperties properties = new WebClientProperties();
+        properties.setLoginUrl(wiremock.baseUrl() + "/");
+        properties.getTransport().setMode(mode);
+        properties.getTransport().setArchive(archive);
+        return new QuestradeWebClientImpl(properties, new SimpleMeterRegistry());
+    }
+
+    private AuthenticationToken apiToken() {
+        return new AuthenticationToken("my-access-token-123", wiremock.baseUrl() + "/", ZonedDateTime.now().plusMinutes(30), "refresh-token", "Bearer");
+    }
+
+    @Test
+    void givenARecording_replay_returnsTheSameResponsesWithoutCallingTheServer() {
+        Set<QuestradeAccount> recordedAccounts;
+        AuthenticationToken recordedToken;
+        try (QuestradeWebClientImpl recorder = client(WebClientProperties.Transport.Mode.Record)) {
+            recordedToken = recorder.authenticate("first-refresh-token");
+            recordedAccounts = recorder.getAccounts(apiToken());
+            recorder.getPositions(apiToken(), account);
+        }
+        wiremock.resetRequests();
+
+        QuestradeWebClientImpl replayer = client(WebClientProperties.Transport.Mode.Replay);
+        AuthenticationToken replayedToken = replayer.authenticate("another-refresh-token");
+
+        assertThat(replayedToken.access_token()).isEqualTo(recordedToken.access_token());
+        assertThat(replayedToken.isValid()).isTrue();
+        assertThat(replayer.getAccounts(apiToken())).isEqualTo(recordedAccounts);
+        assertThat(replayer.getPositions(apiToken(), account)).isNotEmpty();
+        assertThat(wiremock.getAllServeEvents()).isEmpty();
+    }
+
+    @Test
+    void givenARequestNotRecorded_replay_throwsResourceAccessException() {
+        try (QuestradeWebClientImpl recorder = client(WebClientProperties.Transport.Mode.Record)) {
+            recorder.getAccounts(apiToken());
+        }
+
+        QuestradeWebClientImpl replayer = client(WebClientProperties.Transport.Mode.Replay);
+
+        assertThatExceptionOfType(ResourceAccessException.class).isThrownBy(() -> replayer.getPositions(apiToken(), account))
+                                                                .withMessageContaining("No exchange recorded");
+    }
+
+    @Test
+    void givenARecordingNotClosed_replay_servesTheExchangesWrittenSoFar() throws Exception {
+        QuestradeWebClientImpl recorder = client(WebClientProperties.Transport.Mode.Record);
+        recorder.getAccounts(apiToken());
+        Path copy = Files.copy(archive, directory.resolve("copy.gz"));
+
+        ExchangeReplayer replayer = ExchangeReplayer.load(copy);
+        URI uri = URI.create(wiremock.baseUrl() + "/v1/accounts");
+
+        try (ClientHttpResponse response = replayer.createRequest(uri, HttpMethod.GET).execute()) {
+            assertThat(response.getStatusCode().value()).isEqualTo(200);
+        }
+        recorder.close();
+    }
+
+    @Test
+    void givenALaterReplay_replay_shiftsTheDateHeadersByTheTimeElapsed() throws Exception {
+        try (QuestradeWebClientImpl recorder = client(WebClientProperties.Transport.Mode.Record)) {
+            recorder.authenticate("first-refresh-token");
+        }
+        ZonedDateTime recordedDate = ZonedDateTime.now();
+
+        ExchangeReplayer replayer = ExchangeReplayer.load(archive, Clock.offset(Clock.systemUTC(), Duration.ofDays(2)));
+        URI uri = URI.create(wiremock.baseUrl() + "/oauth2/token?grant_type=refresh_token&refresh_token=another-refresh-token");
+
+        try (ClientHttpResponse response = replayer.createRequest(uri, HttpMethod.GET).execute()) {
+            ZonedDateTime replayedDate = DateUtils.parseHeaderDateToLocalOffsetDateTime(response.getHeaders().getFirst(HttpHeaders.DATE));
+            assertThat(Duration.between(recordedDate, replayedDate)).isBetween(Duration.ofDays(2).minusMinutes(1), Duration.ofDays(2).plusMinutes(1));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.Order;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.*;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.instancio.Select.field;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(InstancioExtension.class)
+@ExtendWith(MockitoExtension.class)
+class OrderPollerTest {
+    private static final ZoneId ZONE = ZoneId.of("America/Toronto");
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2024, 3, 15, 12, 0, 0, 0, ZONE);
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    OrderPoller sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+    private final QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+
+    @BeforeEach
+    void setUp() {
+        sut = new OrderPoller(webClient, new WebClientProperties.Orders(), Clock.fixed(NOW.toInstant(), ZONE));
+    }
+
+    @Test
+    void givenAFirstPoll_poll_looksBackTheInitialLookback() {
+        Order order = order(1, NOW.minusHours(2));
+        when(webClient.getOrders(eq(authToken), eq(account), any(), eq(OrderStateFilter.All))).thenReturn(List.of(order));
+
+        List<Order> result = sut.poll(authToken, account);
+
+        assertThat(result).containsExactly(order);
+        assertThat(sut.getWatermark(account, OrderStateFilter.All)).contains(NOW.minusHours(2).toOffsetDateTime());
+        verify(webClient).getOrders(authToken, account, new RequestPeriod(NOW.minusDays(1), NOW), OrderStateFilter.All);
+    }
+
+    @Test
+    void givenAPreviousPoll_poll_onlyAsksAndReturnsWhatChangedSinceIt() {
+        Order first = order(1, NOW.minusHours(2));
+        Order unchanged = order(1, NOW.minusHours(2));
+        Order updated = order(2, NOW.minusHours(2).plusSeconds(1));
+        Order created = order(3, NOW.minusMinutes(5));
+        when(webClient.getOrders(eq(authToken), eq(account), any(), eq(OrderStateFilter.Open))).thenReturn(List.of(first),
+                                                                                                          List.of(created, unchanged, updated));
+
+        sut.poll(authToken, account, OrderStateFilter.Open);
+        List<Order> result = sut.poll(authToken, account, OrderStateFilter.Open);
+
+        assertThat(result).containsExactly(updated, created);
+        ArgumentCaptor<RequestPeriod> periods = ArgumentCaptor.forClass(RequestPeriod.class);
+        verify(webClient, times(2)).getOrders(eq(authToken), eq(account), periods.capture(), eq(OrderStateFilter.Open));
+        assertThat(periods.getAllValues().getLast().periodStart().toInstant())
+                .isEqualTo(NOW.minusSeconds(5).toInstant());
+    }
+
+    @Test
+    void givenTwoPollsWithoutChange_poll_onlyAsksSinceThePreviousPoll() {
+        ZonedDateTime firstPoll = NOW.minusMinutes(1);
+        Clock clock = mock(Clock.class);
+        when(clock.getZone()).thenReturn(ZONE);
+        when(clock.instant()).thenReturn(firstPoll.toInstant(), NOW.toInstant());
+        sut = new OrderPoller(webClient, new WebClientProperties.Orders(), clock);
+        when(webClient.getOrders(eq(authToken), eq(account), any(), eq(OrderStateFilter.All))).thenReturn(List.of());
+
+        sut.poll(authToken, account);
+        List<Order> result = sut.poll(authToken, account);
+
+        assertThat(result).isEmpty();
+        assertThat(sut.getWatermark(account, OrderStateFilter.All)).isEmpty();
+        ArgumentCaptor<RequestPeriod> periods = ArgumentCaptor.forClass(RequestPeriod.class);
+        verify(webClient, times(2)).getOrders(eq(authToken), eq(account), periods.capture(), eq(OrderStateFilter.All));
+        assertThat(periods.getAllValues()).extracting(period -> period.periodStart().toInstant())
+                                          .containsExactly(firstPoll.minusDays(1).toInstant(), firstPoll.minusSeconds(5).toInstant());
+    }
+
+    @Test
+    void givenAnOrderUpdatedAgain_poll_returnsItAgain() {
+        when(webClient.getOrders(eq(authToken), eq(account), any(), eq(OrderStateFilter.All)))
+                .thenReturn(List.of(order(1, NOW.minusMinutes(10))), List.of(order(1, NOW.minusMinutes(1))));
+
+        sut.poll(authToken, account);
+        List<Order> result = sut.poll(authToken, account);
+
+        assertThat(result).extracting(Order::getUpdateTime).containsExactly(NOW.minusMinutes(1).toOffsetDateTime().toString());
+    }
+
+    @Test
+    void givenAReset_poll_startsOver() {
+        when(webClient.getOrders(eq(authToken), eq(account), any(), eq(OrderStateFilter.All)))
+                .thenReturn(List.of(order(1, NOW.minusMinutes(10))));
+
+        sut.poll(authToken, account);
+        sut.reset(account);
+
+        assertThat(sut.getWatermark(account, OrderStateFilter.All)).isEmpty();
+        assertThat(sut.poll(authToken, account)).hasSize(1);
+    }
+
+    private static Order order(int id, ZonedDateTime updateTime) {
+        return Instancio.of(Order.class)
+                        .set(field("id"), id)
+                        .set(field("updateTime"), updateTime.toOffsetDateTime().toString())
+                        .create();
+    }
+}
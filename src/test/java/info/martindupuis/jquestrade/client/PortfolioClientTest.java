@@ -0,0 +1,144 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.instancio.Select.field;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(InstancioExtension.class)
+@ExtendWith(MockitoExtension.class)
+class PortfolioClientTest {
+    private static final Instant NOW = Instant.parse("2024-03-15T16:00:00Z");
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    PortfolioClient sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+    private final QuestradeAccount tfsa = Instancio.create(QuestradeAccount.class);
+    private final QuestradeAccount rrsp = Instancio.create(QuestradeAccount.class);
+
+    @BeforeEach
+    void setUp() {
+        sut = new PortfolioClient(webClient, new BoundedFanOut(new WebClientProperties()), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void givenTwoAccounts_getSnapshot_returnsTheirPositionsBalancesAndQuotes() {
+        QuestradePosition thi = position(38738);
+        QuestradePosition aapl = position(8049);
+        QuestadeBalances tfsaBalances = new QuestadeBalances();
+        QuestadeBalances rrspBalances = new QuestadeBalances();
+        when(webClient.getAccounts(authToken)).thenReturn(new LinkedHashSet<>(List.of(tfsa, rrsp)));
+        when(webClient.getPositions(authToken, tfsa)).thenReturn(Set.of(thi, aapl));
+        when(webClient.getPositions(authToken, rrsp)).thenReturn(Set.of(aapl));
+        when(webClient.getBalances(authToken, tfsa)).thenReturn(tfsaBalances);
+        when(webClient.getBalances(authToken, rrsp)).thenReturn(rrspBalances);
+        when(webClient.getQuotes(eq(authToken), any())).thenReturn(List.of(quote(38738), quote(8049)));
+
+        PortfolioSnapshot result = sut.getSnapshot(authToken);
+
+        assertThat(result.takenAt()).isEqualTo(NOW);
+        assertThat(result.accounts()).extracting(PortfolioSnapshot.AccountSnapshot::account).containsExactly(tfsa, rrsp);
+        assertThat(result.accounts().getFirst().positions()).containsExactlyInAnyOrder(thi, aapl);
+        assertThat(result.accounts().getLast().balances()).isSameAs(rrspBalances);
+        assertThat(result.quotes()).containsOnlyKeys(38738, 8049);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Integer>> symbolIds = ArgumentCaptor.forClass(Collection.class);
+        verify(webClient, times(1)).getQuotes(eq(authToken), symbolIds.capture());
+        assertThat(symbolIds.getValue()).containsExactlyInAnyOrder(38738, 8049);
+    }
+
+    @Test
+    void givenTwoAccounts_getSnapshot_fetchesTheirPositionsAndBalancesConcurrently() {
+        CountDownLatch allStarted = new CountDownLatch(4);
+        when(webClient.getAccounts(authToken)).thenReturn(Set.of(tfsa, rrsp));
+        when(webClient.getPositions(eq(authToken), any())).thenAnswer(invocation -> waitForTheOthers(allStarted, Set.of()));
+        when(webClient.getBalances(eq(authToken), any())).thenAnswer(invocation -> waitForTheOthers(allStarted, new QuestadeBalances()));
+        when(webClient.getQuotes(eq(authToken), any())).thenReturn(List.of());
+
+        PortfolioSnapshot result = sut.getSnapshot(authToken);
+
+        assertThat(result.accounts()).hasSize(2);
+    }
+
+    @Test
+    void givenACallFails_getSnapshot_throwsItsError() {
+        when(webClient.getAccounts(authToken)).thenReturn(Set.of(tfsa));
+        when(webClient.getPositions(authToken, tfsa)).thenReturn(Set.of());
+        when(webClient.getBalances(authToken, tfsa)).thenThrow(new IllegalStateException("boom"));
+        lenient().when(webClient.getQuotes(eq(authToken), any())).thenReturn(List.of());
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> sut.getSnapshot(authToken))
+                                                               .withMessage("boom");
+    }
+
+    @Test
+    void givenACallFails_getSnapshot_cancelsTheCallsStillInFlight() throws InterruptedException {
+        CountDownLatch positionsStarted = new CountDownLatch(1);
+        CountDownLatch positionsInterrupted = new CountDownLatch(1);
+        when(webClient.getAccounts(authToken)).thenReturn(Set.of(tfsa));
+        when(webClient.getPositions(authToken, tfsa)).thenAnswer(invocation -> {
+            positionsStarted.countDown();
+            try {
+                Thread.sleep(Duration.ofSeconds(30));
+            } catch (InterruptedException e) {
+                positionsInterrupted.countDown();
+            }
+            return Set.of();
+        });
+        when(webClient.getBalances(authToken, tfsa)).thenAnswer(invocation -> {
+            positionsStarted.await();
+            throw new IllegalStateException("boom");
+        });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> sut.getSnapshot(authToken)));
+        assertThat(positionsInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        verify(webClient, never()).getQuotes(any(), any());
+    }
+
+    private static <T> T waitForTheOthers(CountDownLatch allStarted, T result) throws InterruptedException {
+        allStarted.countDown();
+        assertThat(allStarted.await(5, TimeUnit.SECONDS)).as("all the calls of the second stage run at once").isTrue();
+        return result;
+    }
+
+    private static QuestradePosition position(int symbolId) {
+        return Instancio.of(QuestradePosition.class)
+                        .set(field(QuestradePosition::symbolId), symbolId)
+                        .create();
+    }
+
+    private static Quote quote(long symbolId) {
+        return Instancio.of(Quote.class)
+                        .set(field("symbolId"), symbolId)
+                        .create();
+    }
+}
@@ -0,0 +1,160 @@
+package info.martindupuis.jquestrade.client;
+
+import com.github.tomakehurst.wiremock.common.ConsoleNotifier;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import info.martindupuis.jquestrade.*;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.AuthenticationExpiredException;
+import info.martindupuis.jquestrade.exceptions.TimeRangeException;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static info.martindupuis.UtilsForTests.RequestPeriodUtils.getInvalidPeriod_ForAccountActivities;
+import static info.martindupuis.UtilsForTests.RequestPeriodUtils.getValidPeriod;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatList;
+import static org.instancio.Select.field;
+
+@ExtendWith(InstancioExtension.class)
+class QuestradeAsyncWebClientImplTest {
+
+    private static final String ACCESS_TOKEN = "my-access-token-123";
+    private static final String TEST_URL_TEMPLATE = "http://localhost:%d/";
+
+    @RegisterExtension
+    static WireMockExtension wiremock = WireMockExtension.newInstance()
+            .options(wireMockConfig().usingFilesUnderDirectory("wiremock")
+                    .globalTemplating(true)
+                    .notifier(new ConsoleNotifier(true)))
+            .build();
+
+    QuestradeAsyncWebClientImpl sut;
+
+    private String testServerUrl;
+
+    @BeforeEach
+    void setUp() {
+        testServerUrl = TEST_URL_TEMPLATE.formatted(wiremock.getPort());
+
+        WebClientProperties properties = new WebClientProperties();
+        properties.setLoginUrl(testServerUrl);
+        properties.setMaxConcurrentRequests(4);
+
+        sut = new QuestradeAsyncWebClientImpl(properties);
+    }
+
+    private AuthenticationToken getTestAuthToken(boolean expired) {
+        return Instancio.of(AuthenticationToken.class)
+                .set(field(AuthenticationToken::api_server), testServerUrl)
+                .set(field(AuthenticationToken::access_token), ACCESS_TOKEN)
+                .set(field(AuthenticationToken::token_type), "Bearer")
+                .generate(field(AuthenticationToken::expires_at),
+                        generators -> expired ? generators.temporal().zonedDateTime().past()
+                                              : generators.temporal().zonedDateTime().future())
+                .create();
+    }
+
+    @Test
+    void givenValidCredentials_WhenITryToAuthenticate_IGetAnAccessToken() {
+        AuthenticationToken token = sut.authenticate(Instancio.create(String.class)).join();
+
+        assertThat(token.isValid()).isTrue();
+    }
+
+    @Test
+    void givenASingleHttp11Connection_manyOutstandingCalls_allComplete() {
+        WebClientProperties properties = new WebClientProperties();
+        properties.setLoginUrl(testServerUrl);
+        properties.getTransport().setMaxConnectionsPerHost(1);
+        properties.getTransport().setHttp2(false);
+        AuthenticationToken authToken = getTestAuthToken(false);
+
+        try (QuestradeAsyncWebClientImpl client = new QuestradeAsyncWebClientImpl(properties)) {
+            List<CompletableFuture<Set<QuestradeAccount>>> calls = IntStream.range(0, 200)
+                                                                            .mapToObj(i -> client.getAccounts(authToken))
+                                                                            .toList();
+
+            assertThat(calls).allSatisfy(call -> assertThat(call.join()).isNotEmpty());
+        }
+    }
+
+    @Test
+    void callingGetAccounts_completesWithListOfAccounts() {
+        List<QuestradeAccount> result = sut.getAccounts(getTestAuthToken(false)).join().stream().toList();
+
+        assertThat(result).hasSize(2);
+        assertThatList(result).filteredOn(e -> e.number().equals("99912345")).first()
+                .hasFieldOrPropertyWithValue("type", "TFSA");
+        assertThat(sut.getRateLimitBudget(RateLimitCategory.Account).remaining()).isEqualTo(29999);
+    }
+
+    @Test
+    void givenAuthenticationHasExpired_callingGetAccounts_completesExceptionally() {
+        CompletableFuture<Set<QuestradeAccount>> result = sut.getAccounts(getTestAuthToken(true));
+
+        assertThat(result).failsWithin(Duration.ofSeconds(5))
+                          .withThrowableThat()
+                          .withCauseInstanceOf(AuthenticationExpiredException.class);
+    }
+
+    @Test
+    void callingGetActivitiesWithTooBigPeriod_completesExceptionally() {
+        QuestradeAccount anAccount = Instancio.create(QuestradeAccount.class);
+
+        CompletableFuture<Set<QuestradeActivity>> result = sut.getAccountActivities(getTestAuthToken(false), anAccount, getInvalidPeriod_ForAccountActivities());
+
+        assertThat(result).failsWithin(Duration.ofSeconds(5))
+                          .withThrowableThat()
+                          .withCauseInstanceOf(TimeRangeException.class);
+    }
+
+    @Test
+    void callingGetPositionsWithAnAccount_completesWithListOfPositions() {
+        QuestradeAccount anAccount = Instancio.create(QuestradeAccount.class);
+
+        Set<QuestradePosition> result = sut.getPositions(getTestAuthToken(false), anAccount).join();
+
+        assertThat(result).hasSize(1);
+        assertThat(result.iterator().next()).hasFieldOrPropertyWithValue("symbol", "THI.TO");
+    }
+
+    @Test
+    void givenManyCallsInFlight_getPositionCandles_completesThemAll() {
+        AuthenticationToken authToken = getTestAuthToken(false);
+        RequestPeriod aPeriod = getValidPeriod();
+
+        List<CompletableFuture<Set<QuestradeCandle>>> calls =
+                IntStream.range(0, 20)
+                         .mapToObj(i -> sut.getPositionCandles(authToken, Instancio.create(QuestradePosition.class), aPeriod))
+                         .toList();
+
+        assertThat(calls).allSatisfy(call -> assertThat(call.join()).hasSize(1));
+    }
+
+    @Test
+    void callingGetPositionCandlesWithAnIntervalOverALongPeriod_fetchesItInChunks() {
+        ZonedDateTime start = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod period = new RequestPeriod(start, start.plusDays(200));
+
+        Set<QuestradeCandle> result = sut.getPositionCandles(getTestAuthToken(false), Instancio.create(QuestradePosition.class),
+                                                             period, QuestradeCandle.Interval.OneHour).join();
+
+        // the stub returns one candle per request
+        Duration requestLength = QuestradeWebClientImpl.getCandlesRequestLength(QuestradeCandle.Interval.OneHour);
+        assertThat(result).hasSize(period.splitIntoPeriodsOf(requestLength).size());
+    }
+}
@@ -0,0 +1,230 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.QuestradeActivity;
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.QuestradeExecution;
+import info.martindupuis.jquestrade.QuestradePosition;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static info.martindupuis.UtilsForTests.RequestPeriodUtils.getValidPeriod;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.instancio.Select.field;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(InstancioExtension.class)
+@ExtendWith(MockitoExtension.class)
+class QuestradeBatchClientTest {
+    private static final int MAX_CONCURRENT_REQUESTS = 3;
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    QuestradeBatchClient sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+
+    @BeforeEach
+    void setUp() {
+        WebClientProperties properties = new WebClientProperties();
+        properties.setMaxConcurrentRequests(MAX_CONCURRENT_REQUESTS);
+
+        sut = new QuestradeBatchClient(webClient, properties);
+    }
+
+    private static QuestradePosition positionFor(int symbolId) {
+        return Instancio.of(QuestradePosition.class)
+                        .set(field(QuestradePosition::symbolId), symbolId)
+                        .create();
+    }
+
+    private static QuestradeActivity activityOn(ZonedDateTime date) {
+        String isoDate = date.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+
+        return Instancio.of(QuestradeActivity.class)
+                        .set(field(QuestradeActivity::tradeDate), isoDate)
+                        .set(field(QuestradeActivity::transactionDate), isoDate)
+                        .create();
+    }
+
+    private static QuestradeExecution executionOn(ZonedDateTime date) {
+        return Instancio.of(QuestradeExecution.class)
+                        .set(field(QuestradeExecution::timestamp), date.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                        .create();
+    }
+
+    @Test
+    void givenManyPositions_getPositionsCandles_returnsCandlesKeyedBySymbolId() {
+        List<QuestradePosition> positions = IntStream.rangeClosed(1, 20).mapToObj(QuestradeBatchClientTest::positionFor).toList();
+        Set<QuestradeCandle> candles = Set.of(Instancio.create(QuestradeCandle.class));
+        when(webClient.getPositionCandles(eq(authToken), any(), any(), any())).thenReturn(candles);
+
+        Map<Integer, FetchResult<Set<QuestradeCandle>>> result = sut.getPositionsCandles(authToken, positions, getValidPeriod());
+
+        assertThat(result).hasSize(20);
+        assertThat(result.values()).allMatch(FetchResult::isSuccess)
+                                   .allMatch(fetched -> fetched.value().equals(candles));
+    }
+
+    @Test
+    void givenPositionsSharingASymbol_getPositionsCandles_fetchesTheSymbolOnce() {
+        List<QuestradePosition> positions = List.of(positionFor(42), positionFor(42));
+        when(webClient.getPositionCandles(eq(authToken), any(), any(), any())).thenReturn(Set.of());
+
+        Map<Integer, FetchResult<Set<QuestradeCandle>>> result = sut.getPositionsCandles(authToken, positions, getValidPeriod());
+
+        assertThat(result).containsOnlyKeys(42);
+        verify(webClient, times(1)).getPositionCandles(eq(authToken), any(), any(), any());
+    }
+
+    @Test
+    void givenOneSymbolFails_getPositionsCandles_reportsTheFailureForThatSymbolOnly() {
+        QuestradePosition failing = positionFor(1);
+        QuestradePosition working = positionFor(2);
+        when(webClient.getPositionCandles(eq(authToken), eq(failing), any(), any())).thenThrow(new IllegalStateException("boom"));
+        when(webClient.getPositionCandles(eq(authToken), eq(working), any(), any())).thenReturn(Set.of());
+
+        Map<Integer, FetchResult<Set<QuestradeCandle>>> result = sut.getPositionsCandles(authToken, List.of(failing, working), getValidPeriod());
+
+        assertThat(result.get(1).isSuccess()).isFalse();
+        assertThat(result.get(1).error()).hasMessage("boom");
+        assertThat(result.get(2).isSuccess()).isTrue();
+    }
+
+    @Test
+    void givenManyPositions_getPositionsCandles_neverExceedsTheConcurrencyCap() {
+        List<QuestradePosition> positions = IntStream.rangeClosed(1, 30).mapToObj(QuestradeBatchClientTest::positionFor).toList();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(webClient.getPositionCandles(eq(authToken), any(), any(), any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return Set.of();
+        });
+
+        sut.getPositionsCandles(authToken, positions, getValidPeriod());
+
+        assertThat(maxInFlight.get()).isPositive().isLessThanOrEqualTo(MAX_CONCURRENT_REQUESTS);
+    }
+
+    @Test
+    void givenAMultiYearPeriod_getAccountActivities_fetchesEveryWindowAndMergesThemInOrder() {
+        ZonedDateTime start = LocalDate.of(2019, 1, 1).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod fiveYears = new RequestPeriod(start, start.plusYears(5));
+        QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+        when(webClient.getAccountActivities(eq(authToken), eq(account), any()))
+                .thenAnswer(invocation -> {
+                    RequestPeriod window = invocation.getArgument(2);
+                    return Set.of(activityOn(window.periodStart()));
+                });
+
+        List<QuestradeActivity> result = sut.getAccountActivities(authToken, account, fiveYears);
+
+        int expectedWindows = fiveYears.splitIntoPeriodsOfXDays(QuestradeWebClientImpl.MAX_ACTIVITIES_PERIOD_DAYS).size();
+        verify(webClient, times(expectedWindows)).getAccountActivities(eq(authToken), eq(account), any());
+        assertThat(result).hasSize(expectedWindows)
+                          .isSortedAccordingTo((a, b) -> ZonedDateTime.parse(a.transactionDate())
+                                                                      .compareTo(ZonedDateTime.parse(b.transactionDate())));
+    }
+
+    @Test
+    void givenTheSameActivityInTwoWindows_getAccountActivities_returnsItOnce() {
+        ZonedDateTime start = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod twoWindows = new RequestPeriod(start, start.plusDays(40));
+        QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+        QuestradeActivity onTheBoundary = activityOn(start.plusDays(29));
+        when(webClient.getAccountActivities(eq(authToken), eq(account), any())).thenReturn(Set.of(onTheBoundary));
+
+        List<QuestradeActivity> result = sut.getAccountActivities(authToken, account, twoWindows);
+
+        verify(webClient, times(2)).getAccountActivities(eq(authToken), eq(account), any());
+        assertThat(result).containsExactly(onTheBoundary);
+    }
+
+    @Test
+    void givenAPeriodShorterThanADay_getAccountActivities_dropsTheActivitiesBeforeIt() {
+        ZonedDateTime start = LocalDate.of(2020, 1, 10).atTime(9, 0).atZone(ZoneId.systemDefault());
+        RequestPeriod aMorning = new RequestPeriod(start, start.plusHours(3));
+        QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+        QuestradeActivity dayBefore = activityOn(start.minusDays(1));
+        QuestradeActivity sameDay = activityOn(start.plusHours(1));
+        when(webClient.getAccountActivities(eq(authToken), eq(account), any())).thenReturn(Set.of(dayBefore, sameDay));
+
+        List<QuestradeActivity> result = sut.getAccountActivities(authToken, account, aMorning);
+
+        assertThat(result).containsExactly(sameDay);
+    }
+
+    @Test
+    void givenActivitiesWithoutTradeDate_getAccountActivities_sortsThemAfterTheOthersOfTheirTransactionDate() {
+        ZonedDateTime start = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod aWeek = new RequestPeriod(start, start.plusDays(7));
+        QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+        QuestradeActivity traded = activityOn(start.plusDays(2));
+        QuestradeActivity dividend = Instancio.of(QuestradeActivity.class)
+                                              .set(field(QuestradeActivity::transactionDate), traded.transactionDate())
+                                              .set(field(QuestradeActivity::tradeDate), null)
+                                              .create();
+        QuestradeActivity earlier = activityOn(start.plusDays(1));
+        when(webClient.getAccountActivities(eq(authToken), eq(account), any())).thenReturn(Set.of(dividend, traded, earlier));
+
+        List<QuestradeActivity> result = sut.getAccountActivities(authToken, account, aWeek);
+
+        assertThat(result).containsExactly(earlier, traded, dividend);
+    }
+
+    @Test
+    void givenManyAccountsOverYears_getExecutions_fetchesEveryWindowOfEveryAccountAndMergesThemInOrder() {
+        ZonedDateTime start = LocalDate.of(2019, 1, 1).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod threeYears = new RequestPeriod(start, start.plusYears(3));
+        List<QuestradeAccount> accounts = Instancio.ofList(QuestradeAccount.class).size(3).create();
+        when(webClient.getExecutions(eq(authToken), any(), any()))
+                .thenAnswer(invocation -> {
+                    RequestPeriod window = invocation.getArgument(2);
+                    return List.of(executionOn(window.periodEnd()), executionOn(window.periodStart()));
+                });
+
+        List<QuestradeExecution> result = sut.getExecutions(authToken, accounts, threeYears).toList();
+
+        int expectedWindows = threeYears.splitIntoPeriodsOfXDays(QuestradeWebClientImpl.MAX_EXECUTIONS_PERIOD_DAYS).size();
+        for (QuestradeAccount account : accounts)
+            verify(webClient, times(expectedWindows)).getExecutions(eq(authToken), eq(account), any());
+        assertThat(result).hasSize(3 * expectedWindows * 2)
+                          .isSortedAccordingTo((a, b) -> ZonedDateTime.parse(a.timestamp()).compareTo(ZonedDateTime.parse(b.timestamp())));
+    }
+
+    @Test
+    void givenTheSameExecutionInTwoWindows_getExecutions_returnsItOnce() {
+        ZonedDateTime start = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod twoWindows = new RequestPeriod(start, start.plusDays(40));
+        QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+        QuestradeExecution onTheBoundary = executionOn(start.plusDays(29));
+        when(webClient.getExecutions(eq(authToken), eq(account), any())).thenReturn(List.of(onTheBoundary));
+
+        List<QuestradeExecution> result = sut.getExecutions(authToken, account, twoWindows).toList();
+
+        verify(webClient, times(2)).getExecutions(eq(authToken), eq(account), any());
+        assertThat(result).containsExactly(onTheBoundary);
+    }
+}
@@ -0,0 +1,66 @@
+package info.martindupuis.jquestrade.client;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuestradeMetricsTest {
+
+    @Test
+    void endpointOf_replacesIdentifiersAndDropsTheApiVersion() {
+        URI activities = URI.create("https://api01.iq.questrade.com/v1/accounts/26598145/activities?startTime=2011-02-01T00:00:00-05:00");
+        URI candles = URI.create("https://api01.iq.questrade.com/v1/markets/candles/38738?interval=OneDay");
+        URI login = URI.create("https://login.questrade.com/oauth2/token?grant_type=refresh_token");
+
+        assertThat(QuestradeMetrics.endpointOf(activities)).isEqualTo("accounts/{id}/activities");
+        assertThat(QuestradeMetrics.endpointOf(candles)).isEqualTo("markets/candles/{id}");
+        assertThat(QuestradeMetrics.endpointOf(login)).isEqualTo("oauth2/token");
+    }
+
+    @Test
+    void givenBothClients_registerRateLimitGauges_reportsTheBudgetOfEach() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QuestradeMetrics sut = new QuestradeMetrics(registry);
+        RateLimitScheduler syncScheduler = new RateLimitScheduler();
+        RateLimitScheduler asyncScheduler = new RateLimitScheduler();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(RateLimitScheduler.REMAINING_HEADER, "42");
+        headers.set(RateLimitScheduler.RESET_HEADER, String.valueOf(Instant.now().plusSeconds(60).getEpochSecond()));
+        asyncScheduler.update(RateLimitCategory.Account, headers);
+
+        sut.registerRateLimitGauges(QuestradeMetrics.SYNC_CLIENT, syncScheduler);
+        sut.registerRateLimitGauges(QuestradeMetrics.ASYNC_CLIENT, asyncScheduler);
+
+        assertThat(registry.get(QuestradeMetrics.RATE_LIMIT_REMAINING).tag("category", "Account").gauges()).hasSize(2);
+        assertThat(registry.get(QuestradeMetrics.RATE_LIMIT_REMAINING).tags("category", "Account", "client", "async").gauge().value()).isEqualTo(42);
+    }
+
+    @Test
+    void givenTwoClientsOfTheSameKind_registerRateLimitGauges_reportsTheBudgetOfEachUntilRemoved() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QuestradeMetrics sut = new QuestradeMetrics(registry);
+        RateLimitScheduler secondScheduler = new RateLimitScheduler();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(RateLimitScheduler.REMAINING_HEADER, "42");
+        headers.set(RateLimitScheduler.RESET_HEADER, String.valueOf(Instant.now().plusSeconds(60).getEpochSecond()));
+        secondScheduler.update(RateLimitCategory.Account, headers);
+
+        List<Meter> first = sut.registerRateLimitGauges(QuestradeMetrics.SYNC_CLIENT, new RateLimitScheduler());
+        sut.registerRateLimitGauges(QuestradeMetrics.SYNC_CLIENT, secondScheduler);
+
+        assertThat(registry.get(QuestradeMetrics.RATE_LIMIT_REMAINING).tag("category", "Account").gauges())
+                .hasSize(2)
+                .anySatisfy(gauge -> assertThat(gauge.value()).isEqualTo(42));
+
+        sut.remove(first);
+
+        assertThat(registry.get(QuestradeMetrics.RATE_LIMIT_REMAINING).tag("category", "Account").gauge().value()).isEqualTo(42);
+    }
+}
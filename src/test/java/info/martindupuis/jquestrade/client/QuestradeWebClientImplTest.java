@@ -5,7 +5,9 @@ import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import info.martindupuis.jquestrade.*;
 import info.martindupuis.jquestrade.client.config.WebClientProperties;
 import info.martindupuis.jquestrade.exceptions.AuthenticationExpiredException;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
 import info.martindupuis.jquestrade.exceptions.TimeRangeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.instancio.Instancio;
 import org.instancio.Model;
@@ -18,8 +20,17 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static info.martindupuis.UtilsForTests.RequestPeriodUtils.getInvalidPeriod_ForAccountActivities;
 import static info.martindupuis.UtilsForTests.RequestPeriodUtils.getValidPeriod;
@@ -67,6 +78,9 @@ class QuestradeWebClientImplTest {
         testServerUrl = TEST_URL_TEMPLATE.formatted(wiremock.getPort());
 
         Mockito.when(webclientProperties.getLoginUrl()).thenReturn(testServerUrl);
+        Mockito.when(webclientProperties.getMaxConcurrentRequests()).thenReturn(4);
+        Mockito.when(webclientProperties.getTransport()).thenReturn(new WebClientProperties.Transport());
+        Mockito.when(webclientProperties.getResilience()).thenReturn(new WebClientProperties.Resilience());
 
         sut = new QuestradeWebClientImpl(webclientProperties);
     }
@@ -118,6 +132,27 @@ class QuestradeWebClientImplTest {
                     .hasFieldOrPropertyWithValue("type", "RRSP");
         }
 
+        @Test
+        void callingGetAccounts_updatesTheRateLimitBudgetFromTheResponseHeaders() {
+            sut.getAccounts(validAuthToken);
+
+            RateLimitBudget budget = ((QuestradeWebClientImpl) sut).getRateLimitBudget(RateLimitCategory.Account);
+            assertThat(budget.remaining()).isEqualTo(29999);
+        }
+
+        @Test
+        void callingGetAccounts_recordsMetricsTaggedByEndpoint() {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            QuestradeWebClient meteredSut = new QuestradeWebClientImpl(webclientProperties, registry);
+
+            meteredSut.getAccounts(validAuthToken);
+
+            assertThat(registry.get(QuestradeMetrics.REQUESTS).tag("endpoint", "accounts").tag("status", "200").timer().count()).isEqualTo(1);
+            assertThat(registry.get(QuestradeMetrics.RESPONSE_SIZE).tag("endpoint", "accounts").summary().totalAmount()).isPositive();
+            assertThat(registry.get(QuestradeMetrics.RESULTS).tag("endpoint", "accounts").summary().totalAmount()).isEqualTo(2);
+            assertThat(registry.get(QuestradeMetrics.RATE_LIMIT_REMAINING).tag("category", "Account").gauge().value()).isEqualTo(29999);
+        }
+
         @Test
         void givenAuthenticationHasExpired_callingGetAccounts_throwsAuthenticationExpiredException() {
             AuthenticationToken expiredAuthToken = getExpiredTestAuthToken();
@@ -176,5 +211,184 @@ class QuestradeWebClientImplTest {
                     .hasFieldOrPropertyWithValue("close", 70.73)
                     .hasFieldOrPropertyWithValue("volume", 983609);
         }
+
+        @Test
+        void callingGetQuoteSeries_returnsTheSameCandlesInColumns() {
+            RequestPeriod aPeriod = getValidPeriod();
+            QuestradePosition aPosition = Instancio.create(QuestradePosition.class);
+
+            CandleSeries result = sut.getPositionCandleSeries(validAuthToken, aPosition, aPeriod, QuestradeCandle.Interval.OneDay);
+
+            assertThat(result.size()).isEqualTo(1);
+            assertThat(result.getLow(0)).isEqualTo(70.3);
+            assertThat(result.getHigh(0)).isEqualTo(70.78);
+            assertThat(result.getOpen(0)).isEqualTo(70.68);
+            assertThat(result.getClose(0)).isEqualTo(70.73);
+            assertThat(result.getVolume(0)).isEqualTo(983609);
+        }
+
+        @Test
+        void callingGetBalancesWithAnAccount_returnsItsBalances() {
+            QuestradeAccount anAccount = Instancio.create(QuestradeAccount.class);
+
+            QuestadeBalances result = sut.getBalances(validAuthToken, anAccount);
+
+            assertThat(result.getCombinedBalances(QuestadeBalances.Currency.CAD))
+                    .hasFieldOrPropertyWithValue("currency", "CAD")
+                    .hasFieldOrPropertyWithValue("marketValue", 6239.64);
+            assertThat(result.getSodCombinedBalances(QuestadeBalances.Currency.USD).cash()).isEqualTo(242.6);
+        }
+
+        @Test
+        void callingGetExecutions_returnsTheExecutionsOfTheAccount() {
+            QuestradeAccount anAccount = Instancio.create(QuestradeAccount.class);
+
+            List<QuestradeExecution> result = sut.getExecutions(validAuthToken, anAccount, getValidPeriod());
+
+            assertThat(result).singleElement()
+                              .hasFieldOrPropertyWithValue("symbol", "AAPL")
+                              .hasFieldOrPropertyWithValue("totalCost", 5368.7);
+        }
+
+        @Test
+        void callingGetExecutionsOverMoreThan30Days_throwsTimeRangeException() {
+            QuestradeAccount anAccount = Instancio.create(QuestradeAccount.class);
+            ZonedDateTime start = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault());
+
+            assertThatExceptionOfType(TimeRangeException.class)
+                    .isThrownBy(() -> sut.getExecutions(validAuthToken, anAccount, new RequestPeriod(start, start.plusDays(45))));
+        }
+
+        @Test
+        void callingGetOrders_returnsTheOrdersOfTheAccount() {
+            QuestradeAccount anAccount = Instancio.create(QuestradeAccount.class);
+
+            List<Order> result = sut.getOrders(validAuthToken, anAccount, getValidPeriod(), OrderStateFilter.All);
+
+            assertThat(result).singleElement()
+                              .satisfies(order -> {
+                                  assertThat(order.getId()).isEqualTo(173577870);
+                                  assertThat(order.getState()).isEqualTo("Canceled");
+                                  assertThat(order.getUpdateTime()).isEqualTo("2014-10-23T20:03:42.890000-04:00");
+                              });
+        }
+
+        @Test
+        void callingGetMarketQuotes_returnsTheQuoteOfEverySymbol() {
+            List<Quote> result = sut.getQuotes(validAuthToken, List.of(38738, 8049));
+
+            assertThat(result).extracting(Quote::getSymbol).containsExactly("THI.TO", "AAPL");
+            assertThat(result.getFirst().getBidPrice()).isEqualTo(83.65);
+        }
+
+        @Test
+        void callingSearchSymbols_returnsTheSymbolsStartingWithThePrefix() {
+            List<QuestadeSymbol> result = sut.searchSymbols(validAuthToken, "BMO");
+
+            assertThat(result).extracting(QuestadeSymbol::theSymbol).containsExactly("BMO", "BMO.PRJ.TO");
+            assertThat(result.getFirst().tradable()).isTrue();
+        }
+
+        @Test
+        void callingSearchSymbolsWithQuerySyntax_sendsThePrefixAsTyped() {
+            assertThatExceptionOfType(StatusCodeException.class).isThrownBy(() -> sut.searchSymbols(validAuthToken, "A&B"));
+
+            wiremock.verify(getRequestedFor(urlPathEqualTo("/v1/symbols/search")).withQueryParam("prefix", equalTo("A&B")));
+        }
+
+        @Test
+        void callingGetSymbols_returnsTheirDetailedInformation() {
+            List<QuestradeSymbolInfo> result = sut.getSymbols(validAuthToken, List.of(8049));
+
+            assertThat(result).singleElement()
+                              .satisfies(symbol -> {
+                                  assertThat(symbol.symbolId()).isEqualTo(8049);
+                                  assertThat(symbol.symbolYield()).isEqualTo(1.84);
+                                  assertThat(symbol.minTicks()).extracting(QuestradeSymbolInfo.MinTick::minPriceIncrement)
+                                                               .containsExactly(0.0001, 0.01);
+                              });
+        }
+
+        @Test
+        void callingGetQuoteStreamPort_returnsThePortToConnectTo() {
+            int port = sut.getQuoteStreamPort(validAuthToken, List.of(8049, 38738));
+
+            assertThat(port).isEqualTo(32145);
+        }
+
+        @Test
+        void callingGetQuotesWithAnIntervalOverALongPeriod_fetchesItInChunks() {
+            ZonedDateTime start = LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault());
+            RequestPeriod aYear = new RequestPeriod(start, start.plusDays(200));
+            QuestradePosition aPosition = Instancio.create(QuestradePosition.class);
+
+            List<QuestradeCandle> result = sut.getPositionCandles(validAuthToken, aPosition, aYear, QuestradeCandle.Interval.OneHour).stream().toList();
+
+            // the stub returns one candle per request
+            Duration requestLength = QuestradeWebClientImpl.getCandlesRequestLength(QuestradeCandle.Interval.OneHour);
+            assertThat(result).hasSize(aYear.splitIntoPeriodsOf(requestLength).size())
+                              .hasSizeGreaterThan(1);
+        }
+    }
+
+    @Test
+    void givenManySymbols_quotesResources_splitsTheIdsUnderTheUrlLimit() {
+        List<Integer> symbolIds = IntStream.range(1_000_000, 1_000_500).boxed().toList();
+
+        List<String> resources = QuestradeWebClientImpl.quotesResources(symbolIds);
+
+        assertThat(resources).hasSizeGreaterThan(1)
+                             .allSatisfy(resource -> assertThat(resource.substring("markets/quotes?ids=".length()))
+                                     .hasSizeLessThanOrEqualTo(QuestradeWebClientImpl.MAX_QUOTES_IDS_LENGTH));
+        assertThat(resources.stream().flatMap(resource -> Arrays.stream(resource.substring("markets/quotes?ids=".length()).split(","))))
+                .containsExactlyElementsOf(symbolIds.stream().map(String::valueOf).toList());
+    }
+
+    @Test
+    void ordersResource_asksForThePeriodAndTheStates() {
+        QuestradeAccount account = new QuestradeAccount("TFSA", "26598145", "Active", true, true, "Individual");
+        ZonedDateTime start = ZonedDateTime.of(2014, 10, 1, 0, 0, 0, 0, ZoneId.of("-05:00"));
+        RequestPeriod period = new RequestPeriod(start, start.plusDays(1));
+
+        assertThat(QuestradeWebClientImpl.ordersResource(account, period, OrderStateFilter.Open))
+                .isEqualTo("accounts/26598145/orders?startTime=2014-10-01T00:00:00-05:00&endTime=2014-10-02T00:00:00-05:00&stateFilter=Open");
+    }
+
+    @Test
+    void givenAPrefixWithQuerySyntax_symbolsSearchResource_encodesIt() {
+        assertThat(QuestradeWebClientImpl.symbolsSearchResource("A&B")).isEqualTo("symbols/search?prefix=A%26B");
+        assertThat(QuestradeWebClientImpl.symbolsSearchResource("{x}+ #")).isEqualTo("symbols/search?prefix=%7Bx%7D%2B%20%23");
+        assertThat(QuestradeWebClientImpl.symbolsSearchResource("BMO.PRJ")).isEqualTo("symbols/search?prefix=BMO.PRJ");
+    }
+
+    @Test
+    void givenDuplicatedSymbols_quotesResources_asksForEachOnce() {
+        assertThat(QuestradeWebClientImpl.quotesResources(List.of(8049, 38738, 8049))).containsExactly("markets/quotes?ids=8049,38738");
+    }
+
+    @Test
+    void candlesRequestLength_staysUnderTheCandlesCap() {
+        for (QuestradeCandle.Interval interval : QuestradeCandle.Interval.values()) {
+            Duration requestLength = QuestradeWebClientImpl.getCandlesRequestLength(interval);
+
+            assertThat(requestLength).isPositive();
+            assertThat(requestLength.dividedBy(interval.getDuration()))
+                    .isLessThanOrEqualTo(QuestradeWebClientImpl.MAX_CANDLES_PER_REQUEST);
+        }
+    }
+
+    @Test
+    void givenAOneMinutePeriodOfLessThanTwoDays_candlesChunks_stayUnderTheCandlesCap() {
+        ZonedDateTime start = LocalDate.of(2020, 1, 6).atStartOfDay(ZoneId.systemDefault());
+        RequestPeriod period = new RequestPeriod(start, start.plusDays(1).plusHours(23));
+        Duration requestLength = QuestradeWebClientImpl.getCandlesRequestLength(QuestradeCandle.Interval.OneMinute);
+
+        List<RequestPeriod> chunks = period.splitIntoPeriodsOf(requestLength);
+
+        assertThat(chunks).hasSize(2)
+                          .allSatisfy(chunk -> assertThat(Duration.between(chunk.periodStart(), chunk.periodEnd()).toMinutes())
+                                  .isLessThanOrEqualTo(QuestradeWebClientImpl.MAX_CANDLES_PER_REQUEST));
+        assertThat(chunks.getFirst().periodStart()).isEqualTo(period.periodStart());
+        assertThat(chunks.getLast().periodEnd()).isEqualTo(period.periodEnd());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.Quote;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteStreamClientTest {
+    private static final String ACCESS_TOKEN = "my-access-token-123";
+    private static final String QUOTES = """
+            {"quotes":[{"symbol":"THI.TO","symbolId":38738,"bidPrice":83.65,"lastTradePrice":83.66,"volume":1920,"isHalted":false}]}""";
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    DisposableServer streamServer;
+    Queue<String> receivedTokens = new ConcurrentLinkedQueue<>();
+    QuoteStreamClient sut;
+
+    @BeforeEach
+    void setUp() {
+        // stand-in for the stream port: checks the token, sends one update, then closes like Questrade does on reconnects
+        streamServer = HttpServer.create()
+                                 .port(0)
+                                 .route(routes -> routes.ws("/", (in, out) ->
+                                         in.receive().asString().next()
+                                           .doOnNext(receivedTokens::add)
+                                           .then(out.sendString(Mono.just("{\"success\":true}")).then())
+                                           .then(out.sendString(Mono.just(QUOTES)).then())))
+                                 .bindNow();
+
+        AuthenticationToken authToken = new AuthenticationToken(ACCESS_TOKEN, "http://localhost/", ZonedDateTime.now().plusHours(1),
+                                                                 "refresh-token", "Bearer");
+        WebClientProperties.QuoteStream properties = new WebClientProperties.QuoteStream();
+        properties.setReconnectDelay(Duration.ofMillis(10));
+
+        sut = new QuoteStreamClient(webClient, () -> authToken, new ReactorNettyWebSocketClient(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamServer.disposeNow();
+    }
+
+    @Test
+    void givenTheServerClosesTheStream_stream_reconnectsOnAFreshPort() {
+        when(webClient.getQuoteStreamPort(any(), eq(List.of(38738)))).thenReturn(streamServer.port());
+
+        List<Quote> result = sut.stream(List.of(38738)).take(2).collectList().block(Duration.ofSeconds(10));
+
+        assertThat(result).hasSize(2)
+                          .allSatisfy(quote -> {
+                              assertThat(quote.getSymbol()).isEqualTo("THI.TO");
+                              assertThat(quote.getSymbolId()).isEqualTo(38738);
+                              assertThat(quote.getLastTradePrice()).isEqualTo(83.66);
+                          });
+        assertThat(receivedTokens).hasSizeGreaterThanOrEqualTo(2).containsOnly(ACCESS_TOKEN);
+        verify(webClient, atLeast(2)).getQuoteStreamPort(any(), eq(List.of(38738)));
+    }
+
+    @Test
+    void givenMoreSymbolsThanAConnectionTakes_stream_opensSeveralConnections() {
+        List<Integer> symbolIds = IntStream.rangeClosed(1, 150).boxed().toList();
+        when(webClient.getQuoteStreamPort(any(), any())).thenReturn(streamServer.port());
+
+        sut.stream(symbolIds).take(Duration.ofMillis(500)).blockLast(Duration.ofSeconds(10));
+
+        verify(webClient, atLeastOnce()).getQuoteStreamPort(any(), eq(symbolIds.subList(0, 100)));
+        verify(webClient, atLeastOnce()).getQuoteStreamPort(any(), eq(symbolIds.subList(100, 150)));
+    }
+
+    @Test
+    void givenAnErrorMessage_decode_throwsStatusCodeException() {
+        assertThatExceptionOfType(StatusCodeException.class)
+                .isThrownBy(() -> sut.decode("{\"code\":1017,\"message\":\"Access token is invalid\"}"))
+                .withMessage("Access token is invalid");
+    }
+
+    @Test
+    void givenTheApiServer_streamUri_usesTheSameHostOverWebSocket() {
+        assertThat(QuoteStreamClient.streamUri("https://api01.iq.questrade.com/", 32145)).hasToString("wss://api01.iq.questrade.com:32145/");
+    }
+}
@@ -0,0 +1,115 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.Quote;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.instancio.Select.all;
+import static org.instancio.Select.field;
+
+@ExtendWith(InstancioExtension.class)
+class QuoteTableTest {
+
+    @Test
+    void givenAQuote_read_returnsAllItsFields() {
+        QuoteTable sut = new QuoteTable(10);
+        Quote quote = Instancio.of(Quote.class).set(field("symbolId"), 38738L).create();
+
+        sut.update(quote);
+
+        QuoteSnapshot snapshot = new QuoteSnapshot();
+        assertThat(sut.read(38738, snapshot)).isTrue();
+        assertThat(snapshot).usingRecursiveComparison()
+                            .ignoringFields("symbolId", "delayed", "halted", "vwap")
+                            .isEqualTo(quote);
+        assertThat(snapshot.getSymbolId()).isEqualTo(38738);
+        assertThat(snapshot.isDelayed()).isEqualTo(quote.isDelayed());
+        assertThat(snapshot.isHalted()).isEqualTo(quote.isHalted());
+        assertThat(snapshot.getVWAP()).isEqualTo(quote.getVWAP());
+        assertThat(sut.lastTradePrice(38738)).isEqualTo(quote.getLastTradePrice());
+    }
+
+    @Test
+    void givenAnUnknownSymbol_read_returnsFalse() {
+        QuoteTable sut = new QuoteTable(10);
+
+        assertThat(sut.read(8049, new QuoteSnapshot())).isFalse();
+        assertThat(sut.bidPrice(8049)).isNaN();
+    }
+
+    @Test
+    void givenAListener_update_notifiesItOfTheSymbol() {
+        QuoteTable sut = new QuoteTable(10);
+        List<Integer> notified = new ArrayList<>();
+        sut.addListener(notified::add);
+
+        sut.update(quote(38738, 1));
+        sut.update(quote(8049, 2));
+
+        assertThat(notified).containsExactly(38738, 8049);
+    }
+
+    @Test
+    void givenTheTableIsFull_updatingANewSymbol_throwsIllegalStateException() {
+        QuoteTable sut = new QuoteTable(1);
+        sut.update(quote(38738, 1));
+        sut.update(quote(38738, 2));
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> sut.update(quote(8049, 1)));
+        assertThat(sut.size()).isEqualTo(1);
+    }
+
+    @Test
+    void givenConcurrentUpdates_read_neverMixesTwoQuotes() throws Exception {
+        QuoteTable sut = new QuoteTable(1);
+        Quote ones = quote(38738, 1);
+        Quote twos = quote(38738, 2);
+        sut.update(ones);
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try (ExecutorService threads = Executors.newFixedThreadPool(4)) {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                readers.add(threads.submit(() -> {
+                    QuoteSnapshot snapshot = new QuoteSnapshot();
+                    int torn = 0;
+                    while (writing.get()) {
+                        sut.read(38738, snapshot);
+                        if (snapshot.getBidPrice() != snapshot.getAskPrice() || snapshot.getBidPrice() != snapshot.getVWAP()
+                                || snapshot.getVolume() != (long) snapshot.getBidPrice())
+                            torn++;
+                    }
+                    return torn;
+                }));
+
+            threads.submit(() -> {
+                for (int i = 0; i < 1_000_000; i++)
+                    sut.update(i % 2 == 0 ? twos : ones);
+                writing.set(false);
+            }).get();
+
+            for (Future<Integer> reader : readers)
+                assertThat(reader.get()).isZero();
+        }
+    }
+
+    private static Quote quote(long symbolId, int value) {
+        return Instancio.of(Quote.class)
+                        .set(all(double.class), (double) value)
+                        .set(all(int.class), value)
+                        .set(all(long.class), (long) value)
+                        .set(field("symbolId"), symbolId)
+                        .create();
+    }
+}
@@ -0,0 +1,81 @@
+package info.martindupuis.jquestrade.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitSchedulerTest {
+    private static final Instant NOW = Instant.parse("2024-01-15T15:00:00Z");
+
+    RateLimitScheduler sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new RateLimitScheduler(Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static HttpHeaders rateLimitHeaders(String remaining, String reset) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(RateLimitScheduler.REMAINING_HEADER, remaining);
+        headers.add(RateLimitScheduler.RESET_HEADER, reset);
+        return headers;
+    }
+
+    @Test
+    void givenAFreshScheduler_oneSecondOfRequestsCanBeMadeWithoutWaiting() {
+        for (int i = 0; i < RateLimitCategory.Account.getRequestsPerSecond(); i++)
+            assertThat(sut.tryAcquire(RateLimitCategory.Account)).isZero();
+
+        assertThat(sut.tryAcquire(RateLimitCategory.Account)).isPositive();
+    }
+
+    @Test
+    void givenAccountCallsAreExhausted_marketCallsCanStillBeMade() {
+        while (sut.tryAcquire(RateLimitCategory.Account).isZero()) ;
+
+        assertThat(sut.tryAcquire(RateLimitCategory.Market)).isZero();
+    }
+
+    @Test
+    void givenNoRemainingBudget_tryAcquire_waitsUntilTheReset() {
+        Instant resetAt = NOW.plusSeconds(60);
+
+        sut.update(RateLimitCategory.Market, rateLimitHeaders("0", String.valueOf(resetAt.getEpochSecond())));
+
+        assertThat(sut.tryAcquire(RateLimitCategory.Market)).isEqualTo(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void givenRateLimitHeaders_getBudget_returnsThem() {
+        Instant resetAt = NOW.plusSeconds(600);
+
+        sut.update(RateLimitCategory.Account, rateLimitHeaders("1234", String.valueOf(resetAt.getEpochSecond())));
+
+        assertThat(sut.getBudget(RateLimitCategory.Account)).isEqualTo(new RateLimitBudget(1234, resetAt));
+    }
+
+    @Test
+    void givenInvalidRateLimitHeaders_getBudget_isUnchanged() {
+        RateLimitBudget before = sut.getBudget(RateLimitCategory.Account);
+
+        sut.update(RateLimitCategory.Account, rateLimitHeaders("lots", "soon"));
+
+        assertThat(sut.getBudget(RateLimitCategory.Account)).isEqualTo(before);
+    }
+
+    @Test
+    void acquiringAPermit_decrementsTheBudget() {
+        int before = sut.getBudget(RateLimitCategory.Account).remaining();
+
+        sut.acquire(RateLimitCategory.Account);
+
+        assertThat(sut.getBudget(RateLimitCategory.Account).remaining()).isEqualTo(before - 1);
+    }
+}
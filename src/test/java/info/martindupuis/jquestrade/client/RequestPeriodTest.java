@@ -86,6 +86,19 @@ class RequestPeriodTest {
         assertThat(lastPeriod.numberDaysInBetween()).isEqualTo(30);
     }
 
+    @Test
+    void givenAPeriodWithRemainingHours_callingSplitIntoLessDays_returnAListCoveringTheWholePeriod() {
+        ZonedDateTime periodStart = ZonedDateTime.of(LocalDateTime.of(2001,1,1,0,0), ZoneId.systemDefault());
+        RequestPeriod bigPeriod = new RequestPeriod(periodStart, periodStart.plusDays(10).plusHours(5));
+
+        List<RequestPeriod> result = bigPeriod.splitIntoPeriodsOfXDays(5);
+
+        assertThat(result).size().isEqualTo(3);
+
+        RequestPeriod lastPeriod = Objects.requireNonNull(result.getLast());
+        assertThat(lastPeriod.periodEnd()).isEqualTo(bigPeriod.periodEnd());
+    }
+
     @Test
     void givenAPeriodEndingAfterNow_callingSplitIntoLessDays_returnAListOfPeriodsEndingToday() {
         ZonedDateTime periodStart = ZonedDateTime.of(LocalDate.now().minusDays(3), LocalTime.now(), ZoneId.systemDefault());
@@ -101,4 +114,47 @@ class RequestPeriodTest {
         RequestPeriod lastPeriod = Objects.requireNonNull(result.getLast());
         assertThat(lastPeriod.periodEnd().toLocalDate()).isEqualTo(LocalDate.now());
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenAPeriodLongerByHoursOnly_callingSplitIntoPeriodsOfXDays_returnsTwoPeriods() {
+        ZonedDateTime periodStart = ZonedDateTime.of(LocalDateTime.of(2001,1,1,0,0), ZoneId.systemDefault());
+        RequestPeriod bigPeriod = new RequestPeriod(periodStart, periodStart.plusDays(1).plusHours(23));
+
+        List<RequestPeriod> result = bigPeriod.splitIntoPeriodsOfXDays(1);
+
+        assertThat(result).size().isEqualTo(2);
+        assertThat(result.getLast().periodEnd()).isEqualTo(bigPeriod.periodEnd());
+    }
+
+    @Test
+    void givenAPeriodEndingAfterNow_callingSplitIntoPeriodsOf_returnsPeriodsEndingNow() {
+        ZonedDateTime periodStart = ZonedDateTime.now().minusHours(5);
+        RequestPeriod bigPeriod = new RequestPeriod(periodStart, periodStart.plusHours(10));
+
+        List<RequestPeriod> result = bigPeriod.splitIntoPeriodsOf(Duration.ofHours(2));
+
+        assertThat(result).size().isEqualTo(3);
+        assertThat(result.getLast().periodEnd()).isBeforeOrEqualTo(ZonedDateTime.now())
+                                                .isAfter(periodStart.plusHours(4));
+    }
+
+    @Test
+    void givenAPeriodStartingAfterNow_callingSplitIntoPeriodsOf_returnsNoPeriod() {
+        ZonedDateTime now = ZonedDateTime.of(LocalDateTime.of(2001, 1, 1, 12, 0), ZoneId.systemDefault());
+        ZonedDateTime tomorrow = now.plusDays(1);
+
+        assertThat(new RequestPeriod(tomorrow, tomorrow.plusHours(1)).splitIntoPeriodsOf(Duration.ofHours(2), now)).isEmpty();
+        assertThat(new RequestPeriod(tomorrow, tomorrow.plusHours(10)).splitIntoPeriodsOf(Duration.ofHours(2), now)).isEmpty();
+    }
+
+    @Test
+    void givenAChunkStartingAtNow_callingSplitIntoPeriodsOf_leavesItOut() {
+        ZonedDateTime now = ZonedDateTime.of(LocalDateTime.of(2001, 1, 1, 12, 0), ZoneId.systemDefault());
+        RequestPeriod bigPeriod = new RequestPeriod(now.minusHours(4), now.plusHours(6));
+
+        List<RequestPeriod> result = bigPeriod.splitIntoPeriodsOf(Duration.ofHours(2), now);
+
+        assertThat(result).containsExactly(new RequestPeriod(now.minusHours(4), now.minusHours(2)),
+                                           new RequestPeriod(now.minusHours(2), now));
+    }
+}
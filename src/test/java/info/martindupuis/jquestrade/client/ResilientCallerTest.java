@@ -0,0 +1,206 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import info.martindupuis.jquestrade.exceptions.CircuitOpenException;
+import info.martindupuis.jquestrade.exceptions.StatusCodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class ResilientCallerTest {
+    private static final String API_SERVER = "https://api01.iq.questrade.com/";
+    private static final String ENDPOINT = "accounts";
+    private static final Instant NOW = Instant.parse("2024-03-15T16:00:00Z");
+
+    private final WebClientProperties.Resilience properties = new WebClientProperties.Resilience();
+    private final MutableClock clock = new MutableClock();
+
+    @BeforeEach
+    void setUp() {
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(4));
+    }
+
+    private ResilientCaller sut() {
+        return new ResilientCaller(properties, false, clock);
+    }
+
+    @Test
+    void givenTransientErrors_call_retriesUntilTheRequestSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = sut().call(API_SERVER, ENDPOINT, () -> {
+            if (attempts.incrementAndGet() < 3)
+                throw error(503, new HttpHeaders());
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void givenAClientError_call_throwsStatusCodeExceptionWithoutRetrying() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatExceptionOfType(StatusCodeException.class).isThrownBy(() -> sut().call(API_SERVER, ENDPOINT, failing(attempts, 404)))
+                                                            .satisfies(e -> assertThat(e.getStatusCode()).isEqualTo(404));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void givenTransientErrorsOnEveryAttempt_call_throwsTheLastAsStatusCodeException() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatExceptionOfType(StatusCodeException.class).isThrownBy(() -> sut().call(API_SERVER, ENDPOINT, failing(attempts, 429)))
+                                                            .satisfies(e -> assertThat(e.getStatusCode()).isEqualTo(429));
+        assertThat(attempts).hasValue(properties.getMaxAttempts());
+    }
+
+    @Test
+    void givenARetryAfterLongerThanAllowed_call_doesNotRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "120");
+
+        assertThatExceptionOfType(StatusCodeException.class).isThrownBy(() -> sut().call(API_SERVER, ENDPOINT, () -> {
+            attempts.incrementAndGet();
+            throw error(503, headers);
+        }));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void givenARetryAfter_retryAfter_readsSecondsAndDates() {
+        HttpHeaders seconds = new HttpHeaders();
+        seconds.set(HttpHeaders.RETRY_AFTER, "7");
+        HttpHeaders date = new HttpHeaders();
+        date.set(HttpHeaders.RETRY_AFTER, "Fri, 15 Mar 2024 16:00:30 GMT");
+
+        assertThat(sut().retryAfter(seconds)).contains(Duration.ofSeconds(7));
+        assertThat(sut().retryAfter(date)).contains(Duration.ofSeconds(30));
+        assertThat(sut().retryAfter(new HttpHeaders())).isEmpty();
+    }
+
+    @Test
+    void givenManyAttempts_backoff_growsUpToTheMaximumWithJitter() {
+        properties.setInitialBackoff(Duration.ofMillis(200));
+        properties.setMaxBackoff(Duration.ofSeconds(5));
+        ResilientCaller sut = sut();
+
+        assertThat(sut.backoff(1)).isBetween(Duration.ofMillis(100), Duration.ofMillis(200));
+        assertThat(sut.backoff(3)).isBetween(Duration.ofMillis(400), Duration.ofMillis(800));
+        assertThat(sut.backoff(60)).isBetween(Duration.ofMillis(2500), Duration.ofSeconds(5));
+    }
+
+    @Test
+    void givenConsecutiveServerErrors_call_opensTheCircuitUntilAProbeSucceeds() {
+        properties.setMaxAttempts(1);
+        properties.setFailureThreshold(2);
+        ResilientCaller sut = sut();
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++)
+            assertThatExceptionOfType(StatusCodeException.class).isThrownBy(() -> sut.call(API_SERVER, ENDPOINT, failing(attempts, 500)));
+
+        assertThatExceptionOfType(CircuitOpenException.class).isThrownBy(() -> sut.call(API_SERVER, ENDPOINT, failing(attempts, 500)));
+        assertThat(attempts).hasValue(2);
+        assertThat(sut.call("https://api02.iq.questrade.com/", ENDPOINT, () -> "other server")).isEqualTo("other server");
+
+        clock.advance(properties.getOpenDuration());
+        assertThat(sut.call(API_SERVER, ENDPOINT, () -> "probe")).isEqualTo("probe");
+        assertThat(sut.call(API_SERVER, ENDPOINT, () -> "closed")).isEqualTo("closed");
+    }
+
+    @Test
+    void givenAProbeFailingWithoutAnHttpError_call_letsTheNextCallProbeAgain() {
+        properties.setMaxAttempts(1);
+        properties.setFailureThreshold(1);
+        ResilientCaller sut = sut();
+        assertThatExceptionOfType(StatusCodeException.class).isThrownBy(() -> sut.call(API_SERVER, ENDPOINT, failing(new AtomicInteger(), 500)));
+
+        clock.advance(properties.getOpenDuration());
+        assertThatExceptionOfType(RestClientException.class).isThrownBy(() -> sut.call(API_SERVER, ENDPOINT, () -> {
+            throw new RestClientException("Cannot decode the body");
+        }));
+
+        assertThat(sut.call(API_SERVER, ENDPOINT, () -> "probe")).isEqualTo("probe");
+    }
+
+    @Test
+    void givenASlowRequest_call_hedgesItAndReturnsTheFirstResponse() throws Exception {
+        properties.setHedging(true);
+        properties.setMinHedgeDelay(Duration.ofMillis(20));
+        ResilientCaller sut = sut();
+        for (int i = 0; i < 20; i++)
+            sut.call(API_SERVER, ENDPOINT, () -> "fast");
+
+        CountDownLatch stuck = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        String result = sut.call(API_SERVER, ENDPOINT, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                await(stuck);
+                return "stuck";
+            }
+            return "hedge";
+        });
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(attempts).hasValue(2);
+        stuck.countDown();
+    }
+
+    private static Supplier<String> failing(AtomicInteger attempts, int status) {
+        return () -> {
+            attempts.incrementAndGet();
+            throw error(status, new HttpHeaders());
+        };
+    }
+
+    private static RestClientResponseException error(int status, HttpHeaders headers) {
+        return new RestClientResponseException(status + " error", HttpStatusCode.valueOf(status), "error", headers, null, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = NOW;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package info.martindupuis.jquestrade.client;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestadeSymbol;
+import info.martindupuis.jquestrade.QuestradeSymbolInfo;
+import info.martindupuis.jquestrade.client.config.WebClientProperties;
+import org.instancio.Instancio;
+import org.instancio.junit.InstancioExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.instancio.Select.field;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(InstancioExtension.class)
+@ExtendWith(MockitoExtension.class)
+class SymbolIndexTest {
+    private static final QuestadeSymbol BMO = symbol("BMO", 9292);
+    private static final QuestadeSymbol BMO_PRJ = symbol("BMO.PRJ.TO", 9300);
+    private static final QuestadeSymbol BNS = symbol("BNS", 9400);
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    WebClientProperties properties;
+    SymbolIndex sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebClientProperties();
+        sut = new SymbolIndex(webClient, properties);
+    }
+
+    @Test
+    void givenAPrefixAlreadySearched_searchingALongerOne_answersFromMemory() {
+        when(webClient.searchSymbols(authToken, "BM")).thenReturn(List.of(BMO_PRJ, BMO));
+
+        assertThat(sut.search(authToken, "bm", 10)).containsExactly(BMO, BMO_PRJ);
+        assertThat(sut.search(authToken, "BMO.", 10)).containsExactly(BMO_PRJ);
+        assertThat(sut.search(authToken, "BMX", 10)).isEmpty();
+
+        verify(webClient, times(1)).searchSymbols(any(), any());
+    }
+
+    @Test
+    void givenALimit_search_returnsTheFirstTickersAlphabetically() {
+        when(webClient.searchSymbols(authToken, "B")).thenReturn(List.of(BNS, BMO_PRJ, BMO));
+
+        assertThat(sut.search(authToken, "B", 2)).containsExactly(BMO, BMO_PRJ);
+    }
+
+    @Test
+    void givenSymbolsFoundBySearch_findByTickerAndById_doNotCallTheApi() {
+        when(webClient.searchSymbols(authToken, "BMO")).thenReturn(List.of(BMO, BMO_PRJ));
+        sut.search(authToken, "BMO", 10);
+
+        assertThat(sut.findByTicker(authToken, "bmo.prj.to")).contains(BMO_PRJ);
+        assertThat(sut.findById(authToken, 9292)).contains(BMO);
+        assertThat(sut.findByTicker(authToken, "BMOX")).isEmpty();
+
+        verify(webClient, times(1)).searchSymbols(any(), any());
+        verify(webClient, never()).getSymbols(any(), any());
+    }
+
+    @Test
+    void givenAnUnknownId_findById_asksTheApiOnce() {
+        QuestradeSymbolInfo aapl = Instancio.of(QuestradeSymbolInfo.class)
+                                            .set(field(QuestradeSymbolInfo::symbol), "AAPL")
+                                            .set(field(QuestradeSymbolInfo::symbolId), 8049)
+                                            .create();
+        when(webClient.getSymbols(authToken, List.of(8049))).thenReturn(List.of(aapl));
+
+        assertThat(sut.findById(authToken, 8049)).contains(aapl.toSymbol());
+        assertThat(sut.findById(authToken, 8049)).contains(aapl.toSymbol());
+
+        verify(webClient, times(1)).getSymbols(any(), any());
+    }
+
+    @Test
+    void givenTheIndexIsFull_theLeastRecentlyUsedSymbolIsDroppedAndItsPrefixSearchedAgain() {
+        properties.getSymbols().setMaxSymbols(2);
+        sut = new SymbolIndex(webClient, properties);
+        when(webClient.searchSymbols(eq(authToken), any())).thenReturn(List.of(BMO, BMO_PRJ), List.of(BNS), List.of(BMO, BMO_PRJ));
+
+        sut.search(authToken, "BM", 10);
+        sut.search(authToken, "BN", 10);
+        sut.search(authToken, "BM", 10);
+
+        assertThat(sut.size()).isEqualTo(2);
+        verify(webClient, times(2)).searchSymbols(authToken, "BM");
+    }
+
+    private static QuestadeSymbol symbol(String ticker, int symbolId) {
+        return new QuestadeSymbol(ticker, symbolId, ticker + " description", "Stock", "TSX", true, true, "CAD");
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @ExtendWith(SpringExtension.class)
@@ -20,4 +22,15 @@ class WebClientPropertiesTest {
     void givenUserDefinedPOJO_whenBindingPropertiesFile_thenAllFieldsAreSet() {
         assertThat(webClientProperties.getLoginUrl()).isEqualTo("http://www.test-url.com");
     }
+
+    @Test
+    void givenTransportProperties_whenBindingPropertiesFile_thenTheOthersKeepTheirDefault() {
+        WebClientProperties.Transport transport = webClientProperties.getTransport();
+
+        assertThat(transport.getMaxConnectionsPerHost()).isEqualTo(4);
+        assertThat(transport.getReadTimeout()).isEqualTo(Duration.ofSeconds(10));
+        assertThat(transport.getConnectTimeout()).isEqualTo(Duration.ofSeconds(5));
+        assertThat(transport.isHttp2()).isTrue();
+        assertThat(transport.getPendingAcquireMaxCount()).isNegative();
+    }
 }
\ No newline at end of file
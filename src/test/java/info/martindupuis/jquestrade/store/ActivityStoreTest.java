@@ -0,0 +1,88 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.QuestradeActivity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityStoreTest {
+    private static final String ACCOUNT_NUMBER = "26598145";
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 15);
+
+    @TempDir
+    Path directory;
+
+    ActivityStore sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new ActivityStore(directory);
+    }
+
+    static QuestradeActivity activity(LocalDate day, String description) {
+        String date = day.atStartOfDay().toString() + ":00.000000-04:00";
+        return new QuestradeActivity(date, date, date, "Buy", "THI.TO", 38738, description, "CAD", 10, 38.5, -385, -4.95, -389.95, "Trades");
+    }
+
+    @Test
+    void givenANewAccount_readAndGetSettledThrough_returnNothing() {
+        assertThat(sut.read(ACCOUNT_NUMBER)).isEmpty();
+        assertThat(sut.getSettledThrough(ACCOUNT_NUMBER)).isEmpty();
+    }
+
+    @Test
+    void givenActivitiesAppendedTwice_append_onlyStoresThemOnce() {
+        QuestradeActivity first = activity(DAY.minusDays(2), "first");
+        QuestradeActivity second = activity(DAY.minusDays(1), "second");
+        QuestradeActivity third = activity(DAY, "third");
+
+        sut.append(ACCOUNT_NUMBER, List.of(first, second), DAY.minusDays(1), DAY.minusDays(7));
+        List<QuestradeActivity> added = sut.append(ACCOUNT_NUMBER, List.of(second, third), DAY, DAY.minusDays(6));
+
+        assertThat(added).containsExactly(third);
+        assertThat(sut.read(ACCOUNT_NUMBER)).containsExactly(first, second, third);
+        assertThat(sut.getSettledThrough(ACCOUNT_NUMBER)).contains(DAY);
+    }
+
+    @Test
+    void givenActivitiesBeforeDedupeFrom_append_noLongerKeepsThemInTheCheckpoint() {
+        QuestradeActivity old = activity(DAY.minusDays(30), "old");
+        QuestradeActivity recent = activity(DAY, "recent");
+
+        sut.append(ACCOUNT_NUMBER, List.of(old, recent), DAY, DAY.minusDays(6));
+
+        assertThat(sut.readCheckpoint(ACCOUNT_NUMBER)).get()
+                                                      .extracting(ActivityStore.Checkpoint::recent)
+                                                      .isEqualTo(List.of(recent));
+    }
+
+    @Test
+    void givenAnEarlierSettledThrough_append_keepsTheLaterCheckpoint() {
+        sut.append(ACCOUNT_NUMBER, List.of(), DAY, DAY.minusDays(6));
+        sut.append(ACCOUNT_NUMBER, List.of(), DAY.minusDays(3), DAY.minusDays(9));
+
+        assertThat(sut.getSettledThrough(ACCOUNT_NUMBER)).contains(DAY);
+    }
+
+    @Test
+    void givenAnAppendWhichDidNotComplete_read_ignoresWhatItLeftAndAppendOverwritesIt() throws Exception {
+        QuestradeActivity first = activity(DAY.minusDays(1), "first");
+        QuestradeActivity second = activity(DAY, "second");
+        sut.append(ACCOUNT_NUMBER, List.of(first), DAY.minusDays(1), DAY.minusDays(7));
+        Files.writeString(directory.resolve(ACCOUNT_NUMBER + ".activities"), "{\"tradeDate\":\"2024-03-1", StandardOpenOption.APPEND);
+
+        ActivityStore reopened = new ActivityStore(directory);
+
+        assertThat(reopened.read(ACCOUNT_NUMBER)).containsExactly(first);
+        reopened.append(ACCOUNT_NUMBER, List.of(second), DAY, DAY.minusDays(6));
+        assertThat(reopened.read(ACCOUNT_NUMBER)).containsExactly(first, second);
+    }
+}
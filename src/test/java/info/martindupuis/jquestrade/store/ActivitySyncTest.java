@@ -0,0 +1,92 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.QuestradeAccount;
+import info.martindupuis.jquestrade.QuestradeActivity;
+import info.martindupuis.jquestrade.client.QuestradeBatchClient;
+import info.martindupuis.jquestrade.client.RequestPeriod;
+import org.instancio.Instancio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.*;
+import java.util.List;
+
+import static info.martindupuis.jquestrade.store.ActivityStoreTest.activity;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActivitySyncTest {
+    private static final ZoneId ZONE = ZoneId.of("America/Toronto");
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2024, 3, 15, 2, 0, 0, 0, ZONE);
+    private static final LocalDate TODAY = NOW.toLocalDate();
+    private static final LocalDate OPENED = LocalDate.of(2015, 1, 5);
+
+    @Mock
+    QuestradeBatchClient batchClient;
+
+    @TempDir
+    Path directory;
+
+    ActivityStore store;
+    ActivitySync sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+    private final QuestradeAccount account = Instancio.create(QuestradeAccount.class);
+
+    @BeforeEach
+    void setUp() {
+        store = new ActivityStore(directory);
+        sut = new ActivitySync(batchClient, store, OPENED, Period.ofDays(7), Clock.fixed(NOW.toInstant(), ZONE));
+    }
+
+    @Test
+    void givenANewAccount_sync_fetchesEverythingSinceTheInitialStart() {
+        QuestradeActivity deposit = activity(OPENED, "deposit");
+        when(batchClient.getAccountActivities(eq(authToken), eq(account), any())).thenReturn(List.of(deposit));
+
+        List<QuestradeActivity> result = sut.sync(authToken, account);
+
+        assertThat(result).containsExactly(deposit);
+        assertThat(store.getSettledThrough(account.number())).contains(TODAY.minusDays(1));
+        verify(batchClient).getAccountActivities(authToken, account, new RequestPeriod(OPENED.atStartOfDay(ZONE), NOW));
+    }
+
+    @Test
+    void givenAPreviousSync_sync_onlyFetchesSinceTheCheckpointMinusTheOverlapAndStoresWhatIsNew() {
+        QuestradeActivity stored = activity(TODAY.minusDays(10), "stored");
+        QuestradeActivity postedLate = activity(TODAY.minusDays(3), "posted late");
+        QuestradeActivity alreadySynced = activity(TODAY.minusDays(2), "already synced");
+        store.append(account.number(), List.of(stored, alreadySynced), TODAY.minusDays(2), TODAY.minusDays(8));
+        when(batchClient.getAccountActivities(eq(authToken), eq(account), any())).thenReturn(List.of(postedLate, alreadySynced));
+
+        List<QuestradeActivity> result = sut.sync(authToken, account);
+
+        assertThat(result).containsExactly(postedLate);
+        assertThat(store.read(account.number())).containsExactly(stored, alreadySynced, postedLate);
+        ArgumentCaptor<RequestPeriod> period = ArgumentCaptor.forClass(RequestPeriod.class);
+        verify(batchClient).getAccountActivities(eq(authToken), eq(account), period.capture());
+        assertThat(period.getValue().periodStart()).isEqualTo(TODAY.minusDays(8).atStartOfDay(ZONE));
+    }
+
+    @Test
+    void givenASecondSyncTheSameDay_sync_storesNothingTwice() {
+        QuestradeActivity trade = activity(TODAY.minusDays(1), "trade");
+        when(batchClient.getAccountActivities(eq(authToken), eq(account), any())).thenReturn(List.of(trade));
+
+        sut.sync(authToken, account);
+        List<QuestradeActivity> result = sut.sync(authToken, account);
+
+        assertThat(result).isEmpty();
+        assertThat(store.read(account.number())).containsExactly(trade);
+    }
+}
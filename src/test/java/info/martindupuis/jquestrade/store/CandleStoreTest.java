@@ -0,0 +1,135 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.client.RequestPeriod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CandleStoreTest {
+    private static final int SYMBOL_ID = 38738;
+    private static final QuestradeCandle.Interval INTERVAL = QuestradeCandle.Interval.OneDay;
+    private static final ZoneId ZONE = ZoneId.of("America/Toronto");
+    private static final ZonedDateTime START = LocalDate.of(2000, 1, 1).atStartOfDay(ZONE);
+
+    @TempDir
+    Path directory;
+
+    CandleStore sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new CandleStore(directory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sut.close();
+    }
+
+    private static QuestradeCandle dailyCandle(ZonedDateTime start, double close) {
+        return new QuestradeCandle(start.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                   start.plusDays(1).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                   close - 1, close + 1, close - 0.5, close, 1000, close);
+    }
+
+    private static List<QuestradeCandle> dailyCandles(ZonedDateTime from, int nbDays) {
+        return IntStream.range(0, nbDays)
+                        .mapToObj(day -> dailyCandle(from.plusDays(day), 100 + day))
+                        .toList();
+    }
+
+    @Test
+    void givenStoredCandles_read_returnsThemInChronologicalOrder() {
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(10));
+        List<QuestradeCandle> candles = dailyCandles(START, 10);
+
+        sut.write(SYMBOL_ID, INTERVAL, period, candles.reversed());
+
+        assertThat(sut.read(SYMBOL_ID, INTERVAL, period)).containsExactlyElementsOf(candles);
+    }
+
+    @Test
+    void givenAStoredPeriod_findMissingPeriods_returnsOnlyTheGaps() {
+        sut.write(SYMBOL_ID, INTERVAL, new RequestPeriod(START.plusDays(10), START.plusDays(20)), dailyCandles(START.plusDays(10), 10));
+
+        List<RequestPeriod> result = sut.findMissingPeriods(SYMBOL_ID, INTERVAL, new RequestPeriod(START, START.plusDays(30)));
+
+        assertThat(result).containsExactly(new RequestPeriod(START, START.plusDays(10)),
+                                           new RequestPeriod(START.plusDays(20), START.plusDays(30)));
+    }
+
+    @Test
+    void givenAGapFilledBeforeStoredCandles_read_returnsAllOfThemInOrder() {
+        sut.write(SYMBOL_ID, INTERVAL, new RequestPeriod(START.plusDays(10), START.plusDays(20)), dailyCandles(START.plusDays(10), 10));
+        sut.write(SYMBOL_ID, INTERVAL, new RequestPeriod(START, START.plusDays(10)), dailyCandles(START, 10));
+
+        RequestPeriod wholePeriod = new RequestPeriod(START, START.plusDays(20));
+        assertThat(sut.read(SYMBOL_ID, INTERVAL, wholePeriod)).containsExactlyElementsOf(dailyCandles(START, 20));
+        assertThat(sut.findMissingPeriods(SYMBOL_ID, INTERVAL, wholePeriod)).isEmpty();
+    }
+
+    @Test
+    void givenMoreCandlesThanTheInitialCapacity_read_returnsAllOfThem() {
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(3000));
+
+        sut.write(SYMBOL_ID, INTERVAL, period, dailyCandles(START, 3000));
+
+        Set<QuestradeCandle> result = sut.read(SYMBOL_ID, INTERVAL, period);
+        assertThat(result).hasSize(3000)
+                          .containsExactlyElementsOf(dailyCandles(START, 3000));
+    }
+
+    @Test
+    void givenAStoreGrownTwice_reopened_returnsEverythingAndLeavesNoTemporaryFile() {
+        RequestPeriod first = new RequestPeriod(START, START.plusDays(1500));
+        RequestPeriod second = new RequestPeriod(START.plusDays(1500), START.plusDays(4500));
+        sut.write(SYMBOL_ID, INTERVAL, first, dailyCandles(START, 1500));
+        sut.write(SYMBOL_ID, INTERVAL, second, dailyCandles(START.plusDays(1500), 3000));
+        sut.close();
+
+        sut = new CandleStore(directory);
+
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(4500));
+        assertThat(sut.read(SYMBOL_ID, INTERVAL, period)).containsExactlyElementsOf(dailyCandles(START, 4500));
+        assertThat(sut.findMissingPeriods(SYMBOL_ID, INTERVAL, period)).isEmpty();
+        assertThat(directory).isDirectoryNotContaining("glob:**.tmp");
+    }
+
+    @Test
+    void givenAReopenedStore_read_returnsWhatWasStoredBefore() {
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(5));
+        sut.write(SYMBOL_ID, INTERVAL, period, dailyCandles(START, 5));
+        sut.close();
+
+        sut = new CandleStore(directory);
+
+        assertThat(sut.read(SYMBOL_ID, INTERVAL, period)).containsExactlyElementsOf(dailyCandles(START, 5));
+        assertThat(sut.findMissingPeriods(SYMBOL_ID, INTERVAL, period)).isEmpty();
+    }
+
+    @Test
+    void givenACandleStillOpen_write_doesNotStoreIt_andItsPeriodIsStillMissing() {
+        ZonedDateTime today = LocalDate.now(ZONE).atStartOfDay(ZONE);
+        ZonedDateTime yesterday = today.minusDays(1);
+        RequestPeriod period = new RequestPeriod(yesterday, today.plusDays(1));
+
+        sut.write(SYMBOL_ID, INTERVAL, period, List.of(dailyCandle(yesterday, 10), dailyCandle(today, 11)));
+
+        assertThat(sut.read(SYMBOL_ID, INTERVAL, period)).containsExactly(dailyCandle(yesterday, 10));
+        assertThat(sut.findMissingPeriods(SYMBOL_ID, INTERVAL, period))
+                .containsExactly(new RequestPeriod(today, today.plusDays(1)));
+    }
+}
@@ -0,0 +1,111 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.exceptions.ArgumentException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class FileTokenStoreTest {
+    private static final SecretKey KEY = FileTokenStore.aesKey(Base64.getEncoder().encodeToString(new byte[32]));
+
+    @TempDir
+    Path directory;
+
+    private static AuthenticationToken token(String refreshToken) {
+        return new AuthenticationToken("access-" + refreshToken, "https://api01.iq.questrade.com/",
+                                       ZonedDateTime.now().plusMinutes(30).truncatedTo(ChronoUnit.SECONDS), refreshToken, "Bearer");
+    }
+
+    @Test
+    void givenNothingSaved_load_returnsNothing() {
+        assertThat(new FileTokenStore(directory.resolve("token.json")).load()).isEmpty();
+    }
+
+    @Test
+    void givenTwoTokensSaved_load_returnsTheLastOne() {
+        FileTokenStore sut = new FileTokenStore(directory.resolve("nested/token.json"));
+
+        sut.save(token("refresh-1"));
+        sut.save(token("refresh-2"));
+
+        assertThat(sut.load()).hasValueSatisfying(loaded -> {
+            assertThat(loaded.refresh_token()).isEqualTo("refresh-2");
+            assertThat(loaded.access_token()).isEqualTo("access-refresh-2");
+            assertThat(loaded.api_server()).isEqualTo("https://api01.iq.questrade.com/");
+            assertThat(loaded.isValid()).isTrue();
+        });
+        assertThat(directory.resolve("nested")).isDirectoryNotContaining("glob:**.tmp");
+    }
+
+    @Test
+    void givenATokenSavedInAnotherZone_load_returnsItInTheLocalZone() {
+        FileTokenStore sut = new FileTokenStore(directory.resolve("token.json"));
+        AuthenticationToken saved = token("refresh-1");
+        sut.save(new AuthenticationToken(saved.access_token(), saved.api_server(), saved.expires_at().withZoneSameInstant(ZoneOffset.ofHours(9)),
+                                         saved.refresh_token(), saved.token_type()));
+
+        assertThat(sut.load()).hasValueSatisfying(loaded -> {
+            assertThat(loaded.expires_at().toInstant()).isEqualTo(saved.expires_at().toInstant());
+            assertThat(loaded.isExpired()).isFalse();
+        });
+    }
+
+    @Test
+    void givenAKey_save_encryptsTheToken() throws Exception {
+        Path file = directory.resolve("token.bin");
+        FileTokenStore sut = new FileTokenStore(file, KEY);
+
+        sut.save(token("refresh-1"));
+
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1)).doesNotContain("refresh-1");
+        assertThat(sut.load()).map(AuthenticationToken::refresh_token).hasValue("refresh-1");
+    }
+
+    @Test
+    void givenTheWrongKeyOrNone_load_returnsNothing() {
+        Path file = directory.resolve("token.bin");
+        new FileTokenStore(file, KEY).save(token("refresh-1"));
+
+        SecretKey otherKey = FileTokenStore.aesKey(Base64.getEncoder().encodeToString("0123456789abcdef".getBytes(StandardCharsets.US_ASCII)));
+
+        assertThat(new FileTokenStore(file, otherKey).load()).isEmpty();
+        assertThat(new FileTokenStore(file).load()).isEmpty();
+    }
+
+    @Test
+    void givenATokenStoredInClear_loadWithAKey_onlyReturnsItWhenMigrating() {
+        Path file = directory.resolve("token.json");
+        new FileTokenStore(file).save(token("refresh-1"));
+
+        assertThat(new FileTokenStore(file, KEY).load()).isEmpty();
+        assertThat(new FileTokenStore(file, KEY, true).load()).map(AuthenticationToken::refresh_token).hasValue("refresh-1");
+    }
+
+    @Test
+    void givenATamperedFile_load_returnsNothing() throws Exception {
+        Path file = directory.resolve("token.bin");
+        new FileTokenStore(file, KEY).save(token("refresh-1"));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        assertThat(new FileTokenStore(file, KEY).load()).isEmpty();
+    }
+
+    @Test
+    void givenAKeyOfTheWrongLength_aesKey_throwsArgumentException() {
+        assertThatExceptionOfType(ArgumentException.class).isThrownBy(() -> FileTokenStore.aesKey(Base64.getEncoder().encodeToString(new byte[10])));
+    }
+}
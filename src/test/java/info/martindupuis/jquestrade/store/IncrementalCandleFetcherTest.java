@@ -0,0 +1,107 @@
+package info.martindupuis.jquestrade.store;
+
+import info.martindupuis.jquestrade.AuthenticationToken;
+import info.martindupuis.jquestrade.CandleSeries;
+import info.martindupuis.jquestrade.ExchangeSession;
+import info.martindupuis.jquestrade.QuestradeCandle;
+import info.martindupuis.jquestrade.QuestradePosition;
+import info.martindupuis.jquestrade.client.QuestradeWebClient;
+import info.martindupuis.jquestrade.client.RequestPeriod;
+import org.instancio.Instancio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IncrementalCandleFetcherTest {
+    private static final ZoneId ZONE = ZoneId.of("America/Toronto");
+    private static final ZonedDateTime START = LocalDate.of(2000, 1, 3).atStartOfDay(ZONE);
+
+    @Mock
+    QuestradeWebClient webClient;
+
+    @TempDir
+    Path directory;
+
+    CandleStore store;
+    IncrementalCandleFetcher sut;
+
+    private final AuthenticationToken authToken = Instancio.create(AuthenticationToken.class);
+    private final QuestradePosition position = Instancio.create(QuestradePosition.class);
+
+    @BeforeEach
+    void setUp() {
+        store = new CandleStore(directory);
+        sut = new IncrementalCandleFetcher(webClient, store);
+
+        when(webClient.getPositionCandleSeries(eq(authToken), eq(position), any(), any())).thenAnswer(invocation -> {
+            RequestPeriod period = invocation.getArgument(2);
+            return CandleSeries.of(List.of(new QuestradeCandle(period.periodStart().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                                               period.periodStart().plusDays(1).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                                                               1, 2, 1, 2, 100, 1.5)));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void givenAPeriodAlreadyFetched_getPositionCandles_doesNotCallTheApiAgain() {
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(5));
+
+        Set<QuestradeCandle> first = sut.getPositionCandles(authToken, position, period);
+        Set<QuestradeCandle> second = sut.getPositionCandles(authToken, position, period);
+
+        assertThat(second).isEqualTo(first).hasSize(1);
+        verify(webClient, times(1)).getPositionCandleSeries(eq(authToken), eq(position), any(), any());
+    }
+
+    @Test
+    void givenALargerPeriod_getPositionCandles_onlyFetchesWhatIsMissing() {
+        sut.getPositionCandles(authToken, position, new RequestPeriod(START, START.plusDays(5)));
+
+        sut.getPositionCandles(authToken, position, new RequestPeriod(START, START.plusDays(10)));
+
+        verify(webClient).getPositionCandleSeries(authToken, position, new RequestPeriod(START.plusDays(5), START.plusDays(10)), QuestradeCandle.Interval.OneDay);
+    }
+
+    @Test
+    void givenFinerCandlesAlreadyStored_getResampledCandleSeries_doesNotCallTheApi() {
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(5));
+        sut.getPositionCandles(authToken, position, period);
+
+        CandleSeries result = sut.getResampledCandleSeries(authToken, position, period, QuestradeCandle.Interval.OneWeek, ExchangeSession.NORTH_AMERICA);
+
+        assertThat(result.size()).isEqualTo(1);
+        assertThat(result.getVolume(0)).isEqualTo(100);
+        verify(webClient, times(1)).getPositionCandleSeries(eq(authToken), eq(position), any(), any());
+    }
+
+    @Test
+    void givenNoFinerCandlesStored_getResampledCandleSeries_fetchesTheInterval() {
+        RequestPeriod period = new RequestPeriod(START, START.plusDays(5));
+
+        sut.getResampledCandleSeries(authToken, position, period, QuestradeCandle.Interval.OneWeek, ExchangeSession.NORTH_AMERICA);
+
+        verify(webClient).getPositionCandleSeries(authToken, position, period, QuestradeCandle.Interval.OneWeek);
+    }
+}